@@ -0,0 +1,179 @@
+package io.github.blaney83;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.knime.core.data.DataCell;
+import org.knime.core.data.DataColumnSpec;
+import org.knime.core.data.DataRow;
+import org.knime.core.data.LongValue;
+import org.knime.core.data.container.CloseableRowIterator;
+import org.knime.core.data.container.filter.TableFilter;
+import org.knime.core.node.BufferedDataTable;
+import org.knime.core.node.CanceledExecutionException;
+import org.knime.core.node.ExecutionMonitor;
+
+/**
+ * Maps every distinct label of the cluster membership column to a dense int
+ * id, so rows only need a hash lookup instead of parsing their label. Labels
+ * ending in a number (<code>cluster_3</code>) or integer cells are ordered by
+ * that number, which keeps <code>cluster_N</code> on color N. For DBSCAN data
+ * labels without a number (<code>Noise</code>) are mapped to
+ * {@link #NOISE_ID}.
+ *
+ * @author Benjamin Laney
+ */
+public class ScatterPlot3DClusterDictionary {
+
+	public static final int NOISE_ID = -1;
+	public static final int UNKNOWN_ID = -2;
+
+	private final Map<DataCell, Integer> m_ids;
+	private final List<String> m_labels;
+
+	// what the dictionary was built from, used to decide whether it can be reused
+	private final DataColumnSpec m_sourceSpec;
+	private final boolean m_detectNoise;
+	private final int m_sourceTableId;
+
+	private ScatterPlot3DClusterDictionary(final Collection<DataCell> labels, final boolean detectNoise,
+			final DataColumnSpec sourceSpec, final int sourceTableId) {
+		m_sourceSpec = sourceSpec;
+		m_detectNoise = detectNoise;
+		m_sourceTableId = sourceTableId;
+		List<DataCell> clusters = new ArrayList<DataCell>();
+		List<DataCell> noise = new ArrayList<DataCell>();
+		for (DataCell label : labels) {
+			if (label.isMissing()) {
+				continue;
+			}
+			if (detectNoise && getClusterNumber(label) < 0) {
+				noise.add(label);
+			} else {
+				clusters.add(label);
+			}
+		}
+		Collections.sort(clusters, new Comparator<DataCell>() {
+
+			@Override
+			public int compare(final DataCell first, final DataCell second) {
+				long firstNumber = getClusterNumber(first);
+				long secondNumber = getClusterNumber(second);
+				if (firstNumber >= 0 && secondNumber >= 0 && firstNumber != secondNumber) {
+					return firstNumber < secondNumber ? -1 : 1;
+				} else if (firstNumber >= 0 != secondNumber >= 0) {
+					return firstNumber >= 0 ? -1 : 1;
+				}
+				return first.toString().compareTo(second.toString());
+			}
+		});
+		m_ids = new HashMap<DataCell, Integer>();
+		m_labels = new ArrayList<String>();
+		for (DataCell cluster : clusters) {
+			m_ids.put(cluster, m_labels.size());
+			m_labels.add(cluster.toString());
+		}
+		for (DataCell noiseLabel : noise) {
+			m_ids.put(noiseLabel, NOISE_ID);
+		}
+	}
+
+	/**
+	 * Creates the dictionary from the possible values of the column domain, or
+	 * from a single pass over the cluster column when the domain does not list
+	 * them.
+	 */
+	public static ScatterPlot3DClusterDictionary create(final BufferedDataTable table, final int clusterColumnIndex,
+			final boolean detectNoise, final ExecutionMonitor exec) throws CanceledExecutionException {
+		DataColumnSpec clusterSpec = table.getDataTableSpec().getColumnSpec(clusterColumnIndex);
+		ScatterPlot3DClusterDictionary fromDomain = createFromDomain(clusterSpec, detectNoise);
+		if (fromDomain != null) {
+			return fromDomain;
+		}
+		Set<DataCell> labels = new LinkedHashSet<DataCell>();
+		try (CloseableRowIterator rows = table.filter(TableFilter.materializeCols(clusterColumnIndex), exec)) {
+			long rowCount = 0;
+			while (rows.hasNext()) {
+				DataRow row = rows.next();
+				labels.add(row.getCell(clusterColumnIndex));
+				if (++rowCount % ScatterPlot3DPointIngester.PROGRESS_INTERVAL == 0) {
+					exec.checkCanceled();
+					exec.setProgress(rowCount / (double) Math.max(table.size(), 1), "Collecting cluster labels");
+				}
+			}
+		}
+		return new ScatterPlot3DClusterDictionary(labels, detectNoise, clusterSpec, table.getBufferedTableId());
+	}
+
+	/**
+	 * Creates the dictionary from the possible values of the column domain only,
+	 * as needed when the rows cannot be read twice.
+	 *
+	 * @return the dictionary, or <code>null</code> if the domain does not list
+	 *         the possible values
+	 */
+	public static ScatterPlot3DClusterDictionary createFromDomain(final DataColumnSpec clusterSpec,
+			final boolean detectNoise) {
+		if (!clusterSpec.getDomain().hasValues()) {
+			return null;
+		}
+		return new ScatterPlot3DClusterDictionary(clusterSpec.getDomain().getValues(), detectNoise, clusterSpec, -1);
+	}
+
+	/**
+	 * @param tableId the id of the buffered table the column belongs to, or -1
+	 *            if the rows are streamed
+	 * @return whether this dictionary maps the given cluster column and can be
+	 *         reused instead of building a new one
+	 */
+	public boolean isValidFor(final DataColumnSpec clusterSpec, final int tableId, final boolean detectNoise) {
+		if (detectNoise != m_detectNoise || !clusterSpec.equals(m_sourceSpec)) {
+			return false;
+		}
+		// labels collected by scanning are only known to be complete for that table
+		return m_sourceTableId == -1 || m_sourceTableId == tableId;
+	}
+
+	/**
+	 * The number a label is ordered by, or -1 if it has none.
+	 */
+	static long getClusterNumber(final DataCell label) {
+		if (label instanceof LongValue) {
+			return ((LongValue) label).getLongValue();
+		}
+		String text = label.toString();
+		int digits = text.length();
+		while (digits > 0 && Character.isDigit(text.charAt(digits - 1))) {
+			digits--;
+		}
+		if (digits == text.length() || text.length() - digits > 18) {
+			return -1;
+		}
+		return Long.parseLong(text.substring(digits));
+	}
+
+	/**
+	 * @return the dense id of the label, {@link #NOISE_ID} for noise or
+	 *         {@link #UNKNOWN_ID} if the label was not seen when building the
+	 *         dictionary
+	 */
+	public int getId(final DataCell label) {
+		Integer id = m_ids.get(label);
+		return id == null ? UNKNOWN_ID : id.intValue();
+	}
+
+	public int getNumClusters() {
+		return m_labels.size();
+	}
+
+	public String getLabel(final int id) {
+		return m_labels.get(id);
+	}
+}
@@ -0,0 +1,131 @@
+package io.github.blaney83;
+
+import java.util.BitSet;
+
+import org.jzy3d.colors.Color;
+
+/**
+ * The colors of the plotted points, expanded once from their palette indices
+ * and shared by all views of a node. Every point is held as a packed ARGB
+ * int; the jzy3d primitives get the palette color of a point from its palette
+ * index, so no color objects are created or referenced per point. A palette
+ * change only expands the buffer again; the points are not re-read. HiLited
+ * points are drawn in the hilite color instead of their palette color; which
+ * points are hilited follows from the rows they stand for, see
+ * {@link ScatterPlot3DPlottedRows}.
+ *
+ * @author Benjamin Laney
+ */
+public class ScatterPlot3DColorBuffer {
+
+	private final ScatterPlot3DPointStore m_points;
+	private final ScatterPlot3DPlottedRows m_rows;
+	private final int[] m_argb;
+	private Color[] m_palette;
+	private final Color m_hiliteColor;
+	private final BitSet m_hilited = new BitSet();
+
+	public ScatterPlot3DColorBuffer(final ScatterPlot3DPointStore points, final ScatterPlot3DPlottedRows rows,
+			final Color[] palette, final Color hiliteColor) {
+		m_points = points;
+		m_rows = rows;
+		m_hiliteColor = hiliteColor;
+		m_argb = new int[points.size()];
+		expand(palette);
+	}
+
+	/**
+	 * Recolors all points with the given palette, which must have at least as
+	 * many colors as the previous one.
+	 */
+	public void expand(final Color[] palette) {
+		m_palette = palette;
+		int[] paletteARGB = new int[palette.length];
+		for (int i = 0; i < palette.length; i++) {
+			paletteARGB[i] = toARGB(palette[i]);
+		}
+		int[] colorIndices = m_points.getColorIndices();
+		for (int i = 0; i < m_argb.length; i++) {
+			m_argb[i] = paletteARGB[colorIndices[i]];
+		}
+		int hiliteARGB = toARGB(m_hiliteColor);
+		for (int i = m_hilited.nextSetBit(0); i >= 0; i = m_hilited.nextSetBit(i + 1)) {
+			m_argb[i] = hiliteARGB;
+		}
+	}
+
+	/**
+	 * Hilites or unhilites a point, recoloring only that point.
+	 *
+	 * @return whether the state of the point changed
+	 */
+	public boolean setHiLited(final int point, final boolean hilited) {
+		if (m_hilited.get(point) == hilited) {
+			return false;
+		}
+		m_hilited.set(point, hilited);
+		m_argb[point] = toARGB(getColor(point));
+		return true;
+	}
+
+	public Color getHiLiteColor() {
+		return m_hiliteColor;
+	}
+
+	public boolean isHiLited(final int point) {
+		return m_hilited.get(point);
+	}
+
+	/**
+	 * @return the indices of the hilited points in ascending order
+	 */
+	public int[] getHiLited() {
+		int[] hilited = new int[m_hilited.cardinality()];
+		for (int i = m_hilited.nextSetBit(0), j = 0; i >= 0; i = m_hilited.nextSetBit(i + 1)) {
+			hilited[j++] = i;
+		}
+		return hilited;
+	}
+
+	/**
+	 * Packs a color into an int with 8 bits per channel (alpha, red, green,
+	 * blue from the most significant byte), clamping channels outside [0, 1].
+	 */
+	public static int toARGB(final Color color) {
+		return toChannel(color.a) << 24 | toChannel(color.r) << 16 | toChannel(color.g) << 8 | toChannel(color.b);
+	}
+
+	private static int toChannel(final float value) {
+		return Math.min(Math.max(Math.round(value * 255f), 0), 255);
+	}
+
+	public ScatterPlot3DPointStore getPoints() {
+		return m_points;
+	}
+
+	/**
+	 * @return the rows behind the points
+	 */
+	public ScatterPlot3DPlottedRows getRows() {
+		return m_rows;
+	}
+
+	public Color[] getPalette() {
+		return m_palette;
+	}
+
+	/**
+	 * @return the packed ARGB color of every point, see {@link #toARGB(Color)}
+	 */
+	public int[] getARGB() {
+		return m_argb;
+	}
+
+	/**
+	 * @return the color of the point, its palette color or the hilite color;
+	 *         the color is shared and must not be modified
+	 */
+	public Color getColor(final int point) {
+		return m_hilited.get(point) ? m_hiliteColor : m_palette[m_points.getColorIndex(point)];
+	}
+}
@@ -0,0 +1,175 @@
+package io.github.blaney83;
+
+import org.jzy3d.colors.Color;
+import org.knime.core.data.DataCell;
+import org.knime.core.data.DataColumnDomain;
+import org.knime.core.data.DataColumnSpec;
+import org.knime.core.data.DataRow;
+import org.knime.core.data.DoubleValue;
+import org.knime.core.data.container.CloseableRowIterator;
+import org.knime.core.data.container.filter.TableFilter;
+import org.knime.core.node.BufferedDataTable;
+import org.knime.core.node.CanceledExecutionException;
+import org.knime.core.node.ExecutionMonitor;
+
+/**
+ * Maps the values of a numeric column onto a gradient of
+ * {@link #NUM_COLORS} colors between the lower and upper bound of the column.
+ * The gradient is built once as a lookup table, which becomes the palette of
+ * the plotted points, so every point only keeps the int index of its color as
+ * a clustered point keeps its cluster. Values outside of the bounds are drawn
+ * in the color of the nearest bound, missing values in the additional color at
+ * {@link #MISSING_INDEX}.
+ *
+ * @author Benjamin Laney
+ */
+public class ScatterPlot3DColorMap {
+
+	static final int NUM_COLORS = 1024;
+	static final int MISSING_INDEX = NUM_COLORS;
+
+	// the stops of every gradient, evenly spaced from the lower to the upper bound
+	private static final int[][] VIRIDIS = { { 68, 1, 84 }, { 59, 82, 139 }, { 33, 145, 140 }, { 94, 201, 98 },
+			{ 253, 231, 37 } };
+	private static final int[][] BLUE_TO_RED = { { 59, 76, 192 }, { 221, 221, 221 }, { 180, 4, 38 } };
+	private static final int[][] BLACK_TO_WHITE = { { 0, 0, 0 }, { 255, 255, 255 } };
+	private static final float MISSING_GRAY = .5f;
+	private static final float OPACITY = .6f;
+
+	private final String m_columnName;
+	private final double m_lowerBound;
+	private final double m_upperBound;
+	private final double m_scale;
+
+	public ScatterPlot3DColorMap(final String columnName, final double lowerBound, final double upperBound) {
+		m_columnName = columnName;
+		m_lowerBound = lowerBound;
+		m_upperBound = upperBound;
+		// a constant column is drawn in the first color
+		m_scale = upperBound > lowerBound ? NUM_COLORS / (upperBound - lowerBound) : 0;
+	}
+
+	/**
+	 * Creates the map from the bounds of the column domain, or from a single
+	 * pass over the column when the domain has no bounds.
+	 */
+	public static ScatterPlot3DColorMap create(final BufferedDataTable table, final int columnIndex,
+			final ExecutionMonitor exec) throws CanceledExecutionException {
+		DataColumnSpec columnSpec = table.getDataTableSpec().getColumnSpec(columnIndex);
+		ScatterPlot3DColorMap fromDomain = createFromDomain(columnSpec);
+		if (fromDomain != null) {
+			return fromDomain;
+		}
+		double lowerBound = Double.POSITIVE_INFINITY;
+		double upperBound = Double.NEGATIVE_INFINITY;
+		try (CloseableRowIterator rows = table.filter(TableFilter.materializeCols(columnIndex), exec)) {
+			long rowCount = 0;
+			while (rows.hasNext()) {
+				DataRow row = rows.next();
+				DataCell cell = row.getCell(columnIndex);
+				if (!cell.isMissing()) {
+					double value = ((DoubleValue) cell).getDoubleValue();
+					if (!Double.isNaN(value)) {
+						lowerBound = Math.min(lowerBound, value);
+						upperBound = Math.max(upperBound, value);
+					}
+				}
+				if (++rowCount % ScatterPlot3DPointIngester.PROGRESS_INTERVAL == 0) {
+					exec.checkCanceled();
+					exec.setProgress(rowCount / (double) Math.max(table.size(), 1), "Collecting the color range");
+				}
+			}
+		}
+		if (lowerBound > upperBound) {
+			// only missing values, which are all drawn in the missing color
+			lowerBound = 0;
+			upperBound = 0;
+		}
+		return new ScatterPlot3DColorMap(columnSpec.getName(), lowerBound, upperBound);
+	}
+
+	/**
+	 * Creates the map from the bounds of the column domain only, as needed when
+	 * the rows cannot be read twice.
+	 *
+	 * @return the map, or <code>null</code> if the domain has no bounds
+	 */
+	public static ScatterPlot3DColorMap createFromDomain(final DataColumnSpec columnSpec) {
+		DataColumnDomain domain = columnSpec.getDomain();
+		if (!domain.hasBounds() || domain.getLowerBound().isMissing() || domain.getUpperBound().isMissing()) {
+			return null;
+		}
+		return new ScatterPlot3DColorMap(columnSpec.getName(),
+				((DoubleValue) domain.getLowerBound()).getDoubleValue(),
+				((DoubleValue) domain.getUpperBound()).getDoubleValue());
+	}
+
+	/**
+	 * @return the palette index of the value, {@link #MISSING_INDEX} for NaN
+	 */
+	public int getIndex(final double value) {
+		if (Double.isNaN(value)) {
+			return MISSING_INDEX;
+		}
+		int index = (int) ((value - m_lowerBound) * m_scale);
+		return Math.min(Math.max(index, 0), NUM_COLORS - 1);
+	}
+
+	/**
+	 * @return the value at the center of the range drawn with the given palette
+	 *         index, NaN for {@link #MISSING_INDEX}
+	 */
+	public double getValue(final int index) {
+		if (index == MISSING_INDEX) {
+			return Double.NaN;
+		}
+		if (m_scale == 0) {
+			return m_lowerBound;
+		}
+		return m_lowerBound + (index + .5) / m_scale;
+	}
+
+	public String getColumnName() {
+		return m_columnName;
+	}
+
+	public double getLowerBound() {
+		return m_lowerBound;
+	}
+
+	public double getUpperBound() {
+		return m_upperBound;
+	}
+
+	/**
+	 * Creates the lookup table of the named gradient, followed by the color of
+	 * missing values.
+	 *
+	 * @param colorMap one of {@link ScatterPlot3DSettings#DEFAULT_COLOR_MAPS_ARRAY}
+	 */
+	public static Color[] createPalette(final String colorMap) {
+		int[][] stops;
+		if (ScatterPlot3DSettings.COLOR_MAP_BLUE_TO_RED.equals(colorMap)) {
+			stops = BLUE_TO_RED;
+		} else if (ScatterPlot3DSettings.COLOR_MAP_BLACK_TO_WHITE.equals(colorMap)) {
+			stops = BLACK_TO_WHITE;
+		} else {
+			stops = VIRIDIS;
+		}
+		Color[] palette = new Color[NUM_COLORS + 1];
+		for (int i = 0; i < NUM_COLORS; i++) {
+			double position = i / (double) (NUM_COLORS - 1) * (stops.length - 1);
+			int stop = Math.min((int) position, stops.length - 2);
+			double fraction = position - stop;
+			palette[i] = new Color(interpolate(stops[stop][0], stops[stop + 1][0], fraction),
+					interpolate(stops[stop][1], stops[stop + 1][1], fraction),
+					interpolate(stops[stop][2], stops[stop + 1][2], fraction), OPACITY);
+		}
+		palette[MISSING_INDEX] = new Color(MISSING_GRAY, MISSING_GRAY, MISSING_GRAY, OPACITY);
+		return palette;
+	}
+
+	private static float interpolate(final int from, final int to, final double fraction) {
+		return (float) ((from + (to - from) * fraction) / 255);
+	}
+}
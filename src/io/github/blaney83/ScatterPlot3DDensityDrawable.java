@@ -0,0 +1,215 @@
+package io.github.blaney83;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+import org.jzy3d.colors.Color;
+import org.jzy3d.maths.BoundingBox3d;
+import org.jzy3d.plot3d.primitives.AbstractDrawable;
+import org.jzy3d.plot3d.rendering.view.Camera;
+import org.jzy3d.plot3d.transform.Transform;
+
+import com.jogamp.opengl.GL;
+import com.jogamp.opengl.GL2;
+import com.jogamp.opengl.glu.GLU;
+
+/**
+ * Draws a {@link ScatterPlot3DDensityGrid} as a volume of translucent voxels:
+ * every occupied voxel is one point at its center, sized to the voxel's cell
+ * on screen, in the count weighted mix of its clusters' colors and with an
+ * opacity that grows with the logarithm of its number of points. The voxels
+ * are blended back to front without writing depth, in an order that only
+ * depends on which way the camera looks along every axis, so the eight
+ * possible orders are sorted once and reused by every frame. The cost of a
+ * frame depends on the number of occupied voxels, not on the number of rows.
+ *
+ * @author Benjamin Laney
+ */
+public class ScatterPlot3DDensityDrawable extends AbstractDrawable {
+
+	// the opacity of a voxel with a single point and the opacity added up to the densest voxel
+	static final float MIN_ALPHA = .05f;
+	static final float ALPHA_RANGE = .75f;
+	// the voxels are drawn at least this many pixels and at most this many pixels wide
+	static final float MIN_VOXEL_SIZE = 1;
+	static final float MAX_VOXEL_SIZE = 64;
+
+	private final ScatterPlot3DDensityGrid m_grid;
+	private final ScatterPlot3DVertexData m_vertexData;
+	// voxels drawn in the last frame
+	private volatile int m_drawnVertices;
+
+	// the back to front orders per viewing direction, only accessed by the rendering thread
+	private final IntBuffer[] m_orders = new IntBuffer[8];
+
+	// reused by every frame
+	private final float[] m_modelView = new float[16];
+	private final float[] m_projection = new float[16];
+	private final float[] m_clip = new float[16];
+	private final int[] m_viewport = new int[4];
+
+	/**
+	 * @param palette the colors of the palette indices of the grid
+	 */
+	public ScatterPlot3DDensityDrawable(final ScatterPlot3DDensityGrid grid, final Color[] palette) {
+		m_grid = grid;
+		int numVoxels = grid.getNumVoxels();
+		float[] bounds = grid.getBounds();
+		int resolution = grid.getResolution();
+		float[] positions = new float[numVoxels * ScatterPlot3DVertexData.POSITION_COMPONENTS];
+		Color[] colors = new Color[numVoxels];
+		double maxDensity = Math.log1p(grid.getMaxCount());
+		for (int voxel = 0; voxel < numVoxels; voxel++) {
+			for (int axis = 0; axis < 3; axis++) {
+				float min = bounds[axis * 2];
+				float size = (bounds[axis * 2 + 1] - min) / resolution;
+				positions[voxel * 3 + axis] = min + (grid.getCell(voxel, axis) + .5f) * size;
+			}
+			float red = 0;
+			float green = 0;
+			float blue = 0;
+			int count = grid.getCount(voxel);
+			for (int cluster = 0; cluster < grid.getNumClusters(voxel); cluster++) {
+				Color color = palette[grid.getClusterColorIndex(voxel, cluster)];
+				float weight = grid.getClusterCount(voxel, cluster) / (float) count;
+				red += color.r * weight;
+				green += color.g * weight;
+				blue += color.b * weight;
+			}
+			float alpha = maxDensity > 0 ? (float) (MIN_ALPHA + ALPHA_RANGE * Math.log1p(count) / maxDensity)
+					: MIN_ALPHA + ALPHA_RANGE;
+			colors[voxel] = new Color(red, green, blue, alpha);
+		}
+		m_vertexData = new ScatterPlot3DVertexData(positions, colors);
+		updateBounds();
+	}
+
+	@Override
+	public void draw(final GL gl, final GLU glu, final Camera cam) {
+		int numVoxels = m_grid.getNumVoxels();
+		if (!gl.isGL2() || numVoxels == 0) {
+			m_drawnVertices = 0;
+			return;
+		}
+		doTransform(gl, glu, cam);
+		GL2 gl2 = gl.getGL2();
+		gl2.glGetFloatv(GL2.GL_MODELVIEW_MATRIX, m_modelView, 0);
+		gl2.glGetFloatv(GL2.GL_PROJECTION_MATRIX, m_projection, 0);
+		gl2.glGetIntegerv(GL.GL_VIEWPORT, m_viewport, 0);
+		// both matrices are column major, clip = projection * model view
+		for (int column = 0; column < 4; column++) {
+			for (int row = 0; row < 4; row++) {
+				float value = 0;
+				for (int k = 0; k < 4; k++) {
+					value += m_projection[k * 4 + row] * m_modelView[column * 4 + k];
+				}
+				m_clip[column * 4 + row] = value;
+			}
+		}
+		// the depth of a point in eye space grows towards the eye, so the axes
+		// along which it grows are walked upwards to draw back to front
+		int octant = (m_modelView[2] > 0 ? 1 : 0) | (m_modelView[6] > 0 ? 2 : 0) | (m_modelView[10] > 0 ? 4 : 0);
+		if (m_orders[octant] == null) {
+			m_orders[octant] = createOrder(octant);
+		}
+		boolean blend = gl2.glIsEnabled(GL.GL_BLEND);
+		gl2.glEnable(GL.GL_BLEND);
+		gl2.glBlendFunc(GL.GL_SRC_ALPHA, GL.GL_ONE_MINUS_SRC_ALPHA);
+		gl2.glDepthMask(false);
+		gl2.glPointSize(getVoxelSize());
+		gl2.glEnableClientState(GL2.GL_VERTEX_ARRAY);
+		gl2.glEnableClientState(GL2.GL_COLOR_ARRAY);
+		gl2.glVertexPointer(ScatterPlot3DVertexData.POSITION_COMPONENTS, GL.GL_FLOAT, 0,
+				m_vertexData.getPositions());
+		gl2.glColorPointer(ScatterPlot3DVertexData.COLOR_COMPONENTS, GL.GL_FLOAT, 0, m_vertexData.getColors());
+		gl2.glDrawElements(GL.GL_POINTS, numVoxels, GL.GL_UNSIGNED_INT, m_orders[octant]);
+		gl2.glDisableClientState(GL2.GL_COLOR_ARRAY);
+		gl2.glDisableClientState(GL2.GL_VERTEX_ARRAY);
+		gl2.glDepthMask(true);
+		if (!blend) {
+			gl2.glDisable(GL.GL_BLEND);
+		}
+		m_drawnVertices = numVoxels;
+	}
+
+	/**
+	 * @return the size in pixels of one cell of the grid, measured from the
+	 *         projected corners of the whole grid
+	 */
+	private float getVoxelSize() {
+		float[] bounds = m_grid.getBounds();
+		float[] m = m_clip;
+		float minX = Float.POSITIVE_INFINITY;
+		float maxX = Float.NEGATIVE_INFINITY;
+		float minY = Float.POSITIVE_INFINITY;
+		float maxY = Float.NEGATIVE_INFINITY;
+		for (int corner = 0; corner < 8; corner++) {
+			float x = bounds[(corner & 1) == 0 ? 0 : 1];
+			float y = bounds[(corner & 2) == 0 ? 2 : 3];
+			float z = bounds[(corner & 4) == 0 ? 4 : 5];
+			float clipW = m[3] * x + m[7] * y + m[11] * z + m[15];
+			if (clipW <= 0) {
+				// the eye is within the grid
+				return MAX_VOXEL_SIZE;
+			}
+			float clipX = (m[0] * x + m[4] * y + m[8] * z + m[12]) / clipW;
+			float clipY = (m[1] * x + m[5] * y + m[9] * z + m[13]) / clipW;
+			minX = Math.min(minX, clipX);
+			maxX = Math.max(maxX, clipX);
+			minY = Math.min(minY, clipY);
+			maxY = Math.max(maxY, clipY);
+		}
+		float pixels = Math.max((maxX - minX) * m_viewport[2], (maxY - minY) * m_viewport[3]) / 2;
+		return Math.min(Math.max(pixels / m_grid.getResolution(), MIN_VOXEL_SIZE), MAX_VOXEL_SIZE);
+	}
+
+	/**
+	 * Sorts the voxels by their cells, with the cells of the axes set in
+	 * <code>octant</code> (1 for x, 2 for y, 4 for z) ascending and the others
+	 * descending.
+	 */
+	private IntBuffer createOrder(final int octant) {
+		int numVoxels = m_grid.getNumVoxels();
+		int resolution = m_grid.getResolution();
+		long[] keys = new long[numVoxels];
+		for (int voxel = 0; voxel < numVoxels; voxel++) {
+			long cell = 0;
+			for (int axis = 0; axis < 3; axis++) {
+				int axisCell = m_grid.getCell(voxel, axis);
+				cell = cell * resolution + ((octant & (1 << axis)) != 0 ? axisCell : resolution - 1 - axisCell);
+			}
+			keys[voxel] = cell << 32 | voxel;
+		}
+		Arrays.sort(keys);
+		IntBuffer order = ByteBuffer.allocateDirect(numVoxels * 4).order(ByteOrder.nativeOrder()).asIntBuffer();
+		for (long key : keys) {
+			order.put((int) key);
+		}
+		order.flip();
+		return order;
+	}
+
+	/**
+	 * @return the number of voxels drawn in the last frame
+	 */
+	public int getDrawnVertices() {
+		return m_drawnVertices;
+	}
+
+	/**
+	 * The voxels are drawn from direct buffers, so geometry transforms are not
+	 * supported by this drawable.
+	 */
+	@Override
+	public void applyGeometryTransform(final Transform transform) {
+	}
+
+	@Override
+	public void updateBounds() {
+		float[] bounds = m_grid.getBounds();
+		bbox = m_grid.getNumVoxels() == 0 ? new BoundingBox3d()
+				: new BoundingBox3d(bounds[0], bounds[1], bounds[2], bounds[3], bounds[4], bounds[5]);
+	}
+}
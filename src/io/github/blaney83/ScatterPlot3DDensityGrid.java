@@ -0,0 +1,351 @@
+package io.github.blaney83;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Three dimensional histogram of the plotted points for the density volume
+ * rendering mode. The bounding box of the points is divided into
+ * <code>resolution</code> voxels per axis, and every occupied voxel keeps the
+ * number of its points per cluster (palette index); points colored by the
+ * continuous scale of a {@link ScatterPlot3DColorMap} are counted together
+ * with the sum of their palette indices. The points are binned in one parallel
+ * pass in which every worker fills a sparse map of its own, and the maps are
+ * merged afterwards, so the size of the histogram and the cost of drawing it
+ * are bounded by the resolution instead of the number of rows.
+ *
+ * @author Benjamin Laney
+ */
+public class ScatterPlot3DDensityGrid {
+
+	// below this many points per worker the binning runs on one thread
+	static final int MIN_POINTS_PER_CHUNK = 50000;
+
+	private final int m_resolution;
+	// min x, max x, min y, max y, min z, max z of the points
+	private final float[] m_bounds;
+	// the occupied voxels in ascending order of (x * resolution + y) * resolution + z
+	private int[] m_voxels;
+	private int[] m_counts;
+	private int m_maxCount;
+	// the clusters of voxel i are the entries m_clusterStart[i] to m_clusterStart[i + 1] - 1
+	private int[] m_clusterStart;
+	private int[] m_clusterColorIndices;
+	private int[] m_clusterCounts;
+
+	private ScatterPlot3DDensityGrid(final int resolution, final float[] bounds) {
+		m_resolution = resolution;
+		m_bounds = bounds;
+	}
+
+	/**
+	 * Bins the points into a grid of <code>resolution</code> voxels per axis.
+	 *
+	 * @param numColors the number of palette colors
+	 * @param numScaleColors the number of leading palette indices forming a
+	 *            continuous scale rather than clusters, 0 if there is none
+	 */
+	public static ScatterPlot3DDensityGrid build(final ScatterPlot3DPointStore points, final int resolution,
+			final int numColors, final int numScaleColors) throws Exception {
+		final int numPoints = points.size();
+		final int numChunks = Math.max(1,
+				Math.min(Runtime.getRuntime().availableProcessors(), numPoints / MIN_POINTS_PER_CHUNK));
+		final int chunkSize = (numPoints + numChunks - 1) / numChunks;
+		ForkJoinPool pool = new ForkJoinPool(numChunks);
+		try {
+			List<Future<float[]>> chunkBounds = new ArrayList<Future<float[]>>();
+			for (int chunk = 0; chunk < numChunks; chunk++) {
+				final int from = Math.min(chunk * chunkSize, numPoints);
+				final int to = Math.min(from + chunkSize, numPoints);
+				chunkBounds.add(pool.submit(new Callable<float[]>() {
+
+					@Override
+					public float[] call() {
+						return computeBounds(points, from, to);
+					}
+				}));
+			}
+			float[] bounds = new float[] { Float.POSITIVE_INFINITY, Float.NEGATIVE_INFINITY, Float.POSITIVE_INFINITY,
+					Float.NEGATIVE_INFINITY, Float.POSITIVE_INFINITY, Float.NEGATIVE_INFINITY };
+			for (Future<float[]> chunk : chunkBounds) {
+				float[] boundsOfChunk = getChunk(chunk);
+				for (int axis = 0; axis < 3; axis++) {
+					bounds[axis * 2] = Math.min(bounds[axis * 2], boundsOfChunk[axis * 2]);
+					bounds[axis * 2 + 1] = Math.max(bounds[axis * 2 + 1], boundsOfChunk[axis * 2 + 1]);
+				}
+			}
+			for (int axis = 0; axis < 3; axis++) {
+				if (bounds[axis * 2] > bounds[axis * 2 + 1]) {
+					// no finite value, the axis has a single layer of voxels
+					bounds[axis * 2] = 0;
+					bounds[axis * 2 + 1] = 0;
+				}
+			}
+			final ScatterPlot3DDensityGrid grid = new ScatterPlot3DDensityGrid(Math.max(resolution, 1), bounds);
+			final long colorSlots = Math.max(numColors, 1);
+
+			List<Future<VoxelCounts>> binned = new ArrayList<Future<VoxelCounts>>();
+			for (int chunk = 0; chunk < numChunks; chunk++) {
+				final int from = Math.min(chunk * chunkSize, numPoints);
+				final int to = Math.min(from + chunkSize, numPoints);
+				binned.add(pool.submit(new Callable<VoxelCounts>() {
+
+					@Override
+					public VoxelCounts call() {
+						return grid.bin(points, from, to, colorSlots, numScaleColors);
+					}
+				}));
+			}
+			VoxelCounts counts = getChunk(binned.get(0));
+			for (int chunk = 1; chunk < numChunks; chunk++) {
+				counts.addAll(getChunk(binned.get(chunk)));
+			}
+			grid.collect(counts, colorSlots, numScaleColors);
+			return grid;
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	private static <T> T getChunk(final Future<T> chunk) throws Exception {
+		try {
+			return chunk.get();
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof Exception) {
+				throw (Exception) e.getCause();
+			}
+			throw e;
+		}
+	}
+
+	private static float[] computeBounds(final ScatterPlot3DPointStore points, final int from, final int to) {
+		float[] bounds = new float[] { Float.POSITIVE_INFINITY, Float.NEGATIVE_INFINITY, Float.POSITIVE_INFINITY,
+				Float.NEGATIVE_INFINITY, Float.POSITIVE_INFINITY, Float.NEGATIVE_INFINITY };
+		for (int point = from; point < to; point++) {
+			ScatterPlot3DVertexData.includeFinite(bounds, 0, points.getX(point));
+			ScatterPlot3DVertexData.includeFinite(bounds, 1, points.getY(point));
+			ScatterPlot3DVertexData.includeFinite(bounds, 2, points.getZ(point));
+		}
+		return bounds;
+	}
+
+	/**
+	 * Counts the points in <code>[from, to)</code> per voxel and cluster,
+	 * except for points with a NaN or infinite coordinate, which have no
+	 * place in the grid.
+	 */
+	private VoxelCounts bin(final ScatterPlot3DPointStore points, final int from, final int to,
+			final long colorSlots, final int numScaleColors) {
+		VoxelCounts counts = new VoxelCounts();
+		for (int point = from; point < to; point++) {
+			if (!isFinite(points.getX(point)) || !isFinite(points.getY(point)) || !isFinite(points.getZ(point))) {
+				continue;
+			}
+			long voxel = ((long) toCell(points.getX(point), 0) * m_resolution + toCell(points.getY(point), 1))
+					* m_resolution + toCell(points.getZ(point), 2);
+			int colorIndex = points.getColorIndex(point);
+			int colorSlot = colorIndex < numScaleColors ? 0 : colorIndex;
+			counts.add(voxel * colorSlots + colorSlot, 1, colorIndex);
+		}
+		return counts;
+	}
+
+	private static boolean isFinite(final float value) {
+		return !Float.isNaN(value) && !Float.isInfinite(value);
+	}
+
+	private int toCell(final float value, final int axis) {
+		float min = m_bounds[axis * 2];
+		float max = m_bounds[axis * 2 + 1];
+		// flat axes only have a single layer of voxels
+		int cell = max > min ? (int) ((value - min) / (max - min) * m_resolution) : 0;
+		return Math.min(Math.max(cell, 0), m_resolution - 1);
+	}
+
+	/**
+	 * Sorts the merged counts by voxel and stores them per voxel.
+	 */
+	private void collect(final VoxelCounts counts, final long colorSlots, final int numScaleColors) {
+		long[] keys = counts.getKeys();
+		Arrays.sort(keys);
+		int numVoxels = 0;
+		for (int i = 0; i < keys.length; i++) {
+			if (i == 0 || keys[i] / colorSlots != keys[i - 1] / colorSlots) {
+				numVoxels++;
+			}
+		}
+		m_voxels = new int[numVoxels];
+		m_counts = new int[numVoxels];
+		m_clusterStart = new int[numVoxels + 1];
+		m_clusterColorIndices = new int[keys.length];
+		m_clusterCounts = new int[keys.length];
+		int voxel = -1;
+		for (int i = 0; i < keys.length; i++) {
+			if (i == 0 || keys[i] / colorSlots != keys[i - 1] / colorSlots) {
+				voxel++;
+				m_voxels[voxel] = (int) (keys[i] / colorSlots);
+				m_clusterStart[voxel] = i;
+			}
+			int bucket = counts.find(keys[i]);
+			int count = counts.m_counts[bucket];
+			int colorSlot = (int) (keys[i] % colorSlots);
+			// the points of a scale are drawn in their mean color
+			m_clusterColorIndices[i] = colorSlot == 0 && numScaleColors > 0
+					? (int) Math.round(counts.m_sumColorIndices[bucket] / count) : colorSlot;
+			m_clusterCounts[i] = count;
+			m_counts[voxel] += count;
+		}
+		m_clusterStart[numVoxels] = keys.length;
+		for (int i = 0; i < numVoxels; i++) {
+			m_maxCount = Math.max(m_maxCount, m_counts[i]);
+		}
+	}
+
+	public int getResolution() {
+		return m_resolution;
+	}
+
+	/**
+	 * @return min x, max x, min y, max y, min z and max z of the points; the
+	 *         array is shared and must not be modified
+	 */
+	public float[] getBounds() {
+		return m_bounds;
+	}
+
+	public int getNumVoxels() {
+		return m_voxels.length;
+	}
+
+	/**
+	 * @return the grid cell of the given occupied voxel along the given axis
+	 *         (0 for x, 1 for y, 2 for z)
+	 */
+	public int getCell(final int voxel, final int axis) {
+		int index = m_voxels[voxel];
+		for (int i = 2; i > axis; i--) {
+			index /= m_resolution;
+		}
+		return index % m_resolution;
+	}
+
+	/**
+	 * @return the number of points in the given occupied voxel
+	 */
+	public int getCount(final int voxel) {
+		return m_counts[voxel];
+	}
+
+	/**
+	 * @return the largest number of points in a voxel
+	 */
+	public int getMaxCount() {
+		return m_maxCount;
+	}
+
+	/**
+	 * @return the number of clusters with points in the given occupied voxel
+	 */
+	public int getNumClusters(final int voxel) {
+		return m_clusterStart[voxel + 1] - m_clusterStart[voxel];
+	}
+
+	/**
+	 * @return the palette index of the <code>cluster</code>-th cluster of the
+	 *         voxel, the mean index for the points of a scale
+	 */
+	public int getClusterColorIndex(final int voxel, final int cluster) {
+		return m_clusterColorIndices[m_clusterStart[voxel] + cluster];
+	}
+
+	public int getClusterCount(final int voxel, final int cluster) {
+		return m_clusterCounts[m_clusterStart[voxel] + cluster];
+	}
+
+	/**
+	 * Open addressing hash map from a voxel/cluster key to the number of points
+	 * and the sum of their palette indices, avoiding a boxed entry per key.
+	 */
+	private static final class VoxelCounts {
+		private long[] m_keys = new long[1024];
+		private boolean[] m_used = new boolean[1024];
+		private int[] m_counts = new int[1024];
+		private double[] m_sumColorIndices = new double[1024];
+		private int m_size;
+
+		private void add(final long key, final int count, final double sumColorIndices) {
+			int bucket = find(key);
+			if (!m_used[bucket]) {
+				m_used[bucket] = true;
+				m_keys[bucket] = key;
+				m_size++;
+			}
+			m_counts[bucket] += count;
+			m_sumColorIndices[bucket] += sumColorIndices;
+			if (m_size * 2 > m_keys.length) {
+				rehash();
+			}
+		}
+
+		private void addAll(final VoxelCounts other) {
+			for (int bucket = 0; bucket < other.m_keys.length; bucket++) {
+				if (other.m_used[bucket]) {
+					add(other.m_keys[bucket], other.m_counts[bucket], other.m_sumColorIndices[bucket]);
+				}
+			}
+		}
+
+		/**
+		 * @return the bucket of the key, or the empty bucket it belongs into
+		 */
+		private int find(final long key) {
+			int mask = m_keys.length - 1;
+			int bucket = mix(key) & mask;
+			while (m_used[bucket] && m_keys[bucket] != key) {
+				bucket = (bucket + 1) & mask;
+			}
+			return bucket;
+		}
+
+		private long[] getKeys() {
+			long[] keys = new long[m_size];
+			int size = 0;
+			for (int bucket = 0; bucket < m_keys.length; bucket++) {
+				if (m_used[bucket]) {
+					keys[size++] = m_keys[bucket];
+				}
+			}
+			return keys;
+		}
+
+		private void rehash() {
+			long[] oldKeys = m_keys;
+			boolean[] oldUsed = m_used;
+			int[] oldCounts = m_counts;
+			double[] oldSums = m_sumColorIndices;
+			m_keys = new long[oldKeys.length * 2];
+			m_used = new boolean[oldKeys.length * 2];
+			m_counts = new int[oldKeys.length * 2];
+			m_sumColorIndices = new double[oldKeys.length * 2];
+			for (int i = 0; i < oldKeys.length; i++) {
+				if (oldUsed[i]) {
+					int bucket = find(oldKeys[i]);
+					m_used[bucket] = true;
+					m_keys[bucket] = oldKeys[i];
+					m_counts[bucket] = oldCounts[i];
+					m_sumColorIndices[bucket] = oldSums[i];
+				}
+			}
+		}
+
+		private static int mix(final long key) {
+			long hash = key * 0x9E3779B97F4A7C15L;
+			return (int) (hash ^ (hash >>> 32));
+		}
+	}
+}
@@ -10,7 +10,8 @@ import org.jzy3d.plot3d.rendering.canvas.Quality;
 
 public class ScatterPlot3DGraphPanel extends AbstractAnalysis {
 	
-	private final ScatterPlot3DNodeModel m_nodeModel;
+	private ScatterPlot3DNodeModel m_nodeModel;
+	private Scatter m_prototypeScatter;
 
 	public ScatterPlot3DGraphPanel(final ScatterPlot3DNodeModel nodeModel) {
 		this.m_nodeModel = nodeModel;
@@ -19,32 +20,63 @@ public class ScatterPlot3DGraphPanel extends AbstractAnalysis {
 
 	@Override
 	public void init() {
-		//this chunkVVVVVVVV
-		Color[] pointColors = new Color[m_nodeModel.getDataPointColorIndicies().length];
-		int count = 0;
-		for(Short index: m_nodeModel.getDataPointColorIndicies()) {
-			pointColors[count] = m_nodeModel.getDataPointColors()[(int) index];
-			count ++;
-		}
-		//^^^^^^^^^^^^^^^ should be moved to NodeModel
+		// the data points are added by ScatterPlot3DProgressiveRenderer
 		chart = AWTChartComponentFactory.chart(Quality.Advanced, getCanvasType());
-		Scatter scatter = new Scatter(m_nodeModel.getDataPoints(), pointColors);
-		scatter.setWidth(m_nodeModel.getSettings().getDataPointSize());
-		chart.getScene().getGraph().add(scatter);
-		if(m_nodeModel.getSettings().getPrototypesProvided()) {
+		setNodeModel(m_nodeModel);
+	}
+
+	/**
+	 * Replaces the prototypes and axis labels with those of the given model,
+	 * keeping the chart and its canvas.
+	 *
+	 * @param nodeModel the model, or <code>null</code> to only remove the
+	 *            prototypes and labels of the previous one
+	 */
+	public void setNodeModel(final ScatterPlot3DNodeModel nodeModel) {
+		m_nodeModel = nodeModel;
+		if (m_prototypeScatter != null) {
+			chart.getScene().getGraph().remove(m_prototypeScatter, false);
+			m_prototypeScatter = null;
+		}
+		if (m_nodeModel == null) {
+			chart.getAxeLayout().setXAxeLabel("");
+			chart.getAxeLayout().setYAxeLabel("");
+			chart.getAxeLayout().setZAxeLabel("");
+			return;
+		}
+		if(m_nodeModel.getSettings().getPrototypesProvided() && m_nodeModel.getPrototypePoints() != null) {
 			Color protoColor = new Color(m_nodeModel.getSettings().getPrototypePointColor().getRed(), 
 					m_nodeModel.getSettings().getPrototypePointColor().getGreen(), 
 					m_nodeModel.getSettings().getPrototypePointColor().getBlue(),
 					m_nodeModel.getSettings().getPrototypePointColor().getAlpha());
-			Scatter protoScatter = new Scatter(m_nodeModel.getPrototypePoints(), protoColor);
-			protoScatter.setWidth(m_nodeModel.getSettings().getPrototypePointSize());
-			chart.getScene().getGraph().add(protoScatter);
+			m_prototypeScatter = new Scatter(m_nodeModel.getPrototypePoints(), protoColor);
+			m_prototypeScatter.setWidth(m_nodeModel.getSettings().getPrototypePointSize());
+			chart.getScene().getGraph().add(m_prototypeScatter, false);
 		}
 		chart.getAxeLayout().setXAxeLabel(m_nodeModel.getSettings().getXAxisVarColumn());
 		chart.getAxeLayout().setYAxeLabel(m_nodeModel.getSettings().getYAxisVarColumn());
 		chart.getAxeLayout().setZAxeLabel(m_nodeModel.getSettings().getZAxisVarColumn());
 	}
 
+	/**
+	 * Creates a scatter of the points at the positions <code>[from, to)</code>
+	 * of the given order of the color buffer's points.
+	 */
+	static Scatter createScatter(final ScatterPlot3DColorBuffer colorBuffer, final int[] order, final int from,
+			final int to, final float width) {
+		ScatterPlot3DPointStore pointStore = colorBuffer.getPoints();
+		Coord3d[] points = new Coord3d[to - from];
+		Color[] colors = new Color[to - from];
+		for (int i = from; i < to; i++) {
+			int point = order[i];
+			points[i - from] = new Coord3d(pointStore.getX(point), pointStore.getY(point), pointStore.getZ(point));
+			colors[i - from] = colorBuffer.getColor(point);
+		}
+		Scatter scatter = new Scatter(points, colors);
+		scatter.setWidth(width);
+		return scatter;
+	}
+
 }
 
 
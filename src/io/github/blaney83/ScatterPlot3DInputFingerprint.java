@@ -0,0 +1,123 @@
+package io.github.blaney83;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.knime.core.data.DataColumnSpec;
+import org.knime.core.data.DataRow;
+import org.knime.core.data.container.CloseableRowIterator;
+import org.knime.core.data.container.filter.TableFilter;
+import org.knime.core.node.BufferedDataTable;
+import org.knime.core.node.CanceledExecutionException;
+import org.knime.core.node.ExecutionMonitor;
+
+/**
+ * Cheap identity of the inputs that determine the plotted points: the size of
+ * the main data table, the specs of the plotted columns (including their
+ * domains), a hash over the relevant cells of the first rows and the settings
+ * that influence reading the table. Two executions with equal fingerprints are
+ * assumed to produce the same points, so a changed cell after the first rows
+ * that leaves the size and the domains intact is not detected. Computing it
+ * reads at most {@link #SAMPLE_ROWS} rows, however large the table is.
+ *
+ * @author Benjamin Laney
+ */
+public final class ScatterPlot3DInputFingerprint {
+
+	// number of rows at the start of the table that are hashed
+	static final int SAMPLE_ROWS = 32;
+
+	private final long m_tableSize;
+	private final List<DataColumnSpec> m_columnSpecs;
+	private final long m_sampleHash;
+	private final String m_settingsKey;
+
+	private ScatterPlot3DInputFingerprint(final long tableSize, final List<DataColumnSpec> columnSpecs,
+			final long sampleHash, final String settingsKey) {
+		m_tableSize = tableSize;
+		m_columnSpecs = columnSpecs;
+		m_sampleHash = sampleHash;
+		m_settingsKey = settingsKey;
+	}
+
+	/**
+	 * Computes the fingerprint of the main data table for the given plotted
+	 * columns. Only the first rows are hashed, as the rows of a table cannot be
+	 * read from an arbitrary index without reading the rows before it.
+	 *
+	 * @param columnIndices the indices of the x, y, z and (if any) cluster
+	 *            column
+	 */
+	public static ScatterPlot3DInputFingerprint create(final BufferedDataTable table, final int[] columnIndices,
+			final ScatterPlot3DSettings settings, final ExecutionMonitor exec) throws CanceledExecutionException {
+		int[] materializedColumns = ScatterPlot3DPointIngester.getColumnIndices(columnIndices);
+		List<DataColumnSpec> columnSpecs = new ArrayList<DataColumnSpec>();
+		for (int columnIndex : materializedColumns) {
+			columnSpecs.add(table.getDataTableSpec().getColumnSpec(columnIndex));
+		}
+
+		long size = table.size();
+		long hash = 0xCBF29CE484222325L;
+		int numSamples = getNumSampledRows(size);
+		if (numSamples > 0) {
+			exec.checkCanceled();
+			TableFilter filter = new TableFilter.Builder().withMaterializeColumnIndices(materializedColumns)
+					.withToRowIndex(numSamples - 1).build();
+			try (CloseableRowIterator rows = table.filter(filter)) {
+				while (rows.hasNext()) {
+					DataRow row = rows.next();
+					hash = mix(hash, row.getKey().hashCode());
+					for (int columnIndex : materializedColumns) {
+						hash = mix(hash, row.getCell(columnIndex).hashCode());
+					}
+				}
+			}
+		}
+		exec.setProgress(1.0);
+		return new ScatterPlot3DInputFingerprint(size, columnSpecs, hash, createSettingsKey(settings));
+	}
+
+	/**
+	 * @return the number of rows read to fingerprint a table of the given size
+	 */
+	static int getNumSampledRows(final long tableSize) {
+		return (int) Math.min(tableSize, SAMPLE_ROWS);
+	}
+
+	/**
+	 * Lists the settings that change which points are read or which palette
+	 * index they get. View-only settings such as the point size, the noise
+	 * color and the color map, which only change the palette, are left out.
+	 */
+	private static String createSettingsKey(final ScatterPlot3DSettings settings) {
+		return Arrays.asList(settings.getXAxisVarColumn(), settings.getYAxisVarColumn(),
+				settings.getZAxisVarColumn(), settings.getIsClustered(), settings.getClusterType(),
+				settings.getNumClusters(), settings.getShowAllData(), settings.getCount(),
+				settings.getSamplingMode(), settings.getSamplingSeed(),
+				settings.getDBSCANPlotNoise(), settings.isColoredByColumn() ? settings.getColorColumn() : "")
+				.toString();
+	}
+
+	private static long mix(final long hash, final int value) {
+		return (hash ^ value) * 0x100000001B3L;
+	}
+
+	@Override
+	public boolean equals(final Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof ScatterPlot3DInputFingerprint)) {
+			return false;
+		}
+		ScatterPlot3DInputFingerprint other = (ScatterPlot3DInputFingerprint) obj;
+		return m_tableSize == other.m_tableSize && m_sampleHash == other.m_sampleHash
+				&& m_settingsKey.equals(other.m_settingsKey) && m_columnSpecs.equals(other.m_columnSpecs);
+	}
+
+	@Override
+	public int hashCode() {
+		return (int) (m_sampleHash ^ (m_sampleHash >>> 32)) * 31 + m_settingsKey.hashCode();
+	}
+}
@@ -0,0 +1,714 @@
+package io.github.blaney83;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import org.jzy3d.colors.Color;
+import org.jzy3d.maths.Coord3d;
+import org.knime.core.node.CanceledExecutionException;
+import org.knime.core.node.ExecutionMonitor;
+import org.knime.core.node.InvalidSettingsException;
+import org.knime.core.node.ModelContent;
+import org.knime.core.node.ModelContentRO;
+
+/**
+ * Reads and writes the view internals of the node. The binary format consists
+ * of a fixed size header followed by contiguous blocks:
+ *
+ * <pre>
+ * int   magic ("SP3D")
+ * int   format version
+ * int   number of points
+ * int   number of palette colors
+ * int   number of prototypes
+ * float x values, then y values, then z values      (one block per axis)
+ * int   palette index of every point
+ * float red, green, blue, alpha of every palette color
+ * float x, y, z of every prototype
+ * </pre>
+ *
+ * The compact format (version 2) extends the header by the bounding box of
+ * the points (min x, y, z and extent x, y, z as floats) and the number of bits
+ * per palette index. The blocks after the header are deflate compressed:
+ * every axis is quantized to 16 bit fixed point relative to the bounding box
+ * and written in chunks as a plane of high bytes followed by a plane of low
+ * bytes, which compresses far better for clustered data. The palette indices
+ * are bit-packed, while the palette and prototypes remain floats. The CRC-32
+ * of the uncompressed blocks follows them within the compressed stream and is
+ * verified on load.
+ *
+ * The compact format is about 2.5 times smaller than the full one for points
+ * scattered in arbitrary row order, e.g. 6.1 MB instead of 16 MB for 1M points
+ * of Gaussian clusters, and about 10 times smaller for points on a grid or
+ * with many repeated values. The low byte of a scattered coordinate is close
+ * to random, which bounds the ratio of any lossless coding of the 16 bit
+ * values in row order; delta coding the rows does not help, and sorting the
+ * points first gains less than the row keys then lose.
+ *
+ * The row keys of the points are written to a separate file. After a header
+ * of magic ("SP3K"), format version, number of keys and number of key bytes,
+ * it holds the deflate compressed UTF-8 length of every key followed by the
+ * concatenated keys.
+ * Points without row keys (and workflows saved before the keys were recorded)
+ * have no such file.
+ *
+ * All values are big endian. Workflows saved before the binary format was
+ * introduced only contain the XML file, which is still read.
+ *
+ * @author Benjamin Laney
+ */
+public final class ScatterPlot3DInternalsFormat {
+
+	static final int MAGIC = 0x53503344;
+	static final int VERSION_FULL = 1;
+	static final int VERSION_COMPACT = 2;
+	static final int HEADER_SIZE = 5 * 4;
+	static final int ROW_KEYS_MAGIC = 0x5350334B;
+	static final int ROW_KEYS_VERSION = 1;
+
+	private static final int QUANTIZATION_LEVELS = 0xFFFF;
+	// number of points quantized and compressed at a time
+	private static final int CHUNK_POINTS = 1 << 15;
+
+	// size of the chunks copied between the arrays and the file channel
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private ScatterPlot3DInternalsFormat() {
+	}
+
+	/**
+	 * The view state read from the internals directory.
+	 */
+	public static final class Internals {
+		private final ScatterPlot3DPointStore m_pointStore;
+		private final Color[] m_palette;
+		private final Coord3d[] m_prototypes;
+
+		Internals(final ScatterPlot3DPointStore pointStore, final Color[] palette, final Coord3d[] prototypes) {
+			m_pointStore = pointStore;
+			m_palette = palette;
+			m_prototypes = prototypes;
+		}
+
+		public ScatterPlot3DPointStore getPointStore() {
+			return m_pointStore;
+		}
+
+		public Color[] getPalette() {
+			return m_palette;
+		}
+
+		/**
+		 * @return the prototypes, or <code>null</code> if none were saved
+		 */
+		public Coord3d[] getPrototypes() {
+			return m_prototypes;
+		}
+	}
+
+	/**
+	 * Writes the binary internals file into <code>internDir</code>.
+	 *
+	 * @param prototypes the prototypes to save, may be <code>null</code>
+	 * @param compact whether to write the quantized and compressed format
+	 *            instead of the full precision one
+	 */
+	public static void save(final File internDir, final ScatterPlot3DPointStore pointStore, final Color[] palette,
+			final Coord3d[] prototypes, final boolean compact, final ExecutionMonitor exec)
+			throws IOException, CanceledExecutionException {
+		File file = new File(internDir, ScatterPlot3DSettings.BINARY_FILE_NAME);
+		if (compact) {
+			saveCompact(file, pointStore, palette, prototypes, exec);
+		} else {
+			saveFull(file, pointStore, palette, prototypes, exec);
+		}
+		File rowKeysFile = new File(internDir, ScatterPlot3DSettings.ROW_KEYS_FILE_NAME);
+		if (pointStore.getRowKeys() != null) {
+			saveRowKeys(rowKeysFile, pointStore.getRowKeys(), exec);
+		} else if (rowKeysFile.exists() && !rowKeysFile.delete()) {
+			throw new IOException("The outdated file " + rowKeysFile + " could not be deleted.");
+		}
+		exec.setProgress(1.0);
+	}
+
+	private static void saveFull(final File file, final ScatterPlot3DPointStore pointStore, final Color[] palette,
+			final Coord3d[] prototypes, final ExecutionMonitor exec) throws IOException, CanceledExecutionException {
+		int numPoints = pointStore.size();
+		int numPrototypes = prototypes == null ? 0 : prototypes.length;
+		try (RandomAccessFile output = new RandomAccessFile(file, "rw"); FileChannel channel = output.getChannel()) {
+			channel.truncate(0);
+			ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+			buffer.putInt(MAGIC).putInt(VERSION_FULL).putInt(numPoints).putInt(palette.length)
+					.putInt(numPrototypes);
+			writeFloats(channel, buffer, pointStore.getXValues(), numPoints, exec);
+			exec.setProgress(0.25);
+			writeFloats(channel, buffer, pointStore.getYValues(), numPoints, exec);
+			exec.setProgress(0.5);
+			writeFloats(channel, buffer, pointStore.getZValues(), numPoints, exec);
+			exec.setProgress(0.75);
+			writeInts(channel, buffer, pointStore.getColorIndices(), numPoints, exec);
+			float[] colorValues = new float[palette.length * 4];
+			for (int i = 0; i < palette.length; i++) {
+				colorValues[i * 4] = palette[i].r;
+				colorValues[i * 4 + 1] = palette[i].g;
+				colorValues[i * 4 + 2] = palette[i].b;
+				colorValues[i * 4 + 3] = palette[i].a;
+			}
+			writeFloats(channel, buffer, colorValues, colorValues.length, exec);
+			float[] prototypeValues = new float[numPrototypes * 3];
+			for (int i = 0; i < numPrototypes; i++) {
+				prototypeValues[i * 3] = prototypes[i].x;
+				prototypeValues[i * 3 + 1] = prototypes[i].y;
+				prototypeValues[i * 3 + 2] = prototypes[i].z;
+			}
+			writeFloats(channel, buffer, prototypeValues, prototypeValues.length, exec);
+			flush(channel, buffer);
+		}
+	}
+
+	private static void saveCompact(final File file, final ScatterPlot3DPointStore pointStore, final Color[] palette,
+			final Coord3d[] prototypes, final ExecutionMonitor exec) throws IOException, CanceledExecutionException {
+		int numPoints = pointStore.size();
+		int numPrototypes = prototypes == null ? 0 : prototypes.length;
+		int bitsPerColor = getBitsPerColor(palette.length);
+		float[][] values = { pointStore.getXValues(), pointStore.getYValues(), pointStore.getZValues() };
+		float[] min = new float[3];
+		float[] extent = new float[3];
+		for (int axis = 0; axis < 3; axis++) {
+			computeBounds(values[axis], numPoints, axis, min, extent);
+		}
+
+		Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+		try (BufferedOutputStream output = new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE)) {
+			DataOutputStream header = new DataOutputStream(output);
+			header.writeInt(MAGIC);
+			header.writeInt(VERSION_COMPACT);
+			header.writeInt(numPoints);
+			header.writeInt(palette.length);
+			header.writeInt(numPrototypes);
+			for (int axis = 0; axis < 3; axis++) {
+				header.writeFloat(min[axis]);
+			}
+			for (int axis = 0; axis < 3; axis++) {
+				header.writeFloat(extent[axis]);
+			}
+			header.writeInt(bitsPerColor);
+			header.flush();
+
+			DeflaterOutputStream deflated = new DeflaterOutputStream(output, deflater, BUFFER_SIZE);
+			CRC32 checksum = new CRC32();
+			DataOutputStream blocks = new DataOutputStream(new CheckedOutputStream(deflated, checksum));
+			byte[] chunk = new byte[CHUNK_POINTS * 2];
+			for (int axis = 0; axis < 3; axis++) {
+				for (int start = 0; start < numPoints; start += CHUNK_POINTS) {
+					exec.checkCanceled();
+					int length = Math.min(CHUNK_POINTS, numPoints - start);
+					for (int i = 0; i < length; i++) {
+						int quantized = quantize(values[axis][start + i], min[axis], extent[axis]);
+						chunk[i] = (byte) (quantized >>> 8);
+						chunk[length + i] = (byte) quantized;
+					}
+					blocks.write(chunk, 0, length * 2);
+				}
+				exec.setProgress(0.25 * (axis + 1));
+			}
+			writePackedIndices(blocks, pointStore.getColorIndices(), numPoints, bitsPerColor, chunk, exec);
+			for (Color color : palette) {
+				blocks.writeFloat(color.r);
+				blocks.writeFloat(color.g);
+				blocks.writeFloat(color.b);
+				blocks.writeFloat(color.a);
+			}
+			for (int i = 0; i < numPrototypes; i++) {
+				blocks.writeFloat(prototypes[i].x);
+				blocks.writeFloat(prototypes[i].y);
+				blocks.writeFloat(prototypes[i].z);
+			}
+			blocks.flush();
+			new DataOutputStream(deflated).writeInt((int) checksum.getValue());
+			deflated.finish();
+		} finally {
+			deflater.end();
+		}
+	}
+
+	private static void saveRowKeys(final File file, final ScatterPlot3DRowKeyIndex rowKeys,
+			final ExecutionMonitor exec) throws IOException, CanceledExecutionException {
+		int[] offsets = rowKeys.getOffsets();
+		Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+		try (BufferedOutputStream output = new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE)) {
+			DataOutputStream header = new DataOutputStream(output);
+			header.writeInt(ROW_KEYS_MAGIC);
+			header.writeInt(ROW_KEYS_VERSION);
+			header.writeInt(rowKeys.size());
+			header.writeInt(rowKeys.getNumBytes());
+			header.flush();
+
+			DeflaterOutputStream deflated = new DeflaterOutputStream(output, deflater, BUFFER_SIZE);
+			DataOutputStream blocks = new DataOutputStream(deflated);
+			for (int i = 0; i < rowKeys.size(); i++) {
+				if (i % CHUNK_POINTS == 0) {
+					exec.checkCanceled();
+				}
+				blocks.writeInt(offsets[i + 1] - offsets[i]);
+			}
+			blocks.write(rowKeys.getKeyBytes(), 0, rowKeys.getNumBytes());
+			blocks.flush();
+			deflated.finish();
+		} finally {
+			deflater.end();
+		}
+	}
+
+	/**
+	 * Computes the bounds of the finite values, so a single outlier such as
+	 * infinity does not collapse all other values onto one quantization step.
+	 */
+	private static void computeBounds(final float[] values, final int count, final int axis, final float[] min,
+			final float[] extent) {
+		float low = Float.POSITIVE_INFINITY;
+		float high = Float.NEGATIVE_INFINITY;
+		for (int i = 0; i < count; i++) {
+			float value = values[i];
+			if (value < low && !Float.isInfinite(value)) {
+				low = value;
+			}
+			if (value > high && !Float.isInfinite(value)) {
+				high = value;
+			}
+		}
+		if (low > high) {
+			low = 0f;
+			high = 0f;
+		}
+		min[axis] = low;
+		extent[axis] = high - low;
+	}
+
+	private static int quantize(final float value, final float min, final float extent) {
+		if (extent <= 0f || Float.isNaN(value)) {
+			return 0;
+		}
+		long quantized = Math.round((value - (double) min) / extent * QUANTIZATION_LEVELS);
+		return (int) Math.min(Math.max(quantized, 0), QUANTIZATION_LEVELS);
+	}
+
+	private static float dequantize(final int quantized, final float min, final float extent) {
+		return (float) (min + quantized * (double) extent / QUANTIZATION_LEVELS);
+	}
+
+	/**
+	 * @return the number of bits needed to store every index of a palette
+	 */
+	static int getBitsPerColor(final int numColors) {
+		return Math.max(1, 32 - Integer.numberOfLeadingZeros(Math.max(numColors - 1, 0)));
+	}
+
+	/**
+	 * Writes the indices least significant bit first, <code>bitsPerColor</code>
+	 * bits each, padding the last byte with zeros.
+	 */
+	private static void writePackedIndices(final DataOutputStream output, final int[] indices, final int count,
+			final int bitsPerColor, final byte[] chunk, final ExecutionMonitor exec)
+			throws IOException, CanceledExecutionException {
+		long bits = 0;
+		int numBits = 0;
+		int length = 0;
+		for (int i = 0; i < count; i++) {
+			bits |= (indices[i] & 0xFFFFFFFFL) << numBits;
+			numBits += bitsPerColor;
+			while (numBits >= 8) {
+				chunk[length++] = (byte) bits;
+				bits >>>= 8;
+				numBits -= 8;
+				if (length == chunk.length) {
+					output.write(chunk, 0, length);
+					length = 0;
+					exec.checkCanceled();
+				}
+			}
+		}
+		if (numBits > 0) {
+			chunk[length++] = (byte) bits;
+		}
+		output.write(chunk, 0, length);
+	}
+
+	private static int[] readPackedIndices(final DataInputStream input, final int count, final int bitsPerColor,
+			final byte[] chunk, final ExecutionMonitor exec) throws IOException, CanceledExecutionException {
+		int[] indices = new int[count];
+		long remainingBytes = ((long) count * bitsPerColor + 7) / 8;
+		long mask = (1L << bitsPerColor) - 1;
+		long bits = 0;
+		int numBits = 0;
+		int index = 0;
+		while (remainingBytes > 0) {
+			int length = (int) Math.min(chunk.length, remainingBytes);
+			input.readFully(chunk, 0, length);
+			remainingBytes -= length;
+			for (int i = 0; i < length; i++) {
+				bits |= (chunk[i] & 0xFFL) << numBits;
+				numBits += 8;
+				while (numBits >= bitsPerColor && index < count) {
+					indices[index++] = (int) (bits & mask);
+					bits >>>= bitsPerColor;
+					numBits -= bitsPerColor;
+				}
+			}
+			exec.checkCanceled();
+		}
+		return indices;
+	}
+
+	/**
+	 * Reads the internals from <code>internDir</code> onto the heap, falling
+	 * back to the XML file of older workflows. The node model defers this until
+	 * a view needs the points, see
+	 * {@link ScatterPlot3DNodeModel#loadInternalsAsync(Runnable)}, and no file
+	 * stays open or mapped once it returns.
+	 */
+	public static Internals load(final File internDir, final ExecutionMonitor exec)
+			throws IOException, CanceledExecutionException {
+		File binaryFile = new File(internDir, ScatterPlot3DSettings.BINARY_FILE_NAME);
+		if (binaryFile.isFile()) {
+			int version;
+			try (DataInputStream input = new DataInputStream(new FileInputStream(binaryFile))) {
+				if (binaryFile.length() < HEADER_SIZE || input.readInt() != MAGIC) {
+					throw new IOException("The file " + binaryFile + " does not contain 3D scatter plot internals.");
+				}
+				version = input.readInt();
+			}
+			Internals internals;
+			if (version == VERSION_FULL) {
+				internals = loadBinary(binaryFile, exec);
+			} else if (version == VERSION_COMPACT) {
+				internals = loadCompact(binaryFile, exec);
+			} else {
+				throw new IOException("The internals of this node were saved by a newer version (format " + version
+						+ ") and cannot be read.");
+			}
+			File rowKeysFile = new File(internDir, ScatterPlot3DSettings.ROW_KEYS_FILE_NAME);
+			if (rowKeysFile.isFile()) {
+				internals.getPointStore().setRowKeys(loadRowKeys(rowKeysFile, internals.getPointStore().size()));
+			}
+			return internals;
+		}
+		return loadLegacyXML(new File(internDir, ScatterPlot3DSettings.FILE_NAME), exec);
+	}
+
+	/**
+	 * Reads the full format through a direct buffer straight into the arrays of
+	 * the point store. The file is not memory mapped, as a mapping outlives the
+	 * closed channel until it is garbage collected and, on Windows, keeps the
+	 * file from being overwritten or deleted by the next save or reset.
+	 */
+	private static Internals loadBinary(final File file, final ExecutionMonitor exec)
+			throws IOException, CanceledExecutionException {
+		try (FileInputStream input = new FileInputStream(file); FileChannel channel = input.getChannel()) {
+			ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+			fill(channel, buffer, HEADER_SIZE);
+			buffer.position(8);
+			int numPoints = buffer.getInt();
+			int numColors = buffer.getInt();
+			int numPrototypes = buffer.getInt();
+			long expectedSize = HEADER_SIZE + 4L * (4L * numPoints + 4L * numColors + 3L * numPrototypes);
+			if (numPoints < 0 || numColors < 0 || numColors > Integer.MAX_VALUE / 4 || numPrototypes < 0
+					|| numPrototypes > Integer.MAX_VALUE / 3 || channel.size() < expectedSize) {
+				throw new IOException("The internals file " + file + " is truncated or corrupt.");
+			}
+
+			float[] xValues = readFloats(channel, buffer, numPoints, exec);
+			exec.setProgress(0.25);
+			float[] yValues = readFloats(channel, buffer, numPoints, exec);
+			exec.setProgress(0.5);
+			float[] zValues = readFloats(channel, buffer, numPoints, exec);
+			exec.setProgress(0.75);
+			int[] colorIndices = readInts(channel, buffer, numPoints, exec);
+			ScatterPlot3DPointStore pointStore = new ScatterPlot3DPointStore(xValues, yValues, zValues, colorIndices);
+
+			// the palette and prototypes are small, so they are decoded right away
+			float[] colorValues = readFloats(channel, buffer, numColors * 4, exec);
+			Color[] palette = new Color[numColors];
+			for (int i = 0; i < numColors; i++) {
+				palette[i] = new Color(colorValues[i * 4], colorValues[i * 4 + 1], colorValues[i * 4 + 2],
+						colorValues[i * 4 + 3]);
+			}
+			float[] prototypeValues = readFloats(channel, buffer, numPrototypes * 3, exec);
+			Coord3d[] prototypes = null;
+			if (numPrototypes > 0) {
+				prototypes = new Coord3d[numPrototypes];
+				for (int i = 0; i < numPrototypes; i++) {
+					prototypes[i] = new Coord3d(prototypeValues[i * 3], prototypeValues[i * 3 + 1],
+							prototypeValues[i * 3 + 2]);
+				}
+			}
+			exec.setProgress(1.0);
+			return new Internals(pointStore, palette, prototypes);
+		}
+	}
+
+	/**
+	 * Reads the compact format, inflating and dequantizing the blocks chunk by
+	 * chunk into the arrays of the point store, and verifies their checksum.
+	 */
+	private static Internals loadCompact(final File file, final ExecutionMonitor exec)
+			throws IOException, CanceledExecutionException {
+		Inflater inflater = new Inflater();
+		try (BufferedInputStream input = new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE)) {
+			DataInputStream header = new DataInputStream(input);
+			header.skipBytes(8);
+			int numPoints = header.readInt();
+			int numColors = header.readInt();
+			int numPrototypes = header.readInt();
+			float[] min = new float[3];
+			float[] extent = new float[3];
+			for (int axis = 0; axis < 3; axis++) {
+				min[axis] = header.readFloat();
+			}
+			for (int axis = 0; axis < 3; axis++) {
+				extent[axis] = header.readFloat();
+			}
+			int bitsPerColor = header.readInt();
+			if (numPoints < 0 || numColors < 0 || numPrototypes < 0 || bitsPerColor < 1 || bitsPerColor > 32) {
+				throw new IOException("The internals file " + file + " is corrupt.");
+			}
+
+			InflaterInputStream inflated = new InflaterInputStream(input, inflater, BUFFER_SIZE);
+			CRC32 checksum = new CRC32();
+			DataInputStream blocks = new DataInputStream(new CheckedInputStream(inflated, checksum));
+			byte[] chunk = new byte[CHUNK_POINTS * 2];
+			float[][] values = new float[3][numPoints];
+			for (int axis = 0; axis < 3; axis++) {
+				for (int start = 0; start < numPoints; start += CHUNK_POINTS) {
+					exec.checkCanceled();
+					int length = Math.min(CHUNK_POINTS, numPoints - start);
+					blocks.readFully(chunk, 0, length * 2);
+					for (int i = 0; i < length; i++) {
+						int quantized = (chunk[i] & 0xFF) << 8 | (chunk[length + i] & 0xFF);
+						values[axis][start + i] = dequantize(quantized, min[axis], extent[axis]);
+					}
+				}
+				exec.setProgress(0.25 * (axis + 1));
+			}
+			int[] colorIndices = readPackedIndices(blocks, numPoints, bitsPerColor, chunk, exec);
+			ScatterPlot3DPointStore pointStore = new ScatterPlot3DPointStore(values[0], values[1], values[2],
+					colorIndices);
+
+			Color[] palette = new Color[numColors];
+			for (int i = 0; i < numColors; i++) {
+				palette[i] = new Color(blocks.readFloat(), blocks.readFloat(), blocks.readFloat(), blocks.readFloat());
+			}
+			Coord3d[] prototypes = null;
+			if (numPrototypes > 0) {
+				prototypes = new Coord3d[numPrototypes];
+				for (int i = 0; i < numPrototypes; i++) {
+					prototypes[i] = new Coord3d(blocks.readFloat(), blocks.readFloat(), blocks.readFloat());
+				}
+			}
+			if (new DataInputStream(inflated).readInt() != (int) checksum.getValue()) {
+				throw new IOException("The internals file " + file + " is corrupt, its checksum does not match.");
+			}
+			exec.setProgress(1.0);
+			return new Internals(pointStore, palette, prototypes);
+		} catch (EOFException e) {
+			throw new IOException("The internals file " + file + " is truncated.", e);
+		} finally {
+			inflater.end();
+		}
+	}
+
+	private static ScatterPlot3DRowKeyIndex loadRowKeys(final File file, final int numPoints) throws IOException {
+		Inflater inflater = new Inflater();
+		try (BufferedInputStream input = new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE)) {
+			DataInputStream header = new DataInputStream(input);
+			if (header.readInt() != ROW_KEYS_MAGIC) {
+				throw new IOException("The file " + file + " does not contain the row keys of a 3D scatter plot.");
+			}
+			int version = header.readInt();
+			if (version != ROW_KEYS_VERSION) {
+				throw new IOException("The row keys of this node were saved by a newer version (format " + version
+						+ ") and cannot be read.");
+			}
+			int numKeys = header.readInt();
+			int numBytes = header.readInt();
+			if (numKeys != numPoints || numBytes < 0) {
+				throw new IOException("The row keys in " + file + " do not match the plotted points.");
+			}
+
+			DataInputStream blocks = new DataInputStream(new InflaterInputStream(input, inflater, BUFFER_SIZE));
+			int[] offsets = new int[numKeys + 1];
+			for (int i = 0; i < numKeys; i++) {
+				int length = blocks.readInt();
+				if (length < 0 || offsets[i] + (long) length > numBytes) {
+					throw new IOException("The row keys file " + file + " is corrupt.");
+				}
+				offsets[i + 1] = offsets[i] + length;
+			}
+			if (offsets[numKeys] != numBytes) {
+				throw new IOException("The row keys file " + file + " is corrupt.");
+			}
+			byte[] keyBytes = new byte[numBytes];
+			blocks.readFully(keyBytes);
+			return new ScatterPlot3DRowKeyIndex(keyBytes, offsets, numKeys);
+		} catch (EOFException e) {
+			throw new IOException("The row keys file " + file + " is truncated.", e);
+		} finally {
+			inflater.end();
+		}
+	}
+
+	/**
+	 * Reads the <code>ModelContent</code> XML file written by earlier versions,
+	 * which stored every value under its own key.
+	 */
+	private static Internals loadLegacyXML(final File file, final ExecutionMonitor exec)
+			throws IOException, CanceledExecutionException {
+		try (FileInputStream fis = new FileInputStream(file)) {
+			ModelContentRO modelContent = ModelContent.loadFromXML(fis);
+			try {
+				int numDataPoints = modelContent.getInt(ScatterPlot3DSettings.INTERNAL_NUM_PLOTTED_POINT);
+				ScatterPlot3DPointStore pointStore = new ScatterPlot3DPointStore(numDataPoints);
+				for (int i = 0; i < numDataPoints; i++) {
+					if (i % ScatterPlot3DPointIngester.PROGRESS_INTERVAL == 0) {
+						exec.checkCanceled();
+						exec.setProgress(i / (double) numDataPoints);
+					}
+					pointStore.addPoint((float) modelContent.getDouble(ScatterPlot3DSettings.INTERNAL_X_VAL + i),
+							(float) modelContent.getDouble(ScatterPlot3DSettings.INTERNAL_Y_VAL + i),
+							(float) modelContent.getDouble(ScatterPlot3DSettings.INTERNAL_Z_VAL + i),
+							modelContent.getShort(ScatterPlot3DSettings.INTERNAL_COLOR_INDEX + i));
+				}
+				int numColors = modelContent.getInt(ScatterPlot3DSettings.INTERNAL_NUM_COLORS);
+				Color[] palette = new Color[numColors];
+				for (int j = 0; j < numColors; j++) {
+					palette[j] = new Color(modelContent.getFloat(ScatterPlot3DSettings.INTERNAL_RED_VAL + j),
+							modelContent.getFloat(ScatterPlot3DSettings.INTERNAL_GREEN_VAL + j),
+							modelContent.getFloat(ScatterPlot3DSettings.INTERNAL_BLUE_VAL + j),
+							modelContent.getFloat(ScatterPlot3DSettings.INTERNAL_ALPHA_VAL + j));
+				}
+
+				Coord3d[] prototypes = null;
+				boolean hasStoredProtos = modelContent
+						.getBoolean(ScatterPlot3DSettings.INTERNAL_PROTO_POINTS_STORED_PROPERLY);
+				if (hasStoredProtos) {
+					// older versions saved one prototype more than they wrote
+					int numProtoPoints = modelContent.getInt(ScatterPlot3DSettings.INTERNAL_NUM_PROTO_POINTS);
+					while (numProtoPoints > 0 && !modelContent
+							.containsKey(ScatterPlot3DSettings.INTERNAL_PROTO_X_VAL + (numProtoPoints - 1))) {
+						numProtoPoints--;
+					}
+					prototypes = new Coord3d[numProtoPoints];
+					for (int k = 0; k < numProtoPoints; k++) {
+						prototypes[k] = new Coord3d(
+								modelContent.getDouble(ScatterPlot3DSettings.INTERNAL_PROTO_X_VAL + k),
+								modelContent.getDouble(ScatterPlot3DSettings.INTERNAL_PROTO_Y_VAL + k),
+								modelContent.getDouble(ScatterPlot3DSettings.INTERNAL_PROTO_Z_VAL + k));
+					}
+				}
+				exec.setProgress(1.0);
+				return new Internals(pointStore, palette, prototypes);
+			} catch (InvalidSettingsException e) {
+				throw new IOException("There was a problem loading the internal state of this node." + e);
+			}
+		}
+	}
+
+	private static void writeFloats(final FileChannel channel, final ByteBuffer buffer, final float[] values,
+			final int count, final ExecutionMonitor exec) throws IOException, CanceledExecutionException {
+		int written = 0;
+		while (written < count) {
+			if (buffer.remaining() < 4) {
+				flush(channel, buffer);
+				exec.checkCanceled();
+			}
+			int length = Math.min(buffer.remaining() / 4, count - written);
+			buffer.asFloatBuffer().put(values, written, length);
+			buffer.position(buffer.position() + length * 4);
+			written += length;
+		}
+	}
+
+	private static void writeInts(final FileChannel channel, final ByteBuffer buffer, final int[] values,
+			final int count, final ExecutionMonitor exec) throws IOException, CanceledExecutionException {
+		int written = 0;
+		while (written < count) {
+			if (buffer.remaining() < 4) {
+				flush(channel, buffer);
+				exec.checkCanceled();
+			}
+			int length = Math.min(buffer.remaining() / 4, count - written);
+			buffer.asIntBuffer().put(values, written, length);
+			buffer.position(buffer.position() + length * 4);
+			written += length;
+		}
+	}
+
+	private static void flush(final FileChannel channel, final ByteBuffer buffer) throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	private static float[] readFloats(final FileChannel channel, final ByteBuffer buffer, final int count,
+			final ExecutionMonitor exec) throws IOException, CanceledExecutionException {
+		float[] values = new float[count];
+		int read = 0;
+		while (read < count) {
+			int length = Math.min(buffer.capacity() / 4, count - read);
+			fill(channel, buffer, length * 4);
+			buffer.asFloatBuffer().get(values, read, length);
+			read += length;
+			exec.checkCanceled();
+		}
+		return values;
+	}
+
+	private static int[] readInts(final FileChannel channel, final ByteBuffer buffer, final int count,
+			final ExecutionMonitor exec) throws IOException, CanceledExecutionException {
+		int[] values = new int[count];
+		int read = 0;
+		while (read < count) {
+			int length = Math.min(buffer.capacity() / 4, count - read);
+			fill(channel, buffer, length * 4);
+			buffer.asIntBuffer().get(values, read, length);
+			read += length;
+			exec.checkCanceled();
+		}
+		return values;
+	}
+
+	/**
+	 * Reads exactly <code>length</code> bytes into the cleared buffer and flips
+	 * it for reading.
+	 */
+	private static void fill(final FileChannel channel, final ByteBuffer buffer, final int length)
+			throws IOException {
+		buffer.clear();
+		buffer.limit(length);
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer) < 0) {
+				throw new IOException("Unexpected end of the internals file.");
+			}
+		}
+		buffer.flip();
+	}
+}
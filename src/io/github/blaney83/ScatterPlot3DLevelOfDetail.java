@@ -0,0 +1,362 @@
+package io.github.blaney83;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Level of detail stage between the node model and the view. The points are
+ * binned into a 3D voxel grid spanning their bounding box, and every voxel
+ * keeps one representative (the centroid) per cluster together with the number
+ * of points it stands for. Points colored by the continuous scale of a
+ * {@link ScatterPlot3DColorMap} share one representative per voxel, drawn in
+ * their mean palette index. Starting at the finest grid resolution, the
+ * resolution is halved until a level fits the point budget. The view draws
+ * the finest level within its budget, while the full resolution data stays in
+ * the model. Points with a NaN or infinite coordinate have no voxel and are
+ * left out of every level, so the counts of a level add up to the number of
+ * finite points.
+ *
+ * @author Benjamin Laney
+ */
+public class ScatterPlot3DLevelOfDetail {
+
+	private final ScatterPlot3DPointStore m_fullResolution;
+	private final List<ScatterPlot3DPointStore> m_levels = new ArrayList<ScatterPlot3DPointStore>();
+	private final List<int[]> m_levelCounts = new ArrayList<int[]>();
+	// for every point the level was built from, the index of its representative or -1
+	private final List<int[]> m_levelSources = new ArrayList<int[]>();
+	private final List<Integer> m_levelResolutions = new ArrayList<Integer>();
+	private final int m_numScaleColors;
+
+	private float m_minX;
+	private float m_minY;
+	private float m_minZ;
+	private float m_extentX;
+	private float m_extentY;
+	private float m_extentZ;
+
+	/**
+	 * Builds all levels needed to bring the points below
+	 * <code>pointBudget</code>. No levels are built if the full resolution data
+	 * already fits.
+	 *
+	 * @param finestResolution the number of voxels per axis of the finest level
+	 */
+	public ScatterPlot3DLevelOfDetail(final ScatterPlot3DPointStore fullResolution, final int finestResolution,
+			final int pointBudget) {
+		this(fullResolution, finestResolution, pointBudget, 0);
+	}
+
+	/**
+	 * @param numScaleColors the number of leading palette indices forming a
+	 *            continuous scale rather than clusters, 0 if there is none
+	 */
+	public ScatterPlot3DLevelOfDetail(final ScatterPlot3DPointStore fullResolution, final int finestResolution,
+			final int pointBudget, final int numScaleColors) {
+		m_fullResolution = fullResolution;
+		m_numScaleColors = numScaleColors;
+		if (fullResolution.size() <= pointBudget) {
+			return;
+		}
+		computeBounds();
+		ScatterPlot3DPointStore source = fullResolution;
+		int[] sourceCounts = null;
+		int resolution = Math.max(finestResolution, 1);
+		while (true) {
+			int[][] counts = new int[1][];
+			int[] sources = new int[source.size()];
+			ScatterPlot3DPointStore level = aggregate(source, sourceCounts, resolution, counts, sources);
+			m_levels.add(level);
+			m_levelCounts.add(counts[0]);
+			m_levelSources.add(sources);
+			m_levelResolutions.add(resolution);
+			if (level.size() <= pointBudget || resolution == 1) {
+				break;
+			}
+			// coarser levels are built from the representatives of the finer one
+			source = level;
+			sourceCounts = counts[0];
+			resolution /= 2;
+		}
+	}
+
+	private void computeBounds() {
+		float[] bounds = new float[2];
+		computeBounds(m_fullResolution.getXValues(), m_fullResolution.size(), bounds);
+		m_minX = bounds[0];
+		m_extentX = bounds[1];
+		computeBounds(m_fullResolution.getYValues(), m_fullResolution.size(), bounds);
+		m_minY = bounds[0];
+		m_extentY = bounds[1];
+		computeBounds(m_fullResolution.getZValues(), m_fullResolution.size(), bounds);
+		m_minZ = bounds[0];
+		m_extentZ = bounds[1];
+	}
+
+	/**
+	 * Computes the minimum and extent of the finite values, so a single NaN or
+	 * infinite coordinate does not put all other points into one cell.
+	 */
+	private static void computeBounds(final float[] values, final int count, final float[] bounds) {
+		float low = Float.POSITIVE_INFINITY;
+		float high = Float.NEGATIVE_INFINITY;
+		for (int i = 0; i < count; i++) {
+			float value = values[i];
+			if (value < low && !Float.isInfinite(value)) {
+				low = value;
+			}
+			if (value > high && !Float.isInfinite(value)) {
+				high = value;
+			}
+		}
+		if (low > high) {
+			low = 0f;
+			high = 0f;
+		}
+		bounds[0] = low;
+		// flat axes still need a non-zero extent to be binned
+		bounds[1] = high > low ? high - low : 1f;
+	}
+
+	/**
+	 * @param sourcesOut receives the index of the representative of every
+	 *            source point, -1 for those left out
+	 */
+	private ScatterPlot3DPointStore aggregate(final ScatterPlot3DPointStore source, final int[] sourceCounts,
+			final int resolution, final int[][] countsOut, final int[] sourcesOut) {
+		int maxColorIndex = 0;
+		int[] colorIndices = source.getColorIndices();
+		for (int i = 0; i < source.size(); i++) {
+			maxColorIndex = Math.max(maxColorIndex, colorIndices[i]);
+		}
+		long colorSlots = maxColorIndex + 1L;
+		float[] xValues = source.getXValues();
+		float[] yValues = source.getYValues();
+		float[] zValues = source.getZValues();
+
+		VoxelMap voxels = new VoxelMap(Math.min(source.size(), 1 << 20));
+		for (int i = 0; i < source.size(); i++) {
+			if (!isFinite(xValues[i]) || !isFinite(yValues[i]) || !isFinite(zValues[i])) {
+				sourcesOut[i] = -1;
+				continue;
+			}
+			long cell = (((long) toCell(xValues[i], m_minX, m_extentX, resolution) * resolution
+					+ toCell(yValues[i], m_minY, m_extentY, resolution)) * resolution
+					+ toCell(zValues[i], m_minZ, m_extentZ, resolution));
+			int weight = sourceCounts == null ? 1 : sourceCounts[i];
+			int colorSlot = colorIndices[i] < m_numScaleColors ? 0 : colorIndices[i];
+			sourcesOut[i] = voxels.add(cell * colorSlots + colorSlot, xValues[i], yValues[i], zValues[i], weight,
+					colorIndices[i]);
+		}
+
+		ScatterPlot3DPointStore level = new ScatterPlot3DPointStore(voxels.size());
+		int[] counts = new int[voxels.size()];
+		for (int slot = 0; slot < voxels.size(); slot++) {
+			int count = voxels.m_counts[slot];
+			// the points of a cluster voxel all have the same index
+			level.addPoint((float) (voxels.m_sumX[slot] / count), (float) (voxels.m_sumY[slot] / count),
+					(float) (voxels.m_sumZ[slot] / count), (int) Math.round(voxels.m_sumColorIndices[slot] / count));
+			counts[slot] = count;
+		}
+		countsOut[0] = counts;
+		return level;
+	}
+
+	private static boolean isFinite(final float value) {
+		return !Float.isNaN(value) && !Float.isInfinite(value);
+	}
+
+	private static int toCell(final float value, final float min, final float extent, final int resolution) {
+		int cell = (int) ((value - min) / extent * resolution);
+		return Math.min(Math.max(cell, 0), resolution - 1);
+	}
+
+	/**
+	 * @return the most detailed points with at most <code>pointBudget</code>
+	 *         entries; when even the coarsest level is too large it is thinned
+	 *         out evenly
+	 */
+	public ScatterPlot3DPointStore getPointsForBudget(final int pointBudget) {
+		if (m_fullResolution.size() <= pointBudget) {
+			return m_fullResolution;
+		}
+		for (ScatterPlot3DPointStore level : m_levels) {
+			if (level.size() <= pointBudget) {
+				return level;
+			}
+		}
+		ScatterPlot3DPointStore coarsest = m_levels.isEmpty() ? m_fullResolution : m_levels.get(m_levels.size() - 1);
+		ScatterPlot3DPointStore thinned = new ScatterPlot3DPointStore(pointBudget);
+		double stride = coarsest.size() / (double) Math.max(pointBudget, 1);
+		for (int i = 0; i < pointBudget; i++) {
+			int index = (int) (i * stride);
+			thinned.addPoint(coarsest.getX(index), coarsest.getY(index), coarsest.getZ(index),
+					coarsest.getColorIndex(index));
+		}
+		return thinned;
+	}
+
+	/**
+	 * @return for every point of a store of the given size its index after
+	 *         thinning the store out evenly as {@link #getPointsForBudget(int)}
+	 *         does, or -1 if it is dropped
+	 */
+	private static int[] getThinnedIndices(final int size, final int pointBudget) {
+		int[] indices = new int[size];
+		Arrays.fill(indices, -1);
+		double stride = size / (double) Math.max(pointBudget, 1);
+		for (int i = 0; i < pointBudget; i++) {
+			indices[(int) (i * stride)] = i;
+		}
+		return indices;
+	}
+
+	/**
+	 * Maps the full resolution points to the points returned by
+	 * {@link #getPointsForBudget(int)} for the same budget.
+	 *
+	 * @return the index of the point standing for every full resolution point,
+	 *         or -1 if no point does (it has a NaN or infinite coordinate, or
+	 *         was thinned out); <code>null</code> if the full resolution points
+	 *         fit the budget themselves
+	 */
+	public int[] getPlottedIndices(final int pointBudget) {
+		if (m_fullResolution.size() <= pointBudget) {
+			return null;
+		}
+		if (m_levels.isEmpty()) {
+			return getThinnedIndices(m_fullResolution.size(), pointBudget);
+		}
+		int[] plotted = m_levelSources.get(0).clone();
+		for (int level = 0; m_levels.get(level).size() > pointBudget; level++) {
+			// the next finer level is too large, follow the points into the next coarser one
+			int[] next = level + 1 < m_levels.size() ? m_levelSources.get(level + 1)
+					: getThinnedIndices(m_levels.get(level).size(), pointBudget);
+			for (int point = 0; point < plotted.length; point++) {
+				if (plotted[point] != -1) {
+					plotted[point] = next[plotted[point]];
+				}
+			}
+			if (level + 1 == m_levels.size()) {
+				break;
+			}
+		}
+		return plotted;
+	}
+
+	public int getNumLevels() {
+		return m_levels.size();
+	}
+
+	public ScatterPlot3DPointStore getLevel(final int level) {
+		return m_levels.get(level);
+	}
+
+	/**
+	 * @return the number of full resolution points each representative of the
+	 *         level stands for
+	 */
+	public int[] getLevelCounts(final int level) {
+		return m_levelCounts.get(level);
+	}
+
+	public int getLevelResolution(final int level) {
+		return m_levelResolutions.get(level);
+	}
+
+	/**
+	 * Open addressing hash map from a voxel/cluster key to the running sums of
+	 * the points falling into it, avoiding a boxed entry per voxel.
+	 */
+	private static final class VoxelMap {
+		private long[] m_keys;
+		private int[] m_slots;
+		private double[] m_sumX;
+		private double[] m_sumY;
+		private double[] m_sumZ;
+		private double[] m_sumColorIndices;
+		private int[] m_counts;
+		private int m_size;
+
+		private VoxelMap(final int expectedSize) {
+			int capacity = Integer.highestOneBit(Math.max(expectedSize, 8) * 2 - 1) << 1;
+			m_keys = new long[capacity];
+			m_slots = new int[capacity];
+			Arrays.fill(m_slots, -1);
+			int valueCapacity = Math.max(expectedSize, 8);
+			m_sumX = new double[valueCapacity];
+			m_sumY = new double[valueCapacity];
+			m_sumZ = new double[valueCapacity];
+			m_sumColorIndices = new double[valueCapacity];
+			m_counts = new int[valueCapacity];
+		}
+
+		private int size() {
+			return m_size;
+		}
+
+		/**
+		 * @return the slot of the key
+		 */
+		private int add(final long key, final float x, final float y, final float z, final int weight,
+				final int colorIndex) {
+			int mask = m_keys.length - 1;
+			int bucket = mix(key) & mask;
+			while (m_slots[bucket] != -1 && m_keys[bucket] != key) {
+				bucket = (bucket + 1) & mask;
+			}
+			int slot = m_slots[bucket];
+			if (slot == -1) {
+				if (m_size == m_counts.length) {
+					growValues();
+				}
+				slot = m_size++;
+				m_keys[bucket] = key;
+				m_slots[bucket] = slot;
+				if (m_size * 2 > m_keys.length) {
+					rehash();
+				}
+			}
+			m_sumX[slot] += (double) x * weight;
+			m_sumY[slot] += (double) y * weight;
+			m_sumZ[slot] += (double) z * weight;
+			m_sumColorIndices[slot] += (double) colorIndex * weight;
+			m_counts[slot] += weight;
+			return slot;
+		}
+
+		private void growValues() {
+			int capacity = m_counts.length * 2;
+			m_sumX = Arrays.copyOf(m_sumX, capacity);
+			m_sumY = Arrays.copyOf(m_sumY, capacity);
+			m_sumZ = Arrays.copyOf(m_sumZ, capacity);
+			m_sumColorIndices = Arrays.copyOf(m_sumColorIndices, capacity);
+			m_counts = Arrays.copyOf(m_counts, capacity);
+		}
+
+		private void rehash() {
+			long[] oldKeys = m_keys;
+			int[] oldSlots = m_slots;
+			m_keys = new long[oldKeys.length * 2];
+			m_slots = new int[oldSlots.length * 2];
+			Arrays.fill(m_slots, -1);
+			int mask = m_keys.length - 1;
+			for (int i = 0; i < oldKeys.length; i++) {
+				if (oldSlots[i] != -1) {
+					int bucket = mix(oldKeys[i]) & mask;
+					while (m_slots[bucket] != -1) {
+						bucket = (bucket + 1) & mask;
+					}
+					m_keys[bucket] = oldKeys[i];
+					m_slots[bucket] = oldSlots[i];
+				}
+			}
+		}
+
+		private static int mix(final long key) {
+			long hash = key * 0x9E3779B97F4A7C15L;
+			return (int) (hash ^ (hash >>> 32));
+		}
+	}
+}
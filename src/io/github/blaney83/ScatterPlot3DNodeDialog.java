@@ -43,6 +43,8 @@ import org.knime.core.node.util.filter.column.DataColumnSpecFilterPanel;
  */
 public class ScatterPlot3DNodeDialog extends NodeDialogPane {
 
+	private static final String NO_COLOR_COLUMN = "<none>";
+
 	private final ScatterPlot3DSettings m_settings = new ScatterPlot3DSettings();
 
 	private final DataColumnSpecFilterPanel m_colSelectionPanel = new DataColumnSpecFilterPanel();
@@ -50,14 +52,35 @@ public class ScatterPlot3DNodeDialog extends NodeDialogPane {
 	private JComboBox m_clusterType = new JComboBox();
 	private JSpinner m_numClusters = new JSpinner(new SpinnerNumberModel(2, 2, Integer.MAX_VALUE, 1));
 	private final JCheckBox m_prototypesProvided = new JCheckBox();
+	private JComboBox m_colorColumn = new JComboBox();
+	private JComboBox m_colorMap = new JComboBox();
+	private final JCheckBox m_reportTimings = new JCheckBox();
+	private JComboBox m_internalsPrecision = new JComboBox();
 //	m_clusterType
 
 	private JCheckBox m_showAllData = new JCheckBox();
 	private final JSpinner m_count = new JSpinner(
 			new SpinnerNumberModel(ScatterPlot3DSettings.DEFAULT_COUNT, 1, Integer.MAX_VALUE, 1));
+	private JComboBox m_samplingMode = new JComboBox();
+	private final JSpinner m_samplingSeed = new JSpinner(new SpinnerNumberModel(
+			ScatterPlot3DSettings.DEFAULT_SAMPLING_SEED, Integer.MIN_VALUE, Integer.MAX_VALUE, 1));
 	private JCheckBox m_dbPlotNoiseMembers = new JCheckBox();
 	private final JSpinner m_dataPointSize = new JSpinner(
 			new SpinnerNumberModel(ScatterPlot3DSettings.DEFAULT_DATA_POINT_SIZE, 1, Integer.MAX_VALUE, 1));
+	private final JSpinner m_pointBudget = new JSpinner(
+			new SpinnerNumberModel(ScatterPlot3DSettings.DEFAULT_POINT_BUDGET, 1, Integer.MAX_VALUE, 1000));
+	private final JSpinner m_lodResolution = new JSpinner(new SpinnerNumberModel(
+			ScatterPlot3DSettings.DEFAULT_LOD_RESOLUTION, 1, ScatterPlot3DSettings.MAX_LOD_RESOLUTION, 1));
+	private JComboBox m_renderingMode = new JComboBox();
+	private final JSpinner m_detailThreshold = new JSpinner(new SpinnerNumberModel(
+			ScatterPlot3DSettings.DEFAULT_DETAIL_THRESHOLD, 0, ScatterPlot3DSettings.MAX_DETAIL_THRESHOLD, 1));
+	private final JSpinner m_densityResolution = new JSpinner(new SpinnerNumberModel(
+			ScatterPlot3DSettings.DEFAULT_DENSITY_RESOLUTION, 1, ScatterPlot3DSettings.MAX_DENSITY_RESOLUTION, 1));
+	private final JSpinner m_interactionPointThreshold = new JSpinner(new SpinnerNumberModel(
+			ScatterPlot3DSettings.DEFAULT_INTERACTION_POINT_THRESHOLD, 0, Integer.MAX_VALUE, 10000));
+	private final JSpinner m_interactionIdleMillis = new JSpinner(new SpinnerNumberModel(
+			ScatterPlot3DSettings.DEFAULT_INTERACTION_IDLE_MILLIS, 0, Integer.MAX_VALUE, 50));
+	private final JCheckBox m_interactionDecimate = new JCheckBox();
 	private final JSpinner m_prototypePointSize = new JSpinner(
 			new SpinnerNumberModel(ScatterPlot3DSettings.DEFAULT_PROTOTYPE_POINT_SIZE, 1, Integer.MAX_VALUE, 1));
 	private final JColorChooser m_prototypePointColor = new JColorChooser(
@@ -65,10 +88,33 @@ public class ScatterPlot3DNodeDialog extends NodeDialogPane {
 	private final JColorChooser m_dbNoiseMemberColor = new JColorChooser(
 			ScatterPlot3DSettings.DEFAULT_DBSCAN_NOISE_MEMBER_COLOR);
 
+	// image
+	private final JCheckBox m_createImage = new JCheckBox();
+	private final JSpinner m_imageWidth = new JSpinner(new SpinnerNumberModel(
+			ScatterPlot3DSettings.DEFAULT_IMAGE_WIDTH, 1, ScatterPlot3DSettings.MAX_IMAGE_SIZE, 10));
+	private final JSpinner m_imageHeight = new JSpinner(new SpinnerNumberModel(
+			ScatterPlot3DSettings.DEFAULT_IMAGE_HEIGHT, 1, ScatterPlot3DSettings.MAX_IMAGE_SIZE, 10));
+	private final JSpinner m_imageAzimuth = new JSpinner(
+			new SpinnerNumberModel(ScatterPlot3DSettings.DEFAULT_IMAGE_AZIMUTH, 0, 359, 5));
+	private final JSpinner m_imageElevation = new JSpinner(
+			new SpinnerNumberModel(ScatterPlot3DSettings.DEFAULT_IMAGE_ELEVATION, -90, 90, 5));
+
 	protected ScatterPlot3DNodeDialog() {
 		for(String clusterType : ScatterPlot3DSettings.DEFAULT_CLUSTER_TYPES_ARRAY) {
 			m_clusterType.addItem(clusterType);
 		}
+		for (String samplingMode : ScatterPlot3DSettings.DEFAULT_SAMPLING_MODES_ARRAY) {
+			m_samplingMode.addItem(samplingMode);
+		}
+		for (String precision : ScatterPlot3DSettings.DEFAULT_INTERNALS_PRECISIONS_ARRAY) {
+			m_internalsPrecision.addItem(precision);
+		}
+		for (String renderingMode : ScatterPlot3DSettings.DEFAULT_RENDERING_MODES_ARRAY) {
+			m_renderingMode.addItem(renderingMode);
+		}
+		for (String colorMap : ScatterPlot3DSettings.DEFAULT_COLOR_MAPS_ARRAY) {
+			m_colorMap.addItem(colorMap);
+		}
 
 		m_colSelectionPanel.setIncludeTitle("Choose three columns (X, Y, Z)");
 		m_colSelectionPanel.setExcludeTitle("Excluded from model");
@@ -114,6 +160,7 @@ public class ScatterPlot3DNodeDialog extends NodeDialogPane {
 					m_clusterType.setEnabled(false);
 					m_numClusters.setEnabled(false);
 				}
+				updateColorControls();
 
 			}
 		});
@@ -171,6 +218,38 @@ public class ScatterPlot3DNodeDialog extends NodeDialogPane {
 			}
 		});
 
+		constraints.gridy++;
+		constraints.gridx = 0;
+		panel.add(new JLabel("Color points by column (without clustering)"), constraints);
+		constraints.gridx = 1;
+		panel.add(m_colorColumn, constraints);
+
+		m_colorColumn.addActionListener(new ActionListener() {
+
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				updateColorControls();
+			}
+		});
+
+		constraints.gridy++;
+		constraints.gridx = 0;
+		panel.add(new JLabel("Color map"), constraints);
+		constraints.gridx = 1;
+		panel.add(m_colorMap, constraints);
+
+		constraints.gridy++;
+		constraints.gridx = 0;
+		panel.add(new JLabel("Report execution timings as a warning"), constraints);
+		constraints.gridx = 1;
+		panel.add(m_reportTimings, constraints);
+
+		constraints.gridy++;
+		constraints.gridx = 0;
+		panel.add(new JLabel("Precision of the saved plot"), constraints);
+		constraints.gridx = 1;
+		panel.add(m_internalsPrecision, constraints);
+
 		addTab("General", panel);
 
 //		view tab
@@ -192,8 +271,13 @@ public class ScatterPlot3DNodeDialog extends NodeDialogPane {
 
 				if (m_showAllData.isSelected()) {
 					m_count.setEnabled(false);
+					m_samplingMode.setEnabled(false);
+					m_samplingSeed.setEnabled(false);
 				} else {
 					m_count.setEnabled(true);
+					m_samplingMode.setEnabled(true);
+					m_samplingSeed.setEnabled(!m_samplingMode.getSelectedItem().toString()
+							.equals(ScatterPlot3DSettings.SAMPLING_MODE_FIRST_ROWS));
 				}
 
 			}
@@ -206,6 +290,29 @@ public class ScatterPlot3DNodeDialog extends NodeDialogPane {
 		panel.add(m_count, constraints);
 		m_count.setEnabled(false);
 
+		constraints.gridy++;
+		constraints.gridx = 0;
+		panel.add(new JLabel("How to choose the plotted points"), constraints);
+		constraints.gridx = 1;
+		panel.add(m_samplingMode, constraints);
+		m_samplingMode.setEnabled(false);
+
+		m_samplingMode.addActionListener(new ActionListener() {
+
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				m_samplingSeed.setEnabled(m_samplingMode.isEnabled() && !m_samplingMode.getSelectedItem().toString()
+						.equals(ScatterPlot3DSettings.SAMPLING_MODE_FIRST_ROWS));
+			}
+		});
+
+		constraints.gridy++;
+		constraints.gridx = 0;
+		panel.add(new JLabel("Random seed"), constraints);
+		constraints.gridx = 1;
+		panel.add(m_samplingSeed, constraints);
+		m_samplingSeed.setEnabled(false);
+
 		constraints.gridy++;
 		constraints.gridx = 0;
 		panel.add(new JLabel("Plot members of the noise cluster"), constraints);
@@ -232,6 +339,61 @@ public class ScatterPlot3DNodeDialog extends NodeDialogPane {
 		constraints.gridx = 1;
 		panel.add(m_dataPointSize, constraints);
 
+		constraints.gridy++;
+		constraints.gridx = 0;
+		panel.add(new JLabel("Maximum number of points drawn"), constraints);
+		constraints.gridx = 1;
+		panel.add(m_pointBudget, constraints);
+
+		constraints.gridy++;
+		constraints.gridx = 0;
+		panel.add(new JLabel("Level of detail grid resolution"), constraints);
+		constraints.gridx = 1;
+		panel.add(m_lodResolution, constraints);
+
+		constraints.gridy++;
+		constraints.gridx = 0;
+		panel.add(new JLabel("Rendering mode"), constraints);
+		constraints.gridx = 1;
+		panel.add(m_renderingMode, constraints);
+		m_renderingMode.addActionListener(new ActionListener() {
+
+			@Override
+			public void actionPerformed(final ActionEvent e) {
+				updateRenderingControls();
+			}
+		});
+
+		constraints.gridy++;
+		constraints.gridx = 0;
+		panel.add(new JLabel("Merge regions smaller than (in pixels)"), constraints);
+		constraints.gridx = 1;
+		panel.add(m_detailThreshold, constraints);
+
+		constraints.gridy++;
+		constraints.gridx = 0;
+		panel.add(new JLabel("Density grid resolution"), constraints);
+		constraints.gridx = 1;
+		panel.add(m_densityResolution, constraints);
+
+		constraints.gridy++;
+		constraints.gridx = 0;
+		panel.add(new JLabel("Fast rendering while rotating above (points)"), constraints);
+		constraints.gridx = 1;
+		panel.add(m_interactionPointThreshold, constraints);
+
+		constraints.gridy++;
+		constraints.gridx = 0;
+		panel.add(new JLabel("Draw fewer points while rotating"), constraints);
+		constraints.gridx = 1;
+		panel.add(m_interactionDecimate, constraints);
+
+		constraints.gridy++;
+		constraints.gridx = 0;
+		panel.add(new JLabel("Restore full quality after (in milliseconds)"), constraints);
+		constraints.gridx = 1;
+		panel.add(m_interactionIdleMillis, constraints);
+
 		constraints.gridy++;
 		constraints.gridx = 0;
 		panel.add(new JLabel("Prototype point size"), constraints);
@@ -253,6 +415,70 @@ public class ScatterPlot3DNodeDialog extends NodeDialogPane {
 		panel.add(m_dbNoiseMemberColor, constraints);
 
 		addTab("View", panel);
+
+//		image tab
+		panel = new JPanel(new GridBagLayout());
+
+		constraints = new GridBagConstraints();
+
+		constraints.anchor = GridBagConstraints.NORTHWEST;
+		constraints.gridx = 0;
+		constraints.gridy = 0;
+
+		panel.add(new JLabel("Create image"), constraints);
+		constraints.gridx = 1;
+		panel.add(m_createImage, constraints);
+		m_createImage.addActionListener(new ActionListener() {
+
+			@Override
+			public void actionPerformed(final ActionEvent e) {
+				updateImageControls();
+			}
+		});
+
+		constraints.gridy++;
+		constraints.gridx = 0;
+		panel.add(new JLabel("Image width (in pixels)"), constraints);
+		constraints.gridx = 1;
+		panel.add(m_imageWidth, constraints);
+
+		constraints.gridy++;
+		constraints.gridx = 0;
+		panel.add(new JLabel("Image height (in pixels)"), constraints);
+		constraints.gridx = 1;
+		panel.add(m_imageHeight, constraints);
+
+		constraints.gridy++;
+		constraints.gridx = 0;
+		panel.add(new JLabel("Camera azimuth (in degrees)"), constraints);
+		constraints.gridx = 1;
+		panel.add(m_imageAzimuth, constraints);
+
+		constraints.gridy++;
+		constraints.gridx = 0;
+		panel.add(new JLabel("Camera elevation (in degrees)"), constraints);
+		constraints.gridx = 1;
+		panel.add(m_imageElevation, constraints);
+
+		addTab("Image", panel);
+	}
+
+	private void updateColorControls() {
+		m_colorColumn.setEnabled(!m_isClustered.isSelected());
+		m_colorMap.setEnabled(!m_isClustered.isSelected() && m_colorColumn.getSelectedIndex() > 0);
+	}
+
+	private void updateImageControls() {
+		m_imageWidth.setEnabled(m_createImage.isSelected());
+		m_imageHeight.setEnabled(m_createImage.isSelected());
+		m_imageAzimuth.setEnabled(m_createImage.isSelected());
+		m_imageElevation.setEnabled(m_createImage.isSelected());
+	}
+
+	private void updateRenderingControls() {
+		Object renderingMode = m_renderingMode.getSelectedItem();
+		m_detailThreshold.setEnabled(ScatterPlot3DSettings.RENDERING_MODE_VBO.equals(renderingMode));
+		m_densityResolution.setEnabled(ScatterPlot3DSettings.RENDERING_MODE_DENSITY.equals(renderingMode));
 	}
 
 	@Override
@@ -282,14 +508,49 @@ public class ScatterPlot3DNodeDialog extends NodeDialogPane {
 		m_clusterType.getModel().setSelectedItem(m_settings.getClusterType());
 		m_numClusters.setValue(m_settings.getNumClusters());
 		m_prototypesProvided.setSelected(m_settings.getPrototypesProvided());
+		m_colorColumn.removeAllItems();
+		m_colorColumn.addItem(NO_COLOR_COLUMN);
+		for (DataColumnSpec colSpec : tableSpec) {
+			if (colSpec.getType().isCompatible(DoubleValue.class)) {
+				m_colorColumn.addItem(colSpec.getName());
+			}
+		}
+		m_colorColumn.getModel().setSelectedItem(m_settings.getColorColumn().isEmpty() ? NO_COLOR_COLUMN
+				: m_settings.getColorColumn());
+		m_colorMap.getModel().setSelectedItem(m_settings.getColorMap());
+		updateColorControls();
+		m_reportTimings.setSelected(m_settings.getReportTimings());
+		m_internalsPrecision.getModel().setSelectedItem(m_settings.getInternalsPrecision());
 
 		m_showAllData.setSelected(m_settings.getShowAllData());
 		m_count.setValue(m_settings.getCount());
+		m_samplingMode.getModel().setSelectedItem(m_settings.getSamplingMode());
+		m_samplingSeed.setValue(m_settings.getSamplingSeed());
+		m_count.setEnabled(!m_settings.getShowAllData());
+		m_samplingMode.setEnabled(!m_settings.getShowAllData());
+		m_samplingSeed.setEnabled(!m_settings.getShowAllData()
+				&& !m_settings.getSamplingMode().equals(ScatterPlot3DSettings.SAMPLING_MODE_FIRST_ROWS));
 		m_dbPlotNoiseMembers.setSelected(m_settings.getDBSCANPlotNoise());
 		m_dataPointSize.setValue(m_settings.getDataPointSize());
+		m_pointBudget.setValue(m_settings.getPointBudget());
+		m_lodResolution.setValue(m_settings.getLODResolution());
+		m_renderingMode.getModel().setSelectedItem(m_settings.getRenderingMode());
+		m_detailThreshold.setValue(m_settings.getDetailThreshold());
+		m_densityResolution.setValue(m_settings.getDensityResolution());
+		updateRenderingControls();
+		m_interactionPointThreshold.setValue(m_settings.getInteractionPointThreshold());
+		m_interactionDecimate.setSelected(m_settings.getInteractionDecimate());
+		m_interactionIdleMillis.setValue(m_settings.getInteractionIdleMillis());
 		m_prototypePointSize.setValue(m_settings.getPrototypePointSize());
 		m_prototypePointColor.setColor(m_settings.getPrototypePointColor());
 		m_dbNoiseMemberColor.setColor(m_settings.getDBNoiseMemberColor());
+
+		m_createImage.setSelected(m_settings.getCreateImage());
+		m_imageWidth.setValue(m_settings.getImageWidth());
+		m_imageHeight.setValue(m_settings.getImageHeight());
+		m_imageAzimuth.setValue(m_settings.getImageAzimuth());
+		m_imageElevation.setValue(m_settings.getImageElevation());
+		updateImageControls();
 	}
 
 	@Override
@@ -311,15 +572,36 @@ public class ScatterPlot3DNodeDialog extends NodeDialogPane {
 		m_settings.setClusterType(m_clusterType.getSelectedItem().toString());
 		m_settings.setNumClusters((int) m_numClusters.getValue());
 		m_settings.setPrototypesProvided(m_prototypesProvided.isSelected());
+		m_settings.setColorColumn(m_colorColumn.getSelectedIndex() > 0 ? m_colorColumn.getSelectedItem().toString()
+				: ScatterPlot3DSettings.DEFAULT_COLOR_COLUMN);
+		m_settings.setColorMap(m_colorMap.getSelectedItem().toString());
+		m_settings.setReportTimings(m_reportTimings.isSelected());
+		m_settings.setInternalsPrecision(m_internalsPrecision.getSelectedItem().toString());
 
 		m_settings.setShowAllData(m_showAllData.isSelected());
 		m_settings.setCount((int) m_count.getModel().getValue());
+		m_settings.setSamplingMode(m_samplingMode.getSelectedItem().toString());
+		m_settings.setSamplingSeed((int) m_samplingSeed.getValue());
 		m_settings.setDBSCANPlotNoise(m_dbPlotNoiseMembers.isSelected());
 		m_settings.setDataPointSize((int) m_dataPointSize.getValue());
+		m_settings.setPointBudget((int) m_pointBudget.getValue());
+		m_settings.setLODResolution((int) m_lodResolution.getValue());
+		m_settings.setRenderingMode(m_renderingMode.getSelectedItem().toString());
+		m_settings.setDetailThreshold((int) m_detailThreshold.getValue());
+		m_settings.setDensityResolution((int) m_densityResolution.getValue());
+		m_settings.setInteractionPointThreshold((int) m_interactionPointThreshold.getValue());
+		m_settings.setInteractionDecimate(m_interactionDecimate.isSelected());
+		m_settings.setInteractionIdleMillis((int) m_interactionIdleMillis.getValue());
 		m_settings.setPrototypePointSize((int) m_prototypePointSize.getValue());
 		m_settings.setPrototypePointColor(m_prototypePointColor.getColor());
 		m_settings.setDBNoiseMemberColor(m_dbNoiseMemberColor.getColor());
 
+		m_settings.setCreateImage(m_createImage.isSelected());
+		m_settings.setImageWidth((int) m_imageWidth.getValue());
+		m_settings.setImageHeight((int) m_imageHeight.getValue());
+		m_settings.setImageAzimuth((int) m_imageAzimuth.getValue());
+		m_settings.setImageElevation((int) m_imageElevation.getValue());
+
 		m_colSelectionPanel.saveConfiguration(m_settings.getFilterConfiguration());
 
 		m_settings.saveSettingsTo(settings);
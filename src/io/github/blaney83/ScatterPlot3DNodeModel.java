@@ -1,27 +1,63 @@
 package io.github.blaney83;
 
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import javax.imageio.ImageIO;
+import javax.swing.SwingUtilities;
 
 import org.jzy3d.colors.Color;
 import org.jzy3d.maths.Coord3d;
+import org.knime.core.data.DataCell;
+import org.knime.core.data.DataColumnSpec;
 import org.knime.core.data.DataRow;
 import org.knime.core.data.DataTableSpec;
 import org.knime.core.data.DoubleValue;
+import org.knime.core.data.RowKey;
+import org.knime.core.data.container.CloseableRowIterator;
+import org.knime.core.data.container.filter.TableFilter;
+import org.knime.core.data.image.png.PNGImageContent;
+import org.knime.core.data.property.ColorAttr;
 import org.knime.core.node.BufferedDataTable;
 import org.knime.core.node.CanceledExecutionException;
+import org.knime.core.node.DefaultNodeProgressMonitor;
 
 import org.knime.core.node.ExecutionContext;
 import org.knime.core.node.ExecutionMonitor;
 import org.knime.core.node.InvalidSettingsException;
-import org.knime.core.node.ModelContent;
-import org.knime.core.node.ModelContentRO;
 import org.knime.core.node.ModelContentWO;
+import org.knime.core.node.NodeLogger;
 import org.knime.core.node.NodeModel;
 import org.knime.core.node.NodeSettingsRO;
 import org.knime.core.node.NodeSettingsWO;
+import org.knime.core.node.port.PortObject;
+import org.knime.core.node.port.PortObjectSpec;
+import org.knime.core.node.port.PortType;
+import org.knime.core.node.port.image.ImagePortObject;
+import org.knime.core.node.port.image.ImagePortObjectSpec;
+import org.knime.core.node.port.inactive.InactiveBranchPortObject;
+import org.knime.core.node.port.inactive.InactiveBranchPortObjectSpec;
+import org.knime.core.node.property.hilite.HiLiteHandler;
+import org.knime.core.node.streamable.InputPortRole;
+import org.knime.core.node.streamable.OutputPortRole;
+import org.knime.core.node.streamable.PartitionInfo;
+import org.knime.core.node.streamable.PortInput;
+import org.knime.core.node.streamable.PortObjectInput;
+import org.knime.core.node.streamable.PortObjectOutput;
+import org.knime.core.node.streamable.PortOutput;
+import org.knime.core.node.streamable.RowInput;
+import org.knime.core.node.streamable.RowOutput;
+import org.knime.core.node.streamable.StreamableOperator;
 
 /**
  * This is the model implementation of ScatterPlot3D. A 3 Dimensional
@@ -30,11 +66,35 @@ import org.knime.core.node.NodeSettingsWO;
  * @author Benjamin Laney
  */
 public class ScatterPlot3DNodeModel extends NodeModel {
+
+	private static final NodeLogger LOGGER = NodeLogger.getLogger(ScatterPlot3DNodeModel.class);
+
+	// progress fractions of the execution phases
+	private static final double PALETTE_PROGRESS = 0.05;
+	private static final double INGEST_PROGRESS = 0.75;
+	private static final double COMPACTION_PROGRESS = 0.05;
+	private static final double PROTOTYPE_PROGRESS = 0.05;
+	private static final double OUTPUT_PROGRESS = 0.05;
+	private static final double IMAGE_PROGRESS = 0.05;
+
+	// points of recent executions, shared by all instances of the node
+	private static final ScatterPlot3DPointCache POINT_CACHE = new ScatterPlot3DPointCache(8, 256L << 20);
+
+	// reads the internals of loaded workflows off the UI thread
+	private static final ExecutorService INTERNALS_LOADER = Executors.newCachedThreadPool(new ThreadFactory() {
+
+		@Override
+		public Thread newThread(final Runnable runnable) {
+			Thread thread = new Thread(runnable, "ScatterPlot3D internals loader");
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+
 	// considerations:
 	// maybe include key for cluster colors
 	// maybe include settings for point transparency (alpha)
 	// maybe add settings for prototype color and size
-	// maybe use color mapper for points w/o clustering
 	// should be handling or catching mis-matched numClusters before they get to
 	// Graph
 	// allow color picking for non-clustered data
@@ -47,52 +107,350 @@ public class ScatterPlot3DNodeModel extends NodeModel {
 	ScatterPlot3DSettings m_settings = new ScatterPlot3DSettings();
 
 	// view dependent fields
-	private Coord3d[] m_dataPoints;
+	private ScatterPlot3DPointStore m_pointStore;
+	// the fingerprint of the points this node put into the cache, evicted when it is disposed
+	private ScatterPlot3DInputFingerprint m_cachedFingerprint;
 	private Color[] m_dataPointColors;
-	private short[] m_dataPointColorIndicies;
 	private Coord3d[] m_protoTypePoints;
+	private ScatterPlot3DClusterDictionary m_clusterDictionary;
+	private ScatterPlot3DColorMap m_colorMap;
+	private ScatterPlot3DLevelOfDetail m_levelOfDetail;
+	private ScatterPlot3DColorBuffer m_colorBuffer;
+	private ScatterPlot3DOctree m_octree;
+	// held while the octree is built, so that it is built once without blocking the model
+	private final Object m_octreeLock = new Object();
+	// the points recolored while the octree is built, null while none is built
+	private BitSet m_recoloredWhileBuilding;
+	private ScatterPlot3DDensityGrid m_densityGrid;
+	// held while the density grid is built, like m_octreeLock
+	private final Object m_densityGridLock = new Object();
+
+	// internals of a loaded workflow that are only read once a view needs them
+	private File m_pendingInternalsDir;
+	private DefaultNodeProgressMonitor m_internalsProgress;
+	private final List<Runnable> m_internalsListeners = new ArrayList<Runnable>();
+	private String m_internalsError;
 
 	private int m_xColIndex = -1;
 	private int m_yColIndex = -1;
 	private int m_zColIndex = -1;
 	private int m_clusterColumnIndex = -1;
+	private int m_colorColumnIndex = -1;
 
 	private int m_xColProtoIndex = -1;
 	private int m_yColProtoIndex = -1;
 	private int m_zColProtoIndex = -1;
 
 	protected ScatterPlot3DNodeModel() {
-		super(2, 1);
+		super(new PortType[] { BufferedDataTable.TYPE, BufferedDataTable.TYPE },
+				new PortType[] { BufferedDataTable.TYPE, ImagePortObject.TYPE });
 	}
 
 	@Override
-	protected BufferedDataTable[] execute(final BufferedDataTable[] inData, final ExecutionContext exec)
-			throws Exception {
-		coordPointFactory(inData);
-		BufferedDataTable bufferedOutput;
-		bufferedOutput = exec.createBufferedDataTable(inData[ScatterPlot3DSettings.MAIN_DATA_TABLE_IN_PORT], exec);
-		return new BufferedDataTable[] { bufferedOutput };
+	protected PortObject[] execute(final PortObject[] inObjects, final ExecutionContext exec) throws Exception {
+		BufferedDataTable[] inData = new BufferedDataTable[inObjects.length];
+		for (int i = 0; i < inObjects.length; i++) {
+			inData[i] = (BufferedDataTable) inObjects[i];
+		}
+		ScatterPlot3DPhaseTimer timer = new ScatterPlot3DPhaseTimer();
+		coordPointFactory(inData, exec, timer);
+		createOutput(exec.createSubProgress(OUTPUT_PROGRESS), timer);
+		PortObject image = createImage(exec.createSubProgress(IMAGE_PROGRESS), timer);
+		reportExecution(timer);
+		// the table is passed on unaltered, so there is no need to copy it
+		return new PortObject[] { inData[ScatterPlot3DSettings.MAIN_DATA_TABLE_IN_PORT], image };
 	}
 
-	private void coordPointFactory(final BufferedDataTable[] inData)
-			throws InvalidSettingsException, IndexOutOfBoundsException {
+	@Override
+	public InputPortRole[] getInputPortRoles() {
+		return new InputPortRole[] { InputPortRole.NONDISTRIBUTED_STREAMABLE,
+				InputPortRole.NONDISTRIBUTED_NONSTREAMABLE };
+	}
+
+	@Override
+	public OutputPortRole[] getOutputPortRoles() {
+		return new OutputPortRole[] { OutputPortRole.NONDISTRIBUTED, OutputPortRole.NONDISTRIBUTED };
+	}
+
+	@Override
+	public StreamableOperator createStreamableOperator(final PartitionInfo partitionInfo,
+			final PortObjectSpec[] inSpecs) throws InvalidSettingsException {
+		return new StreamableOperator() {
+
+			@Override
+			public void runFinal(final PortInput[] inputs, final PortOutput[] outputs, final ExecutionContext exec)
+					throws Exception {
+				RowInput rowInput = (RowInput) inputs[ScatterPlot3DSettings.MAIN_DATA_TABLE_IN_PORT];
+				RowOutput rowOutput = (RowOutput) outputs[0];
+				ScatterPlot3DPhaseTimer timer = new ScatterPlot3DPhaseTimer();
+				timer.start("Building color palette");
+				ScatterPlot3DPointIngester ingester = prepareIngest(rowInput.getDataTableSpec(), null,
+						exec.createSubProgress(PALETTE_PROGRESS));
+				timer.stop(0);
+				// the row count is unknown up front, so the store grows as rows arrive
+				ScatterPlot3DPointSampler sampler = createSampler();
+				ScatterPlot3DPointSink sink = sampler;
+				if (sampler == null) {
+					m_pointStore = new ScatterPlot3DPointStore();
+					sink = m_pointStore;
+				}
+				long numPoints = m_settings.getShowAllData() || sampler != null ? Long.MAX_VALUE
+						: m_settings.getCount();
+				long rowsConsidered = 0;
+				long rowsStreamed = 0;
+				timer.start("Reading data table");
+				// the row count of a stream is unknown, so only the rows read are reported
+				ExecutionMonitor ingestExec = exec.createSubProgress(INGEST_PROGRESS);
+				DataRow row;
+				while ((row = rowInput.poll()) != null) {
+					if (rowsConsidered < numPoints) {
+						ingester.ingestRow(row, sink);
+						rowsConsidered++;
+					}
+					rowOutput.push(row);
+					if (++rowsStreamed % ScatterPlot3DPointIngester.PROGRESS_INTERVAL == 0) {
+						ingestExec.checkCanceled();
+						ingestExec.setMessage("Read " + rowsStreamed + " rows");
+					}
+				}
+				rowInput.close();
+				rowOutput.close();
+				if (sampler != null) {
+					m_pointStore = sampler.toPointStore();
+				}
+				timer.stop(rowsStreamed);
+				timer.start("Compacting points");
+				finishIngest();
+				timer.stop(m_pointStore.size());
+				exec.setProgress(PALETTE_PROGRESS + INGEST_PROGRESS + COMPACTION_PROGRESS);
+				if (inputs.length > 1 && inputs[ScatterPlot3DSettings.PROTOTYPE_TABLE_IN_PORT] != null) {
+					PortObjectInput prototypeInput = (PortObjectInput) inputs[ScatterPlot3DSettings.PROTOTYPE_TABLE_IN_PORT];
+					timer.start("Reading prototype table");
+					readPrototypes((BufferedDataTable) prototypeInput.getPortObject(),
+							exec.createSubProgress(PROTOTYPE_PROGRESS));
+					timer.stop(m_protoTypePoints == null ? 0 : m_protoTypePoints.length);
+				}
+				createOutput(exec.createSubProgress(OUTPUT_PROGRESS), timer);
+				((PortObjectOutput) outputs[1]).setPortObject(createImage(exec.createSubProgress(IMAGE_PROGRESS),
+						timer));
+				reportExecution(timer);
+			}
+		};
+	}
+
+	private void coordPointFactory(final BufferedDataTable[] inData, final ExecutionContext exec,
+			final ScatterPlot3DPhaseTimer timer) throws Exception {
 		BufferedDataTable mainDataTable = inData[ScatterPlot3DSettings.MAIN_DATA_TABLE_IN_PORT];
-		int numPoints = m_settings.getCount();
-		int totalPointsCreated = 0;
-		if (m_settings.getShowAllData()) {
-			numPoints = (int) mainDataTable.size();
+		timer.start("Fingerprinting input");
+		int[] plottedColumns;
+		if (m_settings.getIsClustered()) {
+			plottedColumns = new int[] { m_xColIndex, m_yColIndex, m_zColIndex, m_clusterColumnIndex };
+		} else if (m_settings.isColoredByColumn()) {
+			plottedColumns = new int[] { m_xColIndex, m_yColIndex, m_zColIndex, m_colorColumnIndex };
+		} else {
+			plottedColumns = new int[] { m_xColIndex, m_yColIndex, m_zColIndex };
+		}
+		ScatterPlot3DInputFingerprint fingerprint = ScatterPlot3DInputFingerprint.create(mainDataTable,
+				plottedColumns, m_settings, exec.createSubProgress(0));
+		ScatterPlot3DPointCache.Entry cached = POINT_CACHE.get(fingerprint);
+		timer.stop(ScatterPlot3DInputFingerprint.getNumSampledRows(mainDataTable.size()));
+
+		if (cached != null) {
+			LOGGER.info("The inputs are unchanged since an earlier execution, reusing its "
+					+ cached.getPointStore().size() + " points.");
+			m_pointStore = cached.getPointStore();
+			m_clusterDictionary = cached.getClusterDictionary();
+			m_colorMap = cached.getColorMap();
+			// the noise color and color map are not part of the fingerprint, only the palette is rebuilt
+			m_dataPointColors = m_colorMap != null ? ScatterPlot3DColorMap.createPalette(m_settings.getColorMap())
+					: createPalette(cached.getPalette().length);
+			exec.setProgress(PALETTE_PROGRESS + INGEST_PROGRESS + COMPACTION_PROGRESS);
+		} else {
+			timer.start("Building color palette");
+			ScatterPlot3DPointIngester ingester = prepareIngest(mainDataTable.getDataTableSpec(), mainDataTable,
+					exec.createSubProgress(PALETTE_PROGRESS));
+			timer.stop(0);
+
+			timer.start("Reading data table");
+			ExecutionMonitor ingestExec = exec.createSubProgress(INGEST_PROGRESS);
+			ScatterPlot3DPointSampler sampler = createSampler();
+			long rowsRead;
+			if (sampler == null) {
+				rowsRead = m_settings.getShowAllData() ? mainDataTable.size()
+						: Math.min(m_settings.getCount(), mainDataTable.size());
+				m_pointStore = ingester.ingest(mainDataTable, rowsRead, ingestExec);
+			} else {
+				rowsRead = mainDataTable.size();
+				ingester.ingestAll(mainDataTable, sampler, ingestExec);
+				m_pointStore = sampler.toPointStore();
+			}
+			timer.stop(rowsRead);
+
+			timer.start("Compacting points");
+			ExecutionMonitor compactionExec = exec.createSubProgress(COMPACTION_PROGRESS);
+			compactionExec.checkCanceled();
+			finishIngest();
+			compactionExec.setProgress(1.0);
+			timer.stop(m_pointStore.size());
+			POINT_CACHE.put(fingerprint, new ScatterPlot3DPointCache.Entry(m_pointStore, m_dataPointColors,
+					m_settings.getIsClustered() ? m_clusterDictionary : null, m_colorMap));
+			m_cachedFingerprint = fingerprint;
 		}
-		m_dataPoints = new Coord3d[numPoints];
-		m_dataPointColorIndicies = new short[numPoints];
+
+		ExecutionMonitor prototypeExec = exec.createSubProgress(PROTOTYPE_PROGRESS);
+		if (inData.length > 1) {
+			timer.start("Reading prototype table");
+			readPrototypes(inData[ScatterPlot3DSettings.PROTOTYPE_TABLE_IN_PORT], prototypeExec);
+			timer.stop(m_protoTypePoints == null ? 0 : m_protoTypePoints.length);
+		}
+		prototypeExec.setProgress(1.0);
+	}
+
+	private void createOutput(final ExecutionMonitor exec, final ScatterPlot3DPhaseTimer timer)
+			throws CanceledExecutionException {
+		timer.start("Creating output");
+		exec.checkCanceled();
+		exec.setProgress("Building level of detail");
+		m_levelOfDetail = createLevelOfDetail();
+		exec.setProgress(0.8, "Expanding point colors");
+		m_colorBuffer = createColorBuffer();
+		m_octree = null;
+		m_densityGrid = null;
+		exec.setProgress(1.0);
+		timer.stop(m_pointStore.size());
+	}
+
+	/**
+	 * Renders the plotted points without OpenGL into the image of the second
+	 * out port, so the plot is available on machines without a display.
+	 *
+	 * @return the image, or an inactive port object if no image is created
+	 */
+	private PortObject createImage(final ExecutionMonitor exec, final ScatterPlot3DPhaseTimer timer)
+			throws Exception {
+		if (!m_settings.getCreateImage()) {
+			exec.setProgress(1.0);
+			return InactiveBranchPortObject.INSTANCE;
+		}
+		timer.start("Rendering image");
+		exec.checkCanceled();
+		java.awt.Color prototypeColor = m_settings.getPrototypePointColor();
+		Coord3d[] prototypes = m_settings.getPrototypesProvided() ? m_protoTypePoints : null;
+		ScatterPlot3DSoftwareRenderer renderer = new ScatterPlot3DSoftwareRenderer(m_settings.getImageWidth(),
+				m_settings.getImageHeight(), m_settings.getImageAzimuth(), m_settings.getImageElevation());
+		BufferedImage image = renderer.render(m_colorBuffer, m_settings.getDataPointSize(), prototypes,
+				new Color(prototypeColor.getRed(), prototypeColor.getGreen(), prototypeColor.getBlue(),
+						prototypeColor.getAlpha()),
+				m_settings.getPrototypePointSize(), new String[] { m_settings.getXAxisVarColumn(),
+						m_settings.getYAxisVarColumn(), m_settings.getZAxisVarColumn() },
+				exec.createSubProgress(0.9));
+		exec.setProgress(0.9, "Encoding image");
+		ByteArrayOutputStream png = new ByteArrayOutputStream();
+		ImageIO.write(image, "png", png);
+		exec.setProgress(1.0);
+		timer.stop(m_colorBuffer.getPoints().size());
+		return new ImagePortObject(new PNGImageContent(png.toByteArray()), createImageSpec());
+	}
+
+	private static ImagePortObjectSpec createImageSpec() {
+		return new ImagePortObjectSpec(PNGImageContent.TYPE);
+	}
+
+	private PortObjectSpec createImagePortSpec() {
+		return m_settings.getCreateImage() ? createImageSpec() : InactiveBranchPortObjectSpec.INSTANCE;
+	}
+
+	/**
+	 * Logs the phase timings and shows the warnings collected during execution.
+	 */
+	private void reportExecution(final ScatterPlot3DPhaseTimer timer) {
+		LOGGER.info("Execution timings of the 3D scatter plot:\n" + timer.getSummary());
+		StringBuilder warning = new StringBuilder();
+		if (m_pointStore.getMissingCount() > 0) {
+			warning.append(m_pointStore.getMissingCount()
+					+ " row(s) with missing values in the plotted columns have been skipped.");
+		}
+		if (m_settings.getReportTimings()) {
+			if (warning.length() > 0) {
+				warning.append('\n');
+			}
+			warning.append(timer.getSummary());
+		}
+		if (warning.length() > 0) {
+			setWarningMessage(warning.toString());
+		}
+	}
+
+	/**
+	 * Builds the cluster dictionary or color map and the color palette and
+	 * creates the ingester for the main data table.
+	 *
+	 * @param mainDataTable the table, or <code>null</code> when the rows are
+	 *            streamed and the cluster labels or color range must come from
+	 *            the domain
+	 */
+	private ScatterPlot3DPointIngester prepareIngest(final DataTableSpec mainTableSpec,
+			final BufferedDataTable mainDataTable, final ExecutionMonitor exec)
+			throws InvalidSettingsException, CanceledExecutionException {
 		int numColors = 1;
-		if (m_settings.getIsClustered()) {
-			numColors = m_settings.getNumClusters();
-			if (m_settings.getClusterType().equals("DBSCAN") && m_settings.getDBSCANPlotNoise()
-					&& m_settings.getDBSCANPlotNoise()) {
+		m_colorMap = null;
+		if (m_settings.isColoredByColumn()) {
+			if (m_colorColumnIndex == -1) {
+				throw new InvalidSettingsException(
+						"The column to color the points by could not be found at runtime. Please reconfigure node");
+			}
+			if (mainDataTable != null) {
+				m_colorMap = ScatterPlot3DColorMap.create(mainDataTable, m_colorColumnIndex, exec);
+			} else {
+				m_colorMap = ScatterPlot3DColorMap
+						.createFromDomain(mainTableSpec.getColumnSpec(m_colorColumnIndex));
+			}
+			if (m_colorMap == null) {
+				throw new InvalidSettingsException("The domain of the column \"" + m_settings.getColorColumn()
+						+ "\" to color the points by has no bounds, which are required when the node is streamed. "
+						+ "Please recalculate the domain of the table or execute the node without streaming.");
+			}
+		} else if (m_settings.getIsClustered()) {
+			if (m_clusterColumnIndex == -1) {
+				throw new InvalidSettingsException(
+						"Cluster memberships could not be determined at runtime. Please reconfigure node");
+			}
+			boolean detectNoise = m_settings.getClusterType().equals("DBSCAN");
+			DataColumnSpec clusterSpec = mainTableSpec.getColumnSpec(m_clusterColumnIndex);
+			int tableId = mainDataTable == null ? -1 : mainDataTable.getBufferedTableId();
+			if (m_clusterDictionary == null || !m_clusterDictionary.isValidFor(clusterSpec, tableId, detectNoise)) {
+				if (mainDataTable != null) {
+					m_clusterDictionary = ScatterPlot3DClusterDictionary.create(mainDataTable,
+							m_clusterColumnIndex, detectNoise, exec);
+				} else {
+					m_clusterDictionary = ScatterPlot3DClusterDictionary.createFromDomain(clusterSpec, detectNoise);
+				}
+			}
+			if (m_clusterDictionary == null) {
+				throw new InvalidSettingsException("The domain of the cluster column \"" + clusterSpec.getName()
+						+ "\" does not list its possible values, which is required when the node is streamed. "
+						+ "Please recalculate the domain of the table or execute the node without streaming.");
+			}
+			// a mis-entered number of clusters must not leave labels without a color
+			numColors = Math.max(m_settings.getNumClusters(), m_clusterDictionary.getNumClusters());
+			if (detectNoise && m_settings.getDBSCANPlotNoise()) {
 				numColors++;
 			}
 		}
-		m_dataPointColors = new Color[numColors];
+		m_dataPointColors = m_colorMap != null ? ScatterPlot3DColorMap.createPalette(m_settings.getColorMap())
+				: createPalette(numColors);
+		exec.setProgress(1.0);
+		return new ScatterPlot3DPointIngester(m_settings, m_xColIndex, m_yColIndex, m_zColIndex,
+				m_clusterColumnIndex, m_clusterDictionary, m_dataPointColors.length - 1, m_colorColumnIndex,
+				m_colorMap);
+	}
+
+	/**
+	 * Creates the palette with one color per cluster; for DBSCAN data plotting
+	 * the noise cluster, the last color is the noise color.
+	 */
+	private Color[] createPalette(final int numColors) {
+		Color[] palette = new Color[numColors];
 		int[] colorVals = new int[] { 246, 0, 0, 246, 246, 0, 246, 123, 0, 246, 123, 123, 123, 123, 0, 246, 164, 82,
 				164, 82, 0 };
 		int firstCount = 0;
@@ -109,113 +467,110 @@ public class ScatterPlot3DNodeModel extends NodeModel {
 				masterCount = 0;
 				shader += (1 - shader) / 2;
 			}
-			m_dataPointColors[i] = new Color((int) Math.round((colorVals[firstCount % 3 + masterCount] * shader)),
+			palette[i] = new Color((int) Math.round((colorVals[firstCount % 3 + masterCount] * shader)),
 					(int) Math.round((colorVals[secondCount % 3 + masterCount] * shader)),
 					(int) Math.round((colorVals[thirdCount % 3 + masterCount] * shader)), opacity);
 			firstCount++;
 			secondCount++;
 			thirdCount++;
 		}
-		int dbNonNoiseCount = 0;
-		for (DataRow row : mainDataTable) {
-			if (totalPointsCreated >= numPoints) {
-				break;
-			}
-			if (!m_settings.getIsClustered()) {
-				m_dataPoints[totalPointsCreated] = new Coord3d(Double.valueOf(row.getCell(m_xColIndex).toString()),
-						Double.valueOf(row.getCell(m_yColIndex).toString()),
-						Double.valueOf(row.getCell(m_zColIndex).toString()));
-				m_dataPointColorIndicies[totalPointsCreated] = 0;
-			} else {
-				if (m_settings.getIsClustered() && m_clusterColumnIndex > -1) {
-					String[] clusterMembership = row.getCell(m_clusterColumnIndex).toString().toLowerCase().split("_");
-					if (m_settings.getClusterType().equals("DBSCAN")) {
-						if (!m_settings.getDBSCANPlotNoise()) {
-							if (clusterMembership.length == 1) {
-								totalPointsCreated++;
-								continue;
-							}
-							m_dataPoints[totalPointsCreated] = new Coord3d(
-									Double.valueOf(row.getCell(m_xColIndex).toString()),
-									Double.valueOf(row.getCell(m_yColIndex).toString()),
-									Double.valueOf(row.getCell(m_zColIndex).toString()));
-							m_dataPointColorIndicies[totalPointsCreated] = Short.valueOf(clusterMembership[1]);
-							dbNonNoiseCount++;
-						} else {
-							if (clusterMembership.length == 1) {
-								m_dataPointColorIndicies[totalPointsCreated] = Short
-										.valueOf(String.valueOf((m_dataPointColors.length - 1)));
-							} else {
-								m_dataPointColorIndicies[totalPointsCreated] = Short.valueOf(clusterMembership[1]);
-							}
-							m_dataPoints[totalPointsCreated] = new Coord3d(
-									Double.valueOf(row.getCell(m_xColIndex).toString()),
-									Double.valueOf(row.getCell(m_yColIndex).toString()),
-									Double.valueOf(row.getCell(m_zColIndex).toString()));
-							// update the final color
-							m_dataPointColors[m_dataPointColors.length - 1] = new Color(
-									m_settings.getDBNoiseMemberColor().getRed(),
-									m_settings.getDBNoiseMemberColor().getBlue(),
-									m_settings.getDBNoiseMemberColor().getGreen(),
-									m_settings.getDBNoiseMemberColor().getAlpha());
-						}
-					} else {
-						m_dataPoints[totalPointsCreated] = new Coord3d(
-								Double.valueOf(row.getCell(m_xColIndex).toString()),
-								Double.valueOf(row.getCell(m_yColIndex).toString()),
-								Double.valueOf(row.getCell(m_zColIndex).toString()));
-						m_dataPointColorIndicies[totalPointsCreated] = Short.valueOf(clusterMembership[1]);
-					}
-				} else if (m_settings.getIsClustered() && m_clusterColumnIndex == -1) {
-					throw new InvalidSettingsException(
-							"Cluster memberships could not be determined at runtime. Please reconfigure node");
-				}
-			}
-			totalPointsCreated++;
-		}
-
-		// restructure data arrays to handle DBSCAN no-noise plots
-		if (m_settings.getClusterType().equals("DBSCAN") && !m_settings.getDBSCANPlotNoise()
-				&& m_settings.getShowAllData() && dbNonNoiseCount > 0) {
-			System.out.println("Fired");
-			Coord3d[] placeHolderCoords = new Coord3d[dbNonNoiseCount];
-			short[] placeHolderIndicies = new short[dbNonNoiseCount];
-			int resizeCount = 0;
-			for (int j = 0; j < numPoints; j++) {
-				if (m_dataPoints[j] != null) {
-					placeHolderCoords[resizeCount] = m_dataPoints[j];
-					placeHolderIndicies[resizeCount] = m_dataPointColorIndicies[j];
-					resizeCount++;
+		boolean isDBSCAN = m_settings.getIsClustered() && m_settings.getClusterType().equals("DBSCAN");
+		if (isDBSCAN && m_settings.getDBSCANPlotNoise()) {
+			// the final color is reserved for members of the noise cluster
+			palette[palette.length - 1] = new Color(m_settings.getDBNoiseMemberColor().getRed(),
+					m_settings.getDBNoiseMemberColor().getBlue(), m_settings.getDBNoiseMemberColor().getGreen(),
+					m_settings.getDBNoiseMemberColor().getAlpha());
+		}
+		return palette;
+	}
+
+	/**
+	 * @return the sampler for the configured sampling mode, or <code>null</code>
+	 *         if the first rows of the table are plotted
+	 */
+	private ScatterPlot3DPointSampler createSampler() {
+		String samplingMode = m_settings.getSamplingMode();
+		if (m_settings.getShowAllData() || samplingMode.equals(ScatterPlot3DSettings.SAMPLING_MODE_FIRST_ROWS)) {
+			return null;
+		}
+		// the palette of a color map holds value ranges, not clusters to stratify by
+		if (samplingMode.equals(ScatterPlot3DSettings.SAMPLING_MODE_STRATIFIED) && m_colorMap == null) {
+			return ScatterPlot3DPointSampler.createStratified(m_settings.getCount(), m_dataPointColors.length,
+					m_settings.getSamplingSeed());
+		}
+		return ScatterPlot3DPointSampler.createReservoir(m_settings.getCount(), m_settings.getSamplingSeed());
+	}
+
+	private void finishIngest() {
+		m_pointStore.trimToSize();
+	}
+
+	private void readPrototypes(final BufferedDataTable prototypeTable, final ExecutionMonitor exec)
+			throws CanceledExecutionException {
+		if (!m_settings.getPrototypesProvided()) {
+			return;
+		}
+		// could use user provided cluster number and catch errors, but using ProtoTable
+		// size instead
+		int trueClusterNumber = (int) prototypeTable.size();
+		m_protoTypePoints = new Coord3d[trueClusterNumber];
+		int count = 0;
+		int[] materializedColumns = ScatterPlot3DPointIngester.getColumnIndices(m_xColProtoIndex,
+				m_yColProtoIndex, m_zColProtoIndex);
+		try (CloseableRowIterator rows = prototypeTable.filter(TableFilter.materializeCols(materializedColumns))) {
+			while (rows.hasNext()) {
+				exec.checkCanceled();
+				DataRow row = rows.next();
+				DataCell xCell = row.getCell(m_xColProtoIndex);
+				DataCell yCell = row.getCell(m_yColProtoIndex);
+				DataCell zCell = row.getCell(m_zColProtoIndex);
+				if (xCell.isMissing() || yCell.isMissing() || zCell.isMissing()) {
+					continue;
 				}
-			}
-			m_dataPoints = placeHolderCoords;
-			m_dataPointColorIndicies = placeHolderIndicies;
-		}
-
-		if (inData.length > 1 && m_settings.getPrototypesProvided()) {
-			BufferedDataTable prototypeTable = inData[ScatterPlot3DSettings.PROTOTYPE_TABLE_IN_PORT];
-			// could use user provided cluster number and catch errors, but using ProtoTable
-			// size instead
-			int trueClusterNumber = (int) prototypeTable.size();
-			m_protoTypePoints = new Coord3d[trueClusterNumber];
-			int count = 0;
-			for (DataRow row : prototypeTable) {
-				m_protoTypePoints[count] = new Coord3d(Double.valueOf(row.getCell(m_xColProtoIndex).toString()),
-						Double.valueOf(row.getCell(m_yColProtoIndex).toString()),
-						Double.valueOf(row.getCell(m_zColProtoIndex).toString()));
+				m_protoTypePoints[count] = new Coord3d(((DoubleValue) xCell).getDoubleValue(),
+						((DoubleValue) yCell).getDoubleValue(), ((DoubleValue) zCell).getDoubleValue());
 				count++;
+				exec.setProgress(count / (double) Math.max(trueClusterNumber, 1));
 			}
 		}
+		if (count < trueClusterNumber) {
+			m_protoTypePoints = Arrays.copyOf(m_protoTypePoints, count);
+		}
+	}
+
+	/**
+	 * Evicts the points this node cached. A reset keeps them, as re-executing
+	 * with unchanged inputs, which is what they are cached for, always resets
+	 * the node first.
+	 */
+	@Override
+	protected void onDispose() {
+		if (m_cachedFingerprint != null) {
+			POINT_CACHE.remove(m_cachedFingerprint);
+			m_cachedFingerprint = null;
+		}
 	}
 
 	@Override
 	protected void reset() {
-		if (m_dataPoints != null) {
-			m_dataPoints = null;
+		synchronized (this) {
+			m_pendingInternalsDir = null;
+			m_internalsError = null;
+			if (m_internalsProgress != null) {
+				m_internalsProgress.setExecuteCanceled();
+				m_internalsProgress = null;
+			}
 		}
-		if (m_dataPointColorIndicies != null) {
-			m_dataPointColorIndicies = null;
+		if (m_pointStore != null) {
+			m_pointStore = null;
 		}
+		if (m_levelOfDetail != null) {
+			m_levelOfDetail = null;
+		}
+		m_colorBuffer = null;
+		m_octree = null;
+		m_densityGrid = null;
+		m_colorMap = null;
 		if (m_dataPointColors != null) {
 			m_dataPointColors = null;
 		}
@@ -225,7 +580,15 @@ public class ScatterPlot3DNodeModel extends NodeModel {
 	}
 
 	@Override
-	protected DataTableSpec[] configure(final DataTableSpec[] inSpecs) throws InvalidSettingsException {
+	protected PortObjectSpec[] configure(final PortObjectSpec[] inSpecs) throws InvalidSettingsException {
+		DataTableSpec[] tableSpecs = new DataTableSpec[inSpecs.length];
+		for (int i = 0; i < inSpecs.length; i++) {
+			tableSpecs[i] = (DataTableSpec) inSpecs[i];
+		}
+		return new PortObjectSpec[] { configureTables(tableSpecs)[0], createImagePortSpec() };
+	}
+
+	private DataTableSpec[] configureTables(final DataTableSpec[] inSpecs) throws InvalidSettingsException {
 
 		if (inSpecs[ScatterPlot3DSettings.MAIN_DATA_TABLE_IN_PORT] == null) {
 			throw new InvalidSettingsException("Please provide a data table to In-Port #1.");
@@ -246,6 +609,7 @@ public class ScatterPlot3DNodeModel extends NodeModel {
 			DataTableSpec mainTableSpec = inSpecs[ScatterPlot3DSettings.MAIN_DATA_TABLE_IN_PORT];
 			String clusterType = m_settings.getClusterType();
 			boolean clusterColumnIdentified = false;
+			m_colorColumnIndex = -1;
 			for (int i = 0; i < mainTableSpec.getNumColumns(); i++) {
 				if (mainTableSpec.getColumnSpec(i).getType().isCompatible(DoubleValue.class)) {
 					doubleCompatColCount++;
@@ -268,6 +632,10 @@ public class ScatterPlot3DNodeModel extends NodeModel {
 						break;
 					}
 				}
+				if (m_settings.isColoredByColumn()
+						&& mainTableSpec.getColumnSpec(i).getName().equals(m_settings.getColorColumn())) {
+					m_colorColumnIndex = i;
+				}
 				if (mainTableSpec.getColumnSpec(i).getName().equals(m_settings.getXAxisVarColumn())) {
 					m_xColIndex = i;
 				} else if (mainTableSpec.getColumnSpec(i).getName().equals(m_settings.getYAxisVarColumn())) {
@@ -294,6 +662,12 @@ public class ScatterPlot3DNodeModel extends NodeModel {
 						"The columns you selected could not be found in the table. Please reset the node or delete, recreate, and "
 								+ "reconfigure the node.");
 			}
+			if (m_settings.isColoredByColumn() && (m_colorColumnIndex == -1
+					|| !mainTableSpec.getColumnSpec(m_colorColumnIndex).getType().isCompatible(DoubleValue.class))) {
+				throw new InvalidSettingsException("The column \"" + m_settings.getColorColumn()
+						+ "\" to color the points by is not a numeric column of the data table. Please choose "
+						+ "another column or color the points by cluster.");
+			}
 			if (m_settings.getIsClustered()) {
 				setWarningMessage(
 						"You have indicated that the data has been pre-clustered. Please ensure you correctly enter the number of clusters "
@@ -379,119 +753,432 @@ public class ScatterPlot3DNodeModel extends NodeModel {
 		}
 	}
 
+	/**
+	 * Only remembers where the internals are; they are read in the background
+	 * when a view is opened (see {@link #loadInternalsAsync(Runnable)}), so
+	 * loading a workflow does not wait for the plotted points.
+	 */
 	@Override
 	protected void loadInternals(final File internDir, final ExecutionMonitor exec)
 			throws IOException, CanceledExecutionException {
-		File file = new File(internDir, ScatterPlot3DSettings.FILE_NAME);
-		try (FileInputStream fis = new FileInputStream(file)) {
-			ModelContentRO modelContent = ModelContent.loadFromXML(fis);
-			try {
-				int numDataPoints = modelContent.getInt(ScatterPlot3DSettings.INTERNAL_NUM_PLOTTED_POINT);
-				m_dataPoints = new Coord3d[numDataPoints];
-				m_dataPointColorIndicies = new short[numDataPoints];
-				for (int i = 0; i < numDataPoints; i++) {
-					System.out.println("x" + modelContent.getDouble(ScatterPlot3DSettings.INTERNAL_X_VAL + i));
-					System.out.println("y" + modelContent.getDouble(ScatterPlot3DSettings.INTERNAL_Y_VAL + i));
-					System.out.println("z" + modelContent.getDouble(ScatterPlot3DSettings.INTERNAL_Z_VAL + i));
-					m_dataPoints[i] = new Coord3d(modelContent.getDouble(ScatterPlot3DSettings.INTERNAL_X_VAL + i),
-							modelContent.getDouble(ScatterPlot3DSettings.INTERNAL_Y_VAL + i),
-							modelContent.getDouble(ScatterPlot3DSettings.INTERNAL_Z_VAL + i));
-					m_dataPointColorIndicies[i] = modelContent.getShort(ScatterPlot3DSettings.INTERNAL_COLOR_INDEX + i);
-				}
-				int numColors = modelContent.getInt(ScatterPlot3DSettings.INTERNAL_NUM_COLORS);
-				m_dataPointColors = new Color[numColors];
-				for (int j = 0; j < numColors; j++) {
-					m_dataPointColors[j] = new Color(modelContent.getFloat(ScatterPlot3DSettings.INTERNAL_RED_VAL + j),
-							modelContent.getFloat(ScatterPlot3DSettings.INTERNAL_BLUE_VAL + j),
-							modelContent.getFloat(ScatterPlot3DSettings.INTERNAL_GREEN_VAL + j),
-							modelContent.getFloat(ScatterPlot3DSettings.INTERNAL_ALPHA_VAL + j));
-				}
+		if (!new File(internDir, ScatterPlot3DSettings.BINARY_FILE_NAME).isFile()
+				&& !new File(internDir, ScatterPlot3DSettings.FILE_NAME).isFile()) {
+			throw new IOException("The internals of this node could not be found in " + internDir + ".");
+		}
+		synchronized (this) {
+			m_pendingInternalsDir = internDir;
+			m_internalsError = null;
+		}
+	}
 
-				boolean hasStoredProtos = modelContent
-						.getBoolean(ScatterPlot3DSettings.INTERNAL_PROTO_POINTS_STORED_PROPERLY);
-				if (hasStoredProtos) {
-					int numProtoPoints = modelContent.getInt(ScatterPlot3DSettings.INTERNAL_NUM_PROTO_POINTS);
-					m_protoTypePoints = new Coord3d[numProtoPoints];
-					for (int k = 0; k < numProtoPoints; k++) {
-						m_protoTypePoints[k] = new Coord3d(
-								modelContent.getDouble(ScatterPlot3DSettings.INTERNAL_PROTO_X_VAL + k),
-								modelContent.getDouble(ScatterPlot3DSettings.INTERNAL_PROTO_Y_VAL + k),
-								modelContent.getDouble(ScatterPlot3DSettings.INTERNAL_PROTO_Z_VAL + k));
-					}
+	@Override
+	protected void saveInternals(final File internDir, final ExecutionMonitor exec)
+			throws IOException, CanceledExecutionException {
+		File pendingDir;
+		synchronized (this) {
+			pendingDir = m_pendingInternalsDir;
+		}
+		if (pendingDir != null) {
+			// the view has not been opened since the workflow was loaded
+			applyInternals(pendingDir, ScatterPlot3DInternalsFormat.load(pendingDir, exec), null, null);
+		}
+		if (m_pointStore != null) {
+			Coord3d[] prototypes = m_settings.getPrototypesProvided() ? m_protoTypePoints : null;
+			boolean compact = ScatterPlot3DSettings.INTERNALS_PRECISION_COMPACT
+					.equals(m_settings.getInternalsPrecision());
+			ScatterPlot3DInternalsFormat.save(internDir, m_pointStore, m_dataPointColors, prototypes, compact, exec);
+		}
+	}
+
+	/**
+	 * @return whether the internals of a loaded workflow have not been read yet
+	 */
+	protected synchronized boolean isLoadingInternals() {
+		return m_pendingInternalsDir != null;
+	}
+
+	/**
+	 * @return the reason the internals could not be read, or <code>null</code>
+	 */
+	protected synchronized String getInternalsError() {
+		return m_internalsError;
+	}
+
+	/**
+	 * Reads the pending internals and builds their level of detail on a
+	 * background thread, unless that is already running.
+	 *
+	 * @param onLoaded invoked on the event dispatch thread once the internals
+	 *            are available or failed to load
+	 * @return the progress of the load, or <code>null</code> if nothing is
+	 *         pending
+	 */
+	protected synchronized DefaultNodeProgressMonitor loadInternalsAsync(final Runnable onLoaded) {
+		if (m_pendingInternalsDir == null) {
+			SwingUtilities.invokeLater(onLoaded);
+			return null;
+		}
+		m_internalsListeners.add(onLoaded);
+		if (m_internalsProgress == null) {
+			final File internDir = m_pendingInternalsDir;
+			final DefaultNodeProgressMonitor progress = new DefaultNodeProgressMonitor();
+			m_internalsProgress = progress;
+			INTERNALS_LOADER.submit(new Runnable() {
+
+				@Override
+				public void run() {
+					readInternals(internDir, progress);
 				}
+			});
+		}
+		return m_internalsProgress;
+	}
+
+	/**
+	 * Withdraws a listener registered with {@link #loadInternalsAsync(Runnable)}
+	 * and cancels the load once no view waits for it anymore.
+	 */
+	protected synchronized void cancelInternalsLoad(final Runnable onLoaded) {
+		m_internalsListeners.remove(onLoaded);
+		if (m_internalsListeners.isEmpty() && m_internalsProgress != null) {
+			m_internalsProgress.setExecuteCanceled();
+			m_internalsProgress = null;
+		}
+	}
 
-			} catch (InvalidSettingsException e) {
-				throw new IOException("There was a problem loading the internal state of this node." + e);
+	private void readInternals(final File internDir, final DefaultNodeProgressMonitor progress) {
+		ExecutionMonitor exec = new ExecutionMonitor(progress);
+		String error = null;
+		try {
+			exec.setMessage("Reading plotted points");
+			ScatterPlot3DInternalsFormat.Internals internals = ScatterPlot3DInternalsFormat.load(internDir,
+					exec.createSubProgress(0.5));
+			exec.checkCanceled();
+			exec.setProgress(0.5, "Building level of detail");
+			ScatterPlot3DLevelOfDetail levelOfDetail = new ScatterPlot3DLevelOfDetail(internals.getPointStore(),
+					m_settings.getLODResolution(), m_settings.getPointBudget(),
+					getNumScaleColors(internals.getPalette()));
+			exec.checkCanceled();
+			applyInternals(internDir, internals, levelOfDetail, progress);
+			// expand the colors and build the octree here as well, so the view
+			// only has to build the chart
+			getColorBuffer();
+			if (m_settings.getRenderingMode().equals(ScatterPlot3DSettings.RENDERING_MODE_VBO)) {
+				getOctree();
+			} else if (m_settings.getRenderingMode().equals(ScatterPlot3DSettings.RENDERING_MODE_DENSITY)) {
+				getDensityGrid();
+			}
+			exec.setProgress(1.0);
+		} catch (CanceledExecutionException e) {
+			LOGGER.debug("Loading the 3D scatter plot was canceled.");
+			return;
+		} catch (IOException | RuntimeException e) {
+			LOGGER.error("The plotted points could not be loaded: " + e.getMessage(), e);
+			error = e.getMessage() == null ? e.getClass().getSimpleName() : e.getMessage();
+		}
+		List<Runnable> listeners;
+		synchronized (this) {
+			if (progress != m_internalsProgress) {
+				// canceled or reset while finishing, nobody waits for this load
+				return;
 			}
+			if (error != null) {
+				m_pendingInternalsDir = null;
+				m_internalsError = error;
+			}
+			m_internalsProgress = null;
+			listeners = new ArrayList<Runnable>(m_internalsListeners);
+			m_internalsListeners.clear();
+		}
+		for (Runnable listener : listeners) {
+			SwingUtilities.invokeLater(listener);
+		}
+	}
 
+	/**
+	 * Installs the internals read from <code>internDir</code> unless the node
+	 * has been reset in the meantime.
+	 *
+	 * @param levelOfDetail the prebuilt level of detail, or <code>null</code>
+	 *            to build it on first use
+	 * @param progress the progress of the background load installing them, or
+	 *            <code>null</code> if they were read synchronously
+	 */
+	private synchronized void applyInternals(final File internDir, final ScatterPlot3DInternalsFormat.Internals internals,
+			final ScatterPlot3DLevelOfDetail levelOfDetail, final DefaultNodeProgressMonitor progress) {
+		if (m_pendingInternalsDir != internDir || (progress != null && progress != m_internalsProgress)) {
+			return;
 		}
+		m_pointStore = internals.getPointStore();
+		m_dataPointColors = internals.getPalette();
+		m_protoTypePoints = internals.getPrototypes();
+		m_levelOfDetail = levelOfDetail;
+		m_colorBuffer = null;
+		m_octree = null;
+		m_densityGrid = null;
+		m_pendingInternalsDir = null;
 	}
 
-	@Override
-	protected void saveInternals(final File internDir, final ExecutionMonitor exec)
-			throws IOException, CanceledExecutionException {
-		// could potentiall store column names, row keys, colors and indicies (or each
-		// color with its row keys)
-		if (m_dataPoints != null) {
-			System.out.println("Saving");
-			ModelContent modelContent = new ModelContent(ScatterPlot3DSettings.INTERNAL_MODEL_NAME_KEY);
-			modelContent.addInt(ScatterPlot3DSettings.INTERNAL_NUM_PLOTTED_POINT, m_dataPoints.length);
-			modelContent.addInt(ScatterPlot3DSettings.INTERNAL_NUM_COLORS, m_dataPointColors.length);
-			int count = 0;
-			for (Coord3d dataPoint : m_dataPoints) {
-				// saving data points
-				modelContent.addDouble(ScatterPlot3DSettings.INTERNAL_X_VAL + count, dataPoint.x);
-				modelContent.addDouble(ScatterPlot3DSettings.INTERNAL_Y_VAL + count, dataPoint.y);
-				modelContent.addDouble(ScatterPlot3DSettings.INTERNAL_Z_VAL + count, dataPoint.z);
-				count++;
+	protected ScatterPlot3DSettings getSettings() {
+		return m_settings;
+	}
+
+	protected ScatterPlot3DPointStore getPointStore() {
+		return m_pointStore;
+	}
+
+	/**
+	 * @return the level of detail stage for the plotted points, built on first
+	 *         use after the internals have been loaded
+	 */
+	protected synchronized ScatterPlot3DLevelOfDetail getLevelOfDetail() {
+		if (m_levelOfDetail == null && m_pointStore != null) {
+			m_levelOfDetail = createLevelOfDetail();
+		}
+		return m_levelOfDetail;
+	}
+
+	private ScatterPlot3DLevelOfDetail createLevelOfDetail() {
+		return new ScatterPlot3DLevelOfDetail(m_pointStore, m_settings.getLODResolution(),
+				m_settings.getPointBudget(), getNumScaleColors(m_dataPointColors));
+	}
+
+	/**
+	 * @return the number of palette colors forming the scale of a color map,
+	 *         0 if the palette holds cluster colors
+	 */
+	private int getNumScaleColors(final Color[] palette) {
+		return m_settings.isColoredByColumn() && palette.length == ScatterPlot3DColorMap.NUM_COLORS + 1
+				? ScatterPlot3DColorMap.NUM_COLORS : 0;
+	}
+
+	/**
+	 * @return the points within the point budget with their colors, shared by
+	 *         all views and built on first use after the internals have been
+	 *         loaded
+	 */
+	protected synchronized ScatterPlot3DColorBuffer getColorBuffer() {
+		if (m_colorBuffer == null && m_pointStore != null) {
+			m_colorBuffer = createColorBuffer();
+		}
+		return m_colorBuffer;
+	}
+
+	/**
+	 * @return the octree over the points of {@link #getColorBuffer()} with
+	 *         their direct buffers for vertex buffer rendering, built on first
+	 *         use so that executions without a view do not allocate them
+	 */
+	protected ScatterPlot3DOctree getOctree() {
+		synchronized (m_octreeLock) {
+			ScatterPlot3DColorBuffer colorBuffer;
+			synchronized (this) {
+				if (m_octree != null) {
+					return m_octree;
+				}
+				colorBuffer = getColorBuffer();
+				if (colorBuffer == null) {
+					return null;
+				}
+				m_recoloredWhileBuilding = new BitSet();
 			}
-			count = 0;
-			for (Color pointColor : m_dataPointColors) {
-				modelContent.addFloat(ScatterPlot3DSettings.INTERNAL_RED_VAL + count, pointColor.r);
-				modelContent.addFloat(ScatterPlot3DSettings.INTERNAL_BLUE_VAL + count, pointColor.b);
-				modelContent.addFloat(ScatterPlot3DSettings.INTERNAL_GREEN_VAL + count, pointColor.g);
-				modelContent.addFloat(ScatterPlot3DSettings.INTERNAL_ALPHA_VAL + count, pointColor.a);
-				count++;
+			// built without holding the model, so hiliting and the views are not blocked meanwhile
+			ScatterPlot3DOctree octree = new ScatterPlot3DOctree(colorBuffer);
+			synchronized (this) {
+				BitSet recolored = m_recoloredWhileBuilding;
+				m_recoloredWhileBuilding = null;
+				if (colorBuffer != m_colorBuffer) {
+					// reset while building, the octree is of outdated points
+					return octree;
+				}
+				octree.updateColors(recolored.stream().toArray());
+				m_octree = octree;
+				return octree;
 			}
-			count = 0;
-			for (short pointIndex : m_dataPointColorIndicies) {
-				modelContent.addShort(ScatterPlot3DSettings.INTERNAL_COLOR_INDEX + count, pointIndex);
-				count++;
+		}
+	}
+
+	protected synchronized boolean isOctreeBuilt() {
+		return m_octree != null;
+	}
+
+	/**
+	 * @return the density histogram of all plotted points, not only of those
+	 *         within the point budget, built on first use
+	 */
+	protected ScatterPlot3DDensityGrid getDensityGrid() {
+		synchronized (m_densityGridLock) {
+			ScatterPlot3DPointStore pointStore;
+			Color[] palette;
+			synchronized (this) {
+				if (m_densityGrid != null || m_pointStore == null) {
+					return m_densityGrid;
+				}
+				pointStore = m_pointStore;
+				palette = m_dataPointColors;
+			}
+			// built without holding the model, see getOctree()
+			ScatterPlot3DDensityGrid densityGrid;
+			try {
+				densityGrid = ScatterPlot3DDensityGrid.build(pointStore, m_settings.getDensityResolution(),
+						palette.length, getNumScaleColors(palette));
+			} catch (Exception e) {
+				throw new IllegalStateException("The density grid could not be built: " + e.getMessage(), e);
 			}
-			modelContent.addBoolean(ScatterPlot3DSettings.INTERNAL_PROTO_POINTS_STORED_PROPERLY, false);
-			if (m_settings.getPrototypesProvided() && m_protoTypePoints != null && m_protoTypePoints.length > 0) {
-				modelContent.addBoolean(ScatterPlot3DSettings.INTERNAL_PROTO_POINTS_STORED_PROPERLY, true);
-				count = 0;
-				for (Coord3d protoPoint : m_dataPoints) {
-					// saving data points
-					modelContent.addDouble(ScatterPlot3DSettings.INTERNAL_PROTO_X_VAL + count, protoPoint.x);
-					modelContent.addDouble(ScatterPlot3DSettings.INTERNAL_PROTO_Y_VAL + count, protoPoint.y);
-					modelContent.addDouble(ScatterPlot3DSettings.INTERNAL_PROTO_Z_VAL + count, protoPoint.z);
-					count++;
+			synchronized (this) {
+				// a grid of points that were reset in the meantime is not kept
+				if (pointStore == m_pointStore) {
+					m_densityGrid = densityGrid;
 				}
-				modelContent.addInt(ScatterPlot3DSettings.INTERNAL_NUM_PROTO_POINTS, count + 1);
 			}
+			return densityGrid;
+		}
+	}
+
+	protected synchronized boolean isDensityGridBuilt() {
+		return m_densityGrid != null;
+	}
+
+	private ScatterPlot3DColorBuffer createColorBuffer() {
+		// never hand more points to the renderer than the budget allows
+		ScatterPlot3DLevelOfDetail levelOfDetail = getLevelOfDetail();
+		ScatterPlot3DPointStore plottedPoints = levelOfDetail.getPointsForBudget(m_settings.getPointBudget());
+		ScatterPlot3DPlottedRows rows = new ScatterPlot3DPlottedRows(m_pointStore,
+				levelOfDetail.getPlottedIndices(m_settings.getPointBudget()), plottedPoints.size());
+		Color hiliteColor = new Color(ColorAttr.HILITE.getRed(), ColorAttr.HILITE.getGreen(),
+				ColorAttr.HILITE.getBlue());
+		return new ScatterPlot3DColorBuffer(plottedPoints, rows, m_dataPointColors, hiliteColor);
+	}
+
+	/**
+	 * @return the hilite handler of the data table, which is passed on to the
+	 *         output table unchanged
+	 */
+	protected HiLiteHandler getHiLiteHandler() {
+		return getInHiLiteHandler(ScatterPlot3DSettings.MAIN_DATA_TABLE_IN_PORT);
+	}
 
-			File file = new File(internDir, ScatterPlot3DSettings.FILE_NAME);
-			FileOutputStream fos = new FileOutputStream(file);
-			modelContent.saveToXML(fos);
+	/**
+	 * Hilites or unhilites the rows with the given keys and recolors the
+	 * plotted points standing for them in the color buffer and, if it is built,
+	 * the octree. An aggregate of the level of detail is hilited while any of
+	 * its rows is.
+	 *
+	 * @return the indices of the plotted points whose hilite state changed,
+	 *         whose colors the views have to update
+	 */
+	protected synchronized int[] setHiLited(final Set<RowKey> keys, final boolean hilited) {
+		ScatterPlot3DColorBuffer colorBuffer = getColorBuffer();
+		if (colorBuffer == null) {
+			return new int[0];
 		}
+		int[] points = colorBuffer.getRows().setHiLited(keys, hilited);
+		for (int point : points) {
+			colorBuffer.setHiLited(point, hilited);
+		}
+		updateOctreeColors(points);
+		return points;
 	}
 
-	protected ScatterPlot3DSettings getSettings() {
-		return m_settings;
+	/**
+	 * Hilites exactly the rows with the given keys, e.g. the keys hilited
+	 * while no view was listening to the hilite handler.
+	 */
+	protected synchronized void syncHiLite(final Set<RowKey> hilitedKeys) {
+		ScatterPlot3DColorBuffer colorBuffer = getColorBuffer();
+		if (colorBuffer == null || !colorBuffer.getRows().hasRowKeys()) {
+			return;
+		}
+		ScatterPlot3DPlottedRows rows = colorBuffer.getRows();
+		int[] previous = colorBuffer.getHiLited();
+		rows.clearHiLite();
+		rows.setHiLited(hilitedKeys, true);
+		int[] current = rows.getHiLited();
+		int[] recolored = new int[previous.length + current.length];
+		int numRecolored = 0;
+		for (int point : previous) {
+			if (colorBuffer.setHiLited(point, rows.isHiLited(point))) {
+				recolored[numRecolored++] = point;
+			}
+		}
+		for (int point : current) {
+			if (colorBuffer.setHiLited(point, true)) {
+				recolored[numRecolored++] = point;
+			}
+		}
+		updateOctreeColors(Arrays.copyOf(recolored, numRecolored));
+	}
+
+	/**
+	 * Unhilites all plotted points.
+	 *
+	 * @return the indices of the previously hilited points
+	 */
+	protected synchronized int[] clearHiLite() {
+		ScatterPlot3DColorBuffer colorBuffer = getColorBuffer();
+		if (colorBuffer == null) {
+			return new int[0];
+		}
+		int[] points = colorBuffer.getHiLited();
+		colorBuffer.getRows().clearHiLite();
+		for (int point : points) {
+			colorBuffer.setHiLited(point, false);
+		}
+		updateOctreeColors(points);
+		return points;
 	}
 
-	protected Coord3d[] getDataPoints() {
-		return m_dataPoints;
+	/**
+	 * Updates the colors of the recolored points in the octree, or remembers
+	 * them for the octree being built.
+	 */
+	private void updateOctreeColors(final int[] points) {
+		if (m_octree != null) {
+			m_octree.updateColors(points);
+		} else if (m_recoloredWhileBuilding != null) {
+			for (int point : points) {
+				m_recoloredWhileBuilding.set(point);
+			}
+		}
 	}
 
 	protected Color[] getDataPointColors() {
 		return m_dataPointColors;
 	}
 
-	protected short[] getDataPointColorIndicies() {
-		return m_dataPointColorIndicies;
+	/**
+	 * @return the label of the cluster drawn with the given palette index, or
+	 *         <code>null</code> if the data is not clustered
+	 */
+	protected String getClusterLabel(final int colorIndex) {
+		if (!m_settings.getIsClustered()) {
+			return null;
+		}
+		if (m_settings.getClusterType().equals("DBSCAN") && m_settings.getDBSCANPlotNoise()
+				&& m_dataPointColors != null && colorIndex == m_dataPointColors.length - 1) {
+			return "Noise";
+		}
+		if (m_clusterDictionary != null && colorIndex < m_clusterDictionary.getNumClusters()) {
+			return m_clusterDictionary.getLabel(colorIndex);
+		}
+		// the labels are not part of the saved internals
+		return "Cluster " + colorIndex;
+	}
+
+	/**
+	 * @return the value of the color column drawn with the given palette index,
+	 *         or <code>null</code> if the points are not colored by a column or
+	 *         its range is unknown, as it is not part of the saved internals
+	 */
+	protected String getColorLabel(final int colorIndex) {
+		ScatterPlot3DColorMap colorMap = m_colorMap;
+		if (colorMap == null || !m_settings.isColoredByColumn()) {
+			return null;
+		}
+		if (colorIndex == ScatterPlot3DColorMap.MISSING_INDEX) {
+			return colorMap.getColumnName() + " missing";
+		}
+		return colorMap.getColumnName() + " \u2248 " + (float) colorMap.getValue(colorIndex);
 	}
 
 	protected Coord3d[] getPrototypePoints() {
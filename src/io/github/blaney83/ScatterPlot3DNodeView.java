@@ -1,6 +1,13 @@
 package io.github.blaney83;
 
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+
+import javax.swing.JMenu;
+import javax.swing.JMenuItem;
+
 import org.knime.core.node.NodeView;
+import org.knime.core.node.property.hilite.HiLiteHandler;
 
 /**
  * <code>NodeView</code> for the "ScatterPlot3D" Node.
@@ -16,6 +23,28 @@ public class ScatterPlot3DNodeView extends NodeView<ScatterPlot3DNodeModel> {
 		super(nodeModel);
 		m_borderLayout = new ScatterPlot3DNodeViewPanel(nodeModel);
 		setComponent(m_borderLayout);
+		getJMenuBar().add(createHiLiteMenu());
+	}
+
+	/**
+	 * Creates the menu hiliting the points selected with the lasso.
+	 */
+	private JMenu createHiLiteMenu() {
+		JMenu menu = new JMenu(HiLiteHandler.HILITE);
+		ActionListener listener = new ActionListener() {
+
+			@Override
+			public void actionPerformed(final ActionEvent e) {
+				m_borderLayout.fireHiLite(e.getActionCommand());
+			}
+		};
+		for (String action : new String[] { HiLiteHandler.HILITE_SELECTED, HiLiteHandler.UNHILITE_SELECTED,
+				HiLiteHandler.CLEAR_HILITE }) {
+			JMenuItem item = new JMenuItem(action);
+			item.addActionListener(listener);
+			menu.add(item);
+		}
+		return menu;
 	}
 
 	@Override
@@ -30,7 +59,7 @@ public class ScatterPlot3DNodeView extends NodeView<ScatterPlot3DNodeModel> {
 
 	@Override
 	protected void onClose() {
-		//nothing
+		m_borderLayout.dispose();
 	}
 
 	@Override
@@ -2,39 +2,352 @@ package io.github.blaney83;
 
 import java.awt.BorderLayout;
 import java.awt.Canvas;
+import java.awt.Component;
 import java.awt.Dimension;
 import java.awt.Font;
 import java.awt.FontMetrics;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
+import java.awt.GridBagConstraints;
+import java.awt.GridBagLayout;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.io.File;
+import java.io.IOException;
+import java.util.Set;
 
+import javax.swing.JButton;
+import javax.swing.JFileChooser;
+import javax.swing.JLabel;
+import javax.swing.JOptionPane;
 import javax.swing.JPanel;
+import javax.swing.JProgressBar;
+import javax.swing.SwingConstants;
+import javax.swing.JToggleButton;
+import javax.swing.Timer;
 
 import org.jzy3d.chart.Chart;
 import org.jzy3d.chart.ChartLauncher;
 import org.jzy3d.chart.controllers.camera.AbstractCameraController;
+import org.jzy3d.chart.controllers.mouse.camera.ICameraMouseController;
+import org.knime.core.data.RowKey;
+import org.knime.core.node.DefaultNodeProgressMonitor;
+import org.knime.core.node.property.hilite.HiLiteHandler;
+import org.knime.core.node.property.hilite.HiLiteListener;
+import org.knime.core.node.property.hilite.KeyEvent;
+import org.knime.core.node.util.ViewUtils;
 
 @SuppressWarnings("serial")
 public class ScatterPlot3DNodeViewPanel extends JPanel {
 
 
-	// graph instance
+	private static final int PROGRESS_REFRESH_MILLIS = 100;
+
+	// graph instance, created once and reused for every model change
 	private ScatterPlot3DGraphPanel graphPanel;
 	private TitlePanel titlePanel;
+	private Component m_center;
+	private ScatterPlot3DQualityController m_qualityController;
+	private ScatterPlot3DPointPicker m_picker;
+	private ScatterPlot3DRenderMetrics m_metrics;
+	private JToggleButton m_metricsButton;
+	// details of the point under the mouse and the selection
+	private JLabel m_status;
+
+	// placeholder shown while the internals are loaded in the background
+	private ScatterPlot3DNodeModel m_nodeModel;
+	private JPanel m_placeholder;
+	private Timer m_progressTimer;
+	private Runnable m_onLoaded;
+	private ScatterPlot3DProgressiveRenderer m_renderer;
+
+	// recolors the hilited points of the attached model
+	private final HiLiteListener m_hiliteListener = new HiLiteListener() {
+
+		@Override
+		public void hiLite(final KeyEvent event) {
+			updateHiLite(event.keys(), true);
+		}
+
+		@Override
+		public void unHiLite(final KeyEvent event) {
+			updateHiLite(event.keys(), false);
+		}
+
+		@Override
+		public void unHiLiteAll(final KeyEvent event) {
+			updateHiLite(null, false);
+		}
+	};
+	private HiLiteHandler m_hiliteHandler;
 
 	 public ScatterPlot3DNodeViewPanel(final ScatterPlot3DNodeModel nodeModel) {
 		setPreferredSize(new Dimension(ScatterPlot3DSettings.PANEL_WIDTH, ScatterPlot3DSettings.PANEL_HEIGHT));
 		setLayout(new BorderLayout());
+		titlePanel = new TitlePanel(createTitle(nodeModel));
+		JPanel northPanel = new JPanel(new BorderLayout());
+		northPanel.add(titlePanel, BorderLayout.CENTER);
+		northPanel.add(createMetricsControls(), BorderLayout.EAST);
+		add(northPanel, BorderLayout.NORTH);
+		m_status = new JLabel(" ");
+		add(m_status, BorderLayout.SOUTH);
+		m_nodeModel = nodeModel;
+		if (nodeModel.isLoadingInternals()) {
+			showLoading(nodeModel);
+		} else {
+			attachChart(nodeModel);
+		}
+	}
+
+	private static String createTitle(final ScatterPlot3DNodeModel nodeModel) {
 		StringBuilder graphTitle = new StringBuilder(nodeModel.m_settings.getXAxisVarColumn());
 		graphTitle.append(" (X), " + nodeModel.m_settings.getYAxisVarColumn());
 		graphTitle.append(" (Y), " + nodeModel.m_settings.getZAxisVarColumn() + " (Z)");
-		titlePanel = new TitlePanel(graphTitle.toString());
-		add(titlePanel, BorderLayout.NORTH);
-		graphPanel = new ScatterPlot3DGraphPanel(nodeModel);
-		graphPanel.init();
+		return graphTitle.toString();
+	}
+
+	private void attachChart(final ScatterPlot3DNodeModel nodeModel) {
+		if (nodeModel.getPointStore() == null) {
+			String error = nodeModel.getInternalsError();
+			if (error != null) {
+				setCenter(new JLabel("The plotted points could not be loaded: " + error, SwingConstants.CENTER));
+			}
+			if (graphPanel != null) {
+				// the reused chart must not keep showing the previous execution
+				graphPanel.setNodeModel(null);
+				graphPanel.getChart().render();
+			}
+			return;
+		}
+		if (graphPanel == null) {
+			long createdAt = System.nanoTime();
+			graphPanel = new ScatterPlot3DGraphPanel(nodeModel);
+			graphPanel.init();
+			long initNanos = System.nanoTime() - createdAt;
+			Chart chart = graphPanel.getChart();
+			ICameraMouseController cameraController = ChartLauncher.configureControllers(chart, "", true, false);
+			chart.addController((AbstractCameraController)cameraController);
+			m_qualityController = new ScatterPlot3DQualityController(chart);
+			m_picker = new ScatterPlot3DPointPicker(chart, cameraController, m_status);
+			// created last, so its frames are timed around all other listeners
+			m_metrics = new ScatterPlot3DRenderMetrics(chart);
+			m_metrics.setInitTime(createdAt, initNanos);
+			m_metrics.setOverlayShown(m_metricsButton.isSelected());
+		} else {
+			graphPanel.setNodeModel(nodeModel);
+		}
 		Chart chart = graphPanel.getChart();
-		chart.addController((AbstractCameraController)ChartLauncher.configureControllers(chart, "", true, false));
-		add((Canvas)chart.getCanvas(), BorderLayout.CENTER);
+		setCenter((Canvas)chart.getCanvas());
+		m_hiliteHandler = nodeModel.getHiLiteHandler();
+		if (m_hiliteHandler != null) {
+			// catch up on the hilites made while no view was open
+			nodeModel.syncHiLite(m_hiliteHandler.getHiLitKeys());
+			m_hiliteHandler.addHiLiteListener(m_hiliteListener);
+		}
+		m_renderer = new ScatterPlot3DProgressiveRenderer(nodeModel, chart, m_metrics);
+		m_qualityController.setRenderer(m_renderer, nodeModel.getSettings(),
+				nodeModel.getColorBuffer().getPoints().size());
+		m_metrics.setRenderer(m_renderer, nodeModel.getSettings(), nodeModel.getColorBuffer().getPoints().size());
+		m_renderer.start();
+		m_picker.setModel(nodeModel);
+	}
+
+	/**
+	 * Recolors the points with the given keys in the model and the chart; the
+	 * hilite handler may notify from any thread.
+	 *
+	 * @param keys the keys, or null to unhilite all points
+	 */
+	private void updateHiLite(final Set<RowKey> keys, final boolean hilited) {
+		ViewUtils.runOrInvokeLaterInEDT(new Runnable() {
+
+			@Override
+			public void run() {
+				if (m_renderer == null) {
+					return;
+				}
+				int[] points = keys == null ? m_nodeModel.clearHiLite() : m_nodeModel.setHiLited(keys, hilited);
+				m_renderer.updateColors(points);
+			}
+		});
+	}
+
+	private void detachHiLite() {
+		if (m_hiliteHandler != null) {
+			m_hiliteHandler.removeHiLiteListener(m_hiliteListener);
+			m_hiliteHandler = null;
+		}
+	}
+
+	/**
+	 * HiLites, unhilites or clears the hilite of the points selected with the
+	 * lasso, as chosen in the HiLite menu of the view.
+	 *
+	 * @param action one of {@link HiLiteHandler#HILITE_SELECTED},
+	 *            {@link HiLiteHandler#UNHILITE_SELECTED} and
+	 *            {@link HiLiteHandler#CLEAR_HILITE}
+	 */
+	public void fireHiLite(final String action) {
+		if (m_hiliteHandler == null || m_picker == null) {
+			return;
+		}
+		if (HiLiteHandler.CLEAR_HILITE.equals(action)) {
+			m_hiliteHandler.fireClearHiLiteEvent();
+			return;
+		}
+		ScatterPlot3DColorBuffer colorBuffer = m_nodeModel.getColorBuffer();
+		if (colorBuffer != null && !colorBuffer.getRows().hasRowKeys()) {
+			// e.g. plots saved without their row keys
+			m_status.setText("HiLiting is not available, the row keys of the plotted points are not known");
+			return;
+		}
+		Set<RowKey> keys = m_picker.getSelectedKeys();
+		if (keys.isEmpty()) {
+			return;
+		}
+		if (HiLiteHandler.HILITE_SELECTED.equals(action)) {
+			m_hiliteHandler.fireHiLiteEvent(keys);
+		} else {
+			m_hiliteHandler.fireUnHiLiteEvent(keys);
+		}
+	}
+
+	/**
+	 * Creates the button showing the rendering metrics over the chart and the
+	 * button writing them to a CSV file.
+	 */
+	private JPanel createMetricsControls() {
+		m_metricsButton = new JToggleButton("Metrics");
+		m_metricsButton.setToolTipText("Show frame times, drawn points and vertex buffer uploads over the plot");
+		m_metricsButton.addActionListener(new ActionListener() {
+
+			@Override
+			public void actionPerformed(final ActionEvent e) {
+				if (m_metrics != null) {
+					m_metrics.setOverlayShown(m_metricsButton.isSelected());
+				}
+			}
+		});
+		JButton exportButton = new JButton("Export metrics...");
+		exportButton.setToolTipText("Write the metrics of the recent frames to a CSV file");
+		exportButton.addActionListener(new ActionListener() {
+
+			@Override
+			public void actionPerformed(final ActionEvent e) {
+				exportMetrics();
+			}
+		});
+		JPanel controls = new JPanel();
+		controls.add(m_metricsButton);
+		controls.add(exportButton);
+		return controls;
+	}
+
+	private void exportMetrics() {
+		if (m_metrics == null) {
+			return;
+		}
+		JFileChooser chooser = new JFileChooser();
+		chooser.setSelectedFile(new File("scatter_plot_3d_metrics.csv"));
+		if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) {
+			return;
+		}
+		try {
+			m_metrics.writeCSV(chooser.getSelectedFile());
+		} catch (IOException e) {
+			JOptionPane.showMessageDialog(this, "The metrics could not be written: " + e.getMessage(),
+					"Export metrics", JOptionPane.ERROR_MESSAGE);
+		}
+	}
+
+	/**
+	 * Shows the given component below the title, removing the previous one.
+	 * Removing the canvas destroys its OpenGL context, which is recreated
+	 * when it is shown again.
+	 */
+	private void setCenter(final Component center) {
+		if (m_center == center) {
+			return;
+		}
+		if (m_center != null) {
+			remove(m_center);
+		}
+		m_center = center;
+		if (center != null) {
+			add(center, BorderLayout.CENTER);
+		}
+	}
+
+	/**
+	 * Shows a placeholder while the internals of a loaded workflow are read in
+	 * the background and attaches the chart once they are available.
+	 */
+	private void showLoading(final ScatterPlot3DNodeModel nodeModel) {
+		final JProgressBar progressBar = new JProgressBar(0, 100);
+		progressBar.setIndeterminate(true);
+		m_placeholder = new JPanel(new GridBagLayout());
+		GridBagConstraints constraints = new GridBagConstraints();
+		constraints.gridy = 0;
+		m_placeholder.add(new JLabel("Loading the plotted points..."), constraints);
+		constraints.gridy++;
+		m_placeholder.add(progressBar, constraints);
+		setCenter(m_placeholder);
+
+		m_onLoaded = new Runnable() {
+
+			@Override
+			public void run() {
+				if (m_onLoaded != this) {
+					return;
+				}
+				stopLoading();
+				attachChart(nodeModel);
+				revalidate();
+				repaint();
+			}
+		};
+		final DefaultNodeProgressMonitor progress = nodeModel.loadInternalsAsync(m_onLoaded);
+		m_progressTimer = new Timer(PROGRESS_REFRESH_MILLIS, new ActionListener() {
+
+			@Override
+			public void actionPerformed(final ActionEvent e) {
+				Double value = progress == null ? null : progress.getProgress();
+				if (value != null) {
+					progressBar.setIndeterminate(false);
+					progressBar.setValue((int) Math.round(value * 100));
+				}
+			}
+		});
+		m_progressTimer.start();
+	}
+
+	private void stopLoading() {
+		m_onLoaded = null;
+		if (m_progressTimer != null) {
+			m_progressTimer.stop();
+			m_progressTimer = null;
+		}
+		if (m_placeholder != null) {
+			if (m_center == m_placeholder) {
+				setCenter(null);
+			}
+			m_placeholder = null;
+		}
+	}
+
+	/**
+	 * Cancels reading the internals if the view is closed before they are
+	 * available, and adding the remaining points if it is closed before they
+	 * are all drawn.
+	 */
+	public void cancelLoading() {
+		if (m_onLoaded != null) {
+			m_nodeModel.cancelInternalsLoad(m_onLoaded);
+		}
+		stopLoading();
+		if (m_renderer != null) {
+			m_renderer.cancel();
+		}
 	}
 
 	@Override
@@ -42,17 +355,57 @@ public class ScatterPlot3DNodeViewPanel extends JPanel {
 		super.paint(g);
 	}
 
+	/**
+	 * Shows the points of the given model in the existing chart, replacing
+	 * the points of the previous model and releasing their vertex buffers.
+	 */
 	public void updateView(final ScatterPlot3DNodeModel nodeModel) {
-		graphPanel = new ScatterPlot3DGraphPanel(nodeModel);
-		graphPanel.init();
-		Chart chart = graphPanel.getChart();
-		chart.addController((AbstractCameraController)ChartLauncher.configureControllers(chart, "", true, false));
-		add((Canvas)chart.getCanvas(), BorderLayout.CENTER);
+		cancelLoading();
+		detachHiLite();
+		if (m_renderer != null) {
+			m_qualityController.setRenderer(null, null, 0);
+			m_metrics.setRenderer(null, null, 0);
+			m_renderer.dispose();
+			m_renderer = null;
+		}
+		if (m_picker != null) {
+			m_picker.setModel(null);
+		}
+		m_nodeModel = nodeModel;
+		titlePanel.setTitle(createTitle(nodeModel));
+		if (nodeModel.isLoadingInternals()) {
+			showLoading(nodeModel);
+		} else {
+			attachChart(nodeModel);
+		}
+		revalidate();
+		repaint();
+	}
+
+	/**
+	 * Releases the chart with its canvas and OpenGL resources when the view
+	 * is closed.
+	 */
+	public void dispose() {
+		cancelLoading();
+		detachHiLite();
+		m_renderer = null;
+		setCenter(null);
+		if (graphPanel != null) {
+			m_qualityController.dispose();
+			m_qualityController = null;
+			m_picker.dispose();
+			m_picker = null;
+			m_metrics.dispose();
+			m_metrics = null;
+			graphPanel.getChart().dispose();
+			graphPanel = null;
+		}
 	}
 
 	private final class TitlePanel extends JPanel {
 		private static final long serialVersionUID = 1L;
-		private final String graphTitle;
+		private String graphTitle;
 		private static final int WIDTH = 25;
 		private static final int HEIGHT = 30;
 
@@ -61,6 +414,11 @@ public class ScatterPlot3DNodeViewPanel extends JPanel {
 			setPreferredSize(new Dimension(WIDTH, HEIGHT));
 		}
 
+		public void setTitle(final String title) {
+			this.graphTitle = title;
+			repaint();
+		}
+
 		@Override
 		public void paintComponent(Graphics g) {
 			super.paintComponent(g);
@@ -0,0 +1,330 @@
+package io.github.blaney83;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+import org.jzy3d.colors.Color;
+
+/**
+ * Octree over the plotted points. The points are reordered so that every node
+ * covers a contiguous range of them, and the nodes are numbered in depth-first
+ * order, so a subtree is a contiguous range of nodes as well. Every node has a
+ * representative (the centroid of its points in the color of its most frequent
+ * cluster) that is drawn instead of the node's points once the node covers
+ * less than a few pixels on screen. A representative is drawn in the hilite
+ * color while any point of its node is hilited, so hilited points stay
+ * visible from afar.
+ *
+ * @author Benjamin Laney
+ */
+public class ScatterPlot3DOctree {
+
+	// nodes with at most this many points are not split any further
+	static final int LEAF_SIZE = 256;
+	static final int MAX_DEPTH = 20;
+
+	private final ScatterPlot3DColorBuffer m_colorBuffer;
+	private final int[] m_order;
+	private int[] m_octants;
+	private int[] m_scratch;
+	// points per palette index of the node being built, all 0 between nodes
+	private int[] m_clusterCounts;
+
+	private int m_numNodes;
+	private int[] m_start = new int[64];
+	private int[] m_end = new int[64];
+	private int[] m_firstChild = new int[64];
+	private int[] m_nextSibling = new int[64];
+	// min x, max x, min y, max y, min z, max z of every node
+	private float[] m_bounds = new float[64 * 6];
+	private float[] m_representatives = new float[64 * 3];
+	private Color[] m_representativeColors = new Color[64];
+	private int[] m_hilitedCounts = new int[64];
+	// the points hilited in the vertex data
+	private final BitSet m_hilited = new BitSet();
+	// the position of every point in the octree order, built on first use
+	private int[] m_positions;
+
+	private final ScatterPlot3DVertexData m_pointData;
+	private final ScatterPlot3DVertexData m_representativeData;
+
+	public ScatterPlot3DOctree(final ScatterPlot3DColorBuffer colorBuffer) {
+		m_colorBuffer = colorBuffer;
+		ScatterPlot3DPointStore points = colorBuffer.getPoints();
+		int size = points.size();
+		m_order = new int[size];
+		for (int i = 0; i < size; i++) {
+			m_order[i] = i;
+		}
+		m_octants = new int[size];
+		m_scratch = new int[size];
+		m_clusterCounts = new int[colorBuffer.getPalette().length];
+		float[] bounds = new float[] { Float.POSITIVE_INFINITY, Float.NEGATIVE_INFINITY, Float.POSITIVE_INFINITY,
+				Float.NEGATIVE_INFINITY, Float.POSITIVE_INFINITY, Float.NEGATIVE_INFINITY };
+		for (int i = 0; i < size; i++) {
+			includeFinite(bounds, points.getX(i), points.getY(i), points.getZ(i));
+		}
+		for (int axis = 0; axis < 3; axis++) {
+			if (bounds[axis * 2] > bounds[axis * 2 + 1]) {
+				// no finite value, the points of this axis are not split
+				bounds[axis * 2] = 0;
+				bounds[axis * 2 + 1] = 0;
+			}
+		}
+		if (size > 0) {
+			build(0, size, bounds, 0);
+		}
+		// only needed while building
+		m_octants = null;
+		m_scratch = null;
+		m_clusterCounts = null;
+		m_pointData = new ScatterPlot3DVertexData(colorBuffer, m_order);
+		Color[] colors = new Color[m_numNodes];
+		for (int node = 0; node < m_numNodes; node++) {
+			colors[node] = m_hilitedCounts[node] > 0 ? colorBuffer.getHiLiteColor() : m_representativeColors[node];
+		}
+		m_representativeData = new ScatterPlot3DVertexData(Arrays.copyOf(m_representatives, m_numNodes * 3),
+				colors);
+	}
+
+	/**
+	 * Creates the node for the points <code>[start, end)</code> of the order
+	 * and its subtree, returning its index.
+	 */
+	private int build(final int start, final int end, final float[] cellBounds, final int depth) {
+		int node = addNode(start, end);
+		ScatterPlot3DPointStore points = m_colorBuffer.getPoints();
+		// the node bounds are the tight bounds of its points, the cell bounds only split
+		float[] bounds = new float[] { Float.POSITIVE_INFINITY, Float.NEGATIVE_INFINITY, Float.POSITIVE_INFINITY,
+				Float.NEGATIVE_INFINITY, Float.POSITIVE_INFINITY, Float.NEGATIVE_INFINITY };
+		double sumX = 0;
+		double sumY = 0;
+		double sumZ = 0;
+		// a color map palette has far more entries than a node has points, so
+		// the dominant index is tracked while counting instead of scanning the counts
+		int[] clusterCounts = m_clusterCounts;
+		int[] colorIndices = points.getColorIndices();
+		int dominant = -1;
+		int hilitedCount = 0;
+		for (int i = start; i < end; i++) {
+			int point = m_order[i];
+			if (m_colorBuffer.isHiLited(point)) {
+				hilitedCount++;
+				m_hilited.set(point);
+			}
+			float x = points.getX(point);
+			float y = points.getY(point);
+			float z = points.getZ(point);
+			includeFinite(bounds, x, y, z);
+			sumX += x;
+			sumY += y;
+			sumZ += z;
+			int colorIndex = colorIndices[point];
+			int clusterCount = ++clusterCounts[colorIndex];
+			if (dominant == -1 || clusterCount > clusterCounts[dominant]
+					|| (clusterCount == clusterCounts[dominant] && colorIndex < dominant)) {
+				dominant = colorIndex;
+			}
+		}
+		for (int i = start; i < end; i++) {
+			clusterCounts[colorIndices[m_order[i]]] = 0;
+		}
+		System.arraycopy(bounds, 0, m_bounds, node * 6, 6);
+		int count = end - start;
+		m_representatives[node * 3] = (float) (sumX / count);
+		m_representatives[node * 3 + 1] = (float) (sumY / count);
+		m_representatives[node * 3 + 2] = (float) (sumZ / count);
+		m_representativeColors[node] = m_colorBuffer.getPalette()[dominant];
+		m_hilitedCounts[node] = hilitedCount;
+
+		if (count <= LEAF_SIZE || depth == MAX_DEPTH) {
+			return node;
+		}
+		float centerX = (cellBounds[0] + cellBounds[1]) / 2;
+		float centerY = (cellBounds[2] + cellBounds[3]) / 2;
+		float centerZ = (cellBounds[4] + cellBounds[5]) / 2;
+		// counting sort of the range by octant, keeping the order within an octant
+		int[] octantStart = new int[9];
+		for (int i = start; i < end; i++) {
+			int point = m_order[i];
+			int octant = (points.getX(point) >= centerX ? 1 : 0) | (points.getY(point) >= centerY ? 2 : 0)
+					| (points.getZ(point) >= centerZ ? 4 : 0);
+			m_octants[i] = octant;
+			octantStart[octant + 1]++;
+		}
+		for (int octant = 0; octant < 8; octant++) {
+			octantStart[octant + 1] += octantStart[octant];
+		}
+		int[] position = Arrays.copyOf(octantStart, 8);
+		for (int i = start; i < end; i++) {
+			m_scratch[start + position[m_octants[i]]++] = m_order[i];
+		}
+		System.arraycopy(m_scratch, start, m_order, start, count);
+
+		int previousChild = -1;
+		for (int octant = 0; octant < 8; octant++) {
+			int childStart = start + octantStart[octant];
+			int childEnd = start + octantStart[octant + 1];
+			if (childStart == childEnd) {
+				continue;
+			}
+			float[] childBounds = new float[] { (octant & 1) == 0 ? cellBounds[0] : centerX,
+					(octant & 1) == 0 ? centerX : cellBounds[1], (octant & 2) == 0 ? cellBounds[2] : centerY,
+					(octant & 2) == 0 ? centerY : cellBounds[3], (octant & 4) == 0 ? cellBounds[4] : centerZ,
+					(octant & 4) == 0 ? centerZ : cellBounds[5] };
+			int child = build(childStart, childEnd, childBounds, depth + 1);
+			if (previousChild == -1) {
+				m_firstChild[node] = child;
+			} else {
+				m_nextSibling[previousChild] = child;
+			}
+			previousChild = child;
+		}
+		return node;
+	}
+
+	private static void includeFinite(final float[] bounds, final float x, final float y, final float z) {
+		ScatterPlot3DVertexData.includeFinite(bounds, 0, x);
+		ScatterPlot3DVertexData.includeFinite(bounds, 1, y);
+		ScatterPlot3DVertexData.includeFinite(bounds, 2, z);
+	}
+
+	private int addNode(final int start, final int end) {
+		if (m_numNodes == m_start.length) {
+			int capacity = m_numNodes * 2;
+			m_start = Arrays.copyOf(m_start, capacity);
+			m_end = Arrays.copyOf(m_end, capacity);
+			m_firstChild = Arrays.copyOf(m_firstChild, capacity);
+			m_nextSibling = Arrays.copyOf(m_nextSibling, capacity);
+			m_bounds = Arrays.copyOf(m_bounds, capacity * 6);
+			m_representatives = Arrays.copyOf(m_representatives, capacity * 3);
+			m_representativeColors = Arrays.copyOf(m_representativeColors, capacity);
+			m_hilitedCounts = Arrays.copyOf(m_hilitedCounts, capacity);
+		}
+		int node = m_numNodes++;
+		m_start[node] = start;
+		m_end[node] = end;
+		m_firstChild[node] = -1;
+		m_nextSibling[node] = -1;
+		return node;
+	}
+
+	public int getNumNodes() {
+		return m_numNodes;
+	}
+
+	/**
+	 * @return the first point of the node in the octree order
+	 */
+	public int getStart(final int node) {
+		return m_start[node];
+	}
+
+	/**
+	 * @return the point after the last point of the node in the octree order
+	 */
+	public int getEnd(final int node) {
+		return m_end[node];
+	}
+
+	/**
+	 * @return the first child of the node, or -1 for a leaf
+	 */
+	public int getFirstChild(final int node) {
+		return m_firstChild[node];
+	}
+
+	/**
+	 * @return the next child of the node's parent, or -1 for the last one
+	 */
+	public int getNextSibling(final int node) {
+		return m_nextSibling[node];
+	}
+
+	/**
+	 * @return the value of the node's bounding box at <code>index</code>, in
+	 *         the order min x, max x, min y, max y, min z, max z
+	 */
+	public float getBound(final int node, final int index) {
+		return m_bounds[node * 6 + index];
+	}
+
+	/**
+	 * @return for every position in the octree order, the index of the point
+	 *         in {@link ScatterPlot3DColorBuffer#getPoints()}
+	 */
+	public int[] getOrder() {
+		return m_order;
+	}
+
+	/**
+	 * @return the position of the point with the given index of
+	 *         {@link ScatterPlot3DColorBuffer#getPoints()} in the octree order
+	 */
+	public synchronized int getPosition(final int point) {
+		if (m_positions == null) {
+			m_positions = new int[m_order.length];
+			for (int position = 0; position < m_order.length; position++) {
+				m_positions[m_order[position]] = position;
+			}
+		}
+		return m_positions[point];
+	}
+
+	/**
+	 * Copies the current colors of the given points from the color buffer into
+	 * the vertex data, and recolors the representatives of the nodes whose
+	 * first point became hilited or whose last point became unhilited.
+	 */
+	public synchronized void updateColors(final int[] points) {
+		int[] argb = m_colorBuffer.getARGB();
+		for (int point : points) {
+			int position = getPosition(point);
+			m_pointData.setColor(position, argb[point]);
+			boolean hilited = m_colorBuffer.isHiLited(point);
+			if (hilited == m_hilited.get(point)) {
+				continue;
+			}
+			m_hilited.set(point, hilited);
+			// the nodes containing the point, from the root down to its leaf
+			for (int node = 0; node != -1; node = getChild(node, position)) {
+				m_hilitedCounts[node] += hilited ? 1 : -1;
+				if (m_hilitedCounts[node] == (hilited ? 1 : 0)) {
+					m_representativeData.setColor(node,
+							hilited ? m_colorBuffer.getHiLiteColor() : m_representativeColors[node]);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return the child of the node containing the given position, or -1 for
+	 *         a leaf
+	 */
+	private int getChild(final int node, final int position) {
+		for (int child = m_firstChild[node]; child != -1; child = m_nextSibling[child]) {
+			if (position >= m_start[child] && position < m_end[child]) {
+				return child;
+			}
+		}
+		return -1;
+	}
+
+	public ScatterPlot3DColorBuffer getColorBuffer() {
+		return m_colorBuffer;
+	}
+
+	/**
+	 * @return the points in the octree order
+	 */
+	public ScatterPlot3DVertexData getPointData() {
+		return m_pointData;
+	}
+
+	/**
+	 * @return the representative of every node, indexed by node
+	 */
+	public ScatterPlot3DVertexData getRepresentativeData() {
+		return m_representativeData;
+	}
+}
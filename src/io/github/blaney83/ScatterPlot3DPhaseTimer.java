@@ -0,0 +1,75 @@
+package io.github.blaney83;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Records the wall time and the number of processed rows of the phases of a
+ * node execution, so slow phases can be identified on a given workflow.
+ *
+ * @author Benjamin Laney
+ */
+public class ScatterPlot3DPhaseTimer {
+
+	private final List<String> m_names = new ArrayList<String>();
+	private final List<Long> m_nanos = new ArrayList<Long>();
+	private final List<Long> m_rows = new ArrayList<Long>();
+	private String m_currentPhase;
+	private long m_currentStart;
+
+	/**
+	 * Starts timing a phase, stopping the previous one if it is still running.
+	 */
+	public void start(final String phase) {
+		if (m_currentPhase != null) {
+			stop(0);
+		}
+		m_currentPhase = phase;
+		m_currentStart = System.nanoTime();
+	}
+
+	/**
+	 * Stops the running phase.
+	 *
+	 * @param rows the number of rows processed during the phase, 0 if the phase
+	 *            does not process rows
+	 */
+	public void stop(final long rows) {
+		if (m_currentPhase == null) {
+			return;
+		}
+		m_names.add(m_currentPhase);
+		m_nanos.add(System.nanoTime() - m_currentStart);
+		m_rows.add(rows);
+		m_currentPhase = null;
+	}
+
+	public long getTotalMillis() {
+		long total = 0;
+		for (long nanos : m_nanos) {
+			total += nanos;
+		}
+		return total / 1000000;
+	}
+
+	/**
+	 * @return one line per phase with its wall time and, where rows were
+	 *         processed, its throughput
+	 */
+	public String getSummary() {
+		StringBuilder summary = new StringBuilder();
+		for (int i = 0; i < m_names.size(); i++) {
+			long millis = m_nanos.get(i) / 1000000;
+			summary.append(m_names.get(i)).append(": ").append(millis).append(" ms");
+			long rows = m_rows.get(i);
+			if (rows > 0) {
+				double seconds = Math.max(m_nanos.get(i), 1) / 1e9;
+				summary.append(", ").append(rows).append(" rows (")
+						.append(String.format("%,.0f", rows / seconds)).append(" rows/s)");
+			}
+			summary.append('\n');
+		}
+		summary.append("Total: ").append(getTotalMillis()).append(" ms");
+		return summary.toString();
+	}
+}
@@ -0,0 +1,179 @@
+package io.github.blaney83;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import org.knime.core.data.RowKey;
+
+/**
+ * The rows behind the plotted points. Above the point budget a plotted point
+ * is a voxel aggregate of many rows and has no row key of its own, so HiLiting
+ * and picking go through the rows it stands for: an aggregate is hilited while
+ * any of its rows is, and selecting it selects all of its rows.
+ *
+ * @author Benjamin Laney
+ */
+public class ScatterPlot3DPlottedRows {
+
+	private final ScatterPlot3DPointStore m_rows;
+	// the plotted point standing for every row or -1; null if every row is plotted itself
+	private final int[] m_pointOfRow;
+	private final int[] m_numRows;
+	private final int[] m_firstRow;
+	private final BitSet m_hiLitedRows = new BitSet();
+	// the number of hilited rows of every plotted point
+	private final int[] m_numHiLitedRows;
+
+	/**
+	 * @param rows the full resolution points, with their row keys if known
+	 * @param pointOfRow the plotted point standing for every row, or -1, see
+	 *            {@link ScatterPlot3DLevelOfDetail#getPlottedIndices(int)};
+	 *            <code>null</code> if the rows are plotted themselves
+	 * @param numPoints the number of plotted points
+	 */
+	public ScatterPlot3DPlottedRows(final ScatterPlot3DPointStore rows, final int[] pointOfRow,
+			final int numPoints) {
+		m_rows = rows;
+		m_pointOfRow = pointOfRow;
+		m_numHiLitedRows = new int[numPoints];
+		if (pointOfRow == null) {
+			m_numRows = null;
+			m_firstRow = null;
+			return;
+		}
+		m_numRows = new int[numPoints];
+		m_firstRow = new int[numPoints];
+		for (int row = pointOfRow.length - 1; row >= 0; row--) {
+			int point = pointOfRow[row];
+			if (point != -1) {
+				m_numRows[point]++;
+				m_firstRow[point] = row;
+			}
+		}
+	}
+
+	/**
+	 * @return the full resolution points the plotted points stand for
+	 */
+	public ScatterPlot3DPointStore getRows() {
+		return m_rows;
+	}
+
+	/**
+	 * @return whether the row keys are known; without them nothing can be
+	 *         hilited or selected
+	 */
+	public boolean hasRowKeys() {
+		return m_rows.getRowKeys() != null;
+	}
+
+	/**
+	 * @return the number of rows a plotted point stands for, more than one for
+	 *         an aggregate
+	 */
+	public int getNumRows(final int point) {
+		return m_numRows == null ? 1 : m_numRows[point];
+	}
+
+	/**
+	 * @return the first row a plotted point stands for, the row itself unless
+	 *         it is an aggregate
+	 */
+	public int getFirstRow(final int point) {
+		return m_firstRow == null ? point : m_firstRow[point];
+	}
+
+	/**
+	 * @return the keys of the rows the given plotted points stand for, in row
+	 *         order if the points are aggregates
+	 */
+	public Set<RowKey> getRowKeys(final int[] points) {
+		ScatterPlot3DRowKeyIndex rowKeys = m_rows.getRowKeys();
+		if (rowKeys == null) {
+			return Collections.emptySet();
+		}
+		Set<RowKey> keys = new LinkedHashSet<RowKey>();
+		if (m_pointOfRow == null) {
+			for (int point : points) {
+				keys.add(new RowKey(rowKeys.getKey(point)));
+			}
+			return keys;
+		}
+		BitSet selected = new BitSet(m_numHiLitedRows.length);
+		for (int point : points) {
+			selected.set(point);
+		}
+		for (int row = 0; row < m_pointOfRow.length; row++) {
+			if (m_pointOfRow[row] != -1 && selected.get(m_pointOfRow[row])) {
+				keys.add(new RowKey(rowKeys.getKey(row)));
+			}
+		}
+		return keys;
+	}
+
+	/**
+	 * Hilites or unhilites the rows with the given keys; unknown keys are
+	 * ignored.
+	 *
+	 * @return the plotted points whose hilite state changed
+	 */
+	public int[] setHiLited(final Set<RowKey> keys, final boolean hilited) {
+		ScatterPlot3DRowKeyIndex rowKeys = m_rows.getRowKeys();
+		if (rowKeys == null) {
+			return new int[0];
+		}
+		int[] changed = new int[Math.min(keys.size(), m_numHiLitedRows.length)];
+		int numChanged = 0;
+		for (RowKey key : keys) {
+			int row = rowKeys.indexOf(key.getString());
+			int point = row < 0 ? -1 : m_pointOfRow == null ? row : m_pointOfRow[row];
+			if (point == -1 || m_hiLitedRows.get(row) == hilited) {
+				continue;
+			}
+			m_hiLitedRows.set(row, hilited);
+			m_numHiLitedRows[point] += hilited ? 1 : -1;
+			// the point changes with its first hilited row and its last unhilited one
+			if (m_numHiLitedRows[point] == (hilited ? 1 : 0)) {
+				changed[numChanged++] = point;
+			}
+		}
+		return Arrays.copyOf(changed, numChanged);
+	}
+
+	/**
+	 * @return whether any row of the plotted point is hilited
+	 */
+	public boolean isHiLited(final int point) {
+		return m_numHiLitedRows[point] > 0;
+	}
+
+	/**
+	 * @return the plotted points with a hilited row in ascending order
+	 */
+	public int[] getHiLited() {
+		int numHiLited = 0;
+		for (int count : m_numHiLitedRows) {
+			if (count > 0) {
+				numHiLited++;
+			}
+		}
+		int[] hilited = new int[numHiLited];
+		for (int point = 0, i = 0; point < m_numHiLitedRows.length; point++) {
+			if (m_numHiLitedRows[point] > 0) {
+				hilited[i++] = point;
+			}
+		}
+		return hilited;
+	}
+
+	/**
+	 * Unhilites all rows.
+	 */
+	public void clearHiLite() {
+		m_hiLitedRows.clear();
+		Arrays.fill(m_numHiLitedRows, 0);
+	}
+}
@@ -0,0 +1,147 @@
+package io.github.blaney83;
+
+import java.lang.ref.SoftReference;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.jzy3d.colors.Color;
+
+/**
+ * Least recently used cache of the points built by earlier executions, keyed
+ * on the {@link ScatterPlot3DInputFingerprint} of their inputs. It is bounded
+ * by the number of entries and by the total size in bytes of the cached
+ * points and their row keys; the least recently used entries are evicted
+ * first. The entries are only softly referenced, so the garbage collector
+ * reclaims them before memory runs out. Cached stores are shared with the
+ * node models that built them and must not be modified.
+ *
+ * @author Benjamin Laney
+ */
+public class ScatterPlot3DPointCache {
+
+	private final int m_maxEntries;
+	private final long m_maxBytes;
+	private final LinkedHashMap<ScatterPlot3DInputFingerprint, CachedEntry> m_entries = new LinkedHashMap<ScatterPlot3DInputFingerprint, CachedEntry>(
+			16, 0.75f, true);
+	private long m_cachedBytes;
+
+	public ScatterPlot3DPointCache(final int maxEntries, final long maxBytes) {
+		m_maxEntries = maxEntries;
+		m_maxBytes = maxBytes;
+	}
+
+	/**
+	 * The points, palette and cluster dictionary or color map built for one
+	 * fingerprint.
+	 */
+	public static final class Entry {
+		private final ScatterPlot3DPointStore m_pointStore;
+		private final Color[] m_palette;
+		private final ScatterPlot3DClusterDictionary m_clusterDictionary;
+		private final ScatterPlot3DColorMap m_colorMap;
+
+		public Entry(final ScatterPlot3DPointStore pointStore, final Color[] palette,
+				final ScatterPlot3DClusterDictionary clusterDictionary, final ScatterPlot3DColorMap colorMap) {
+			m_pointStore = pointStore;
+			m_palette = palette;
+			m_clusterDictionary = clusterDictionary;
+			m_colorMap = colorMap;
+		}
+
+		public ScatterPlot3DPointStore getPointStore() {
+			return m_pointStore;
+		}
+
+		public Color[] getPalette() {
+			return m_palette;
+		}
+
+		/**
+		 * @return the cluster dictionary, or <code>null</code> for unclustered
+		 *         data
+		 */
+		public ScatterPlot3DClusterDictionary getClusterDictionary() {
+			return m_clusterDictionary;
+		}
+
+		/**
+		 * @return the map the palette indices were computed with, or
+		 *         <code>null</code> if the points are not colored by a column
+		 */
+		public ScatterPlot3DColorMap getColorMap() {
+			return m_colorMap;
+		}
+	}
+
+	/**
+	 * A softly referenced entry with the size it was accounted with.
+	 */
+	private static final class CachedEntry extends SoftReference<Entry> {
+		private final long m_bytes;
+
+		private CachedEntry(final Entry entry, final long bytes) {
+			super(entry);
+			m_bytes = bytes;
+		}
+	}
+
+	/**
+	 * @return the cached entry, or <code>null</code> if there is none
+	 */
+	public synchronized Entry get(final ScatterPlot3DInputFingerprint fingerprint) {
+		removeCollected();
+		CachedEntry cached = m_entries.get(fingerprint);
+		return cached == null ? null : cached.get();
+	}
+
+	/**
+	 * Caches the entry, evicting the least recently used ones until the bounds
+	 * are met. Entries larger than the byte bound are not cached at all.
+	 */
+	public synchronized void put(final ScatterPlot3DInputFingerprint fingerprint, final Entry entry) {
+		long bytes = entry.getPointStore().getSizeInBytes();
+		remove(fingerprint);
+		removeCollected();
+		if (bytes > m_maxBytes) {
+			return;
+		}
+		Iterator<Map.Entry<ScatterPlot3DInputFingerprint, CachedEntry>> eldest = m_entries.entrySet().iterator();
+		while (eldest.hasNext() && (m_entries.size() >= m_maxEntries || m_cachedBytes + bytes > m_maxBytes)) {
+			m_cachedBytes -= eldest.next().getValue().m_bytes;
+			eldest.remove();
+		}
+		m_entries.put(fingerprint, new CachedEntry(entry, bytes));
+		m_cachedBytes += bytes;
+	}
+
+	/**
+	 * Evicts the entry of the fingerprint, e.g. once the node that built it is
+	 * disposed.
+	 */
+	public synchronized void remove(final ScatterPlot3DInputFingerprint fingerprint) {
+		CachedEntry previous = m_entries.remove(fingerprint);
+		if (previous != null) {
+			m_cachedBytes -= previous.m_bytes;
+		}
+	}
+
+	/**
+	 * Drops the entries the garbage collector has reclaimed.
+	 */
+	private void removeCollected() {
+		Iterator<CachedEntry> entries = m_entries.values().iterator();
+		while (entries.hasNext()) {
+			CachedEntry cached = entries.next();
+			if (cached.get() == null) {
+				m_cachedBytes -= cached.m_bytes;
+				entries.remove();
+			}
+		}
+	}
+
+	public synchronized void clear() {
+		m_entries.clear();
+		m_cachedBytes = 0;
+	}
+}
@@ -0,0 +1,201 @@
+package io.github.blaney83;
+
+import java.util.Arrays;
+
+import org.knime.core.data.DataCell;
+import org.knime.core.data.DataRow;
+import org.knime.core.data.DoubleValue;
+import org.knime.core.data.container.CloseableRowIterator;
+import org.knime.core.data.container.filter.TableFilter;
+import org.knime.core.node.BufferedDataTable;
+import org.knime.core.node.CanceledExecutionException;
+import org.knime.core.node.ExecutionMonitor;
+import org.knime.core.node.InvalidSettingsException;
+
+/**
+ * Turns the rows of the main data table into points of a
+ * {@link ScatterPlot3DPointStore}. The table is read sequentially by a single
+ * thread: decoding the rows is most of the work, and it can only be split
+ * between threads by starting iterators at row indices, which reads all rows
+ * before them again. Points are colored either by
+ * their cluster or, through a {@link ScatterPlot3DColorMap}, by the value of a
+ * numeric column.
+ *
+ * @author Benjamin Laney
+ */
+public class ScatterPlot3DPointIngester {
+
+	// number of rows between progress updates and cancellation checks
+	static final int PROGRESS_INTERVAL = 8192;
+
+	private final int m_xColIndex;
+	private final int m_yColIndex;
+	private final int m_zColIndex;
+	private final int m_clusterColumnIndex;
+	private final boolean m_isClustered;
+	private final boolean m_plotNoise;
+	private final int m_noiseColorIndex;
+	private final ScatterPlot3DClusterDictionary m_clusterDictionary;
+	private final int m_colorColumnIndex;
+	private final ScatterPlot3DColorMap m_colorMap;
+	// only these columns are decoded when iterating the table
+	private final int[] m_materializedColumns;
+
+	public ScatterPlot3DPointIngester(final ScatterPlot3DSettings settings, final int xColIndex,
+			final int yColIndex, final int zColIndex, final int clusterColumnIndex,
+			final ScatterPlot3DClusterDictionary clusterDictionary, final int noiseColorIndex,
+			final int colorColumnIndex, final ScatterPlot3DColorMap colorMap) throws InvalidSettingsException {
+		m_xColIndex = xColIndex;
+		m_yColIndex = yColIndex;
+		m_zColIndex = zColIndex;
+		m_clusterColumnIndex = clusterColumnIndex;
+		m_isClustered = settings.getIsClustered();
+		m_plotNoise = settings.getDBSCANPlotNoise();
+		m_noiseColorIndex = noiseColorIndex;
+		m_clusterDictionary = clusterDictionary;
+		m_colorColumnIndex = colorColumnIndex;
+		m_colorMap = m_isClustered ? null : colorMap;
+		if (m_isClustered && (m_clusterColumnIndex == -1 || m_clusterDictionary == null)) {
+			throw new InvalidSettingsException(
+					"Cluster memberships could not be determined at runtime. Please reconfigure node");
+		}
+		if (m_isClustered) {
+			m_materializedColumns = getColumnIndices(m_xColIndex, m_yColIndex, m_zColIndex, m_clusterColumnIndex);
+		} else if (m_colorMap != null) {
+			if (m_colorColumnIndex == -1) {
+				throw new InvalidSettingsException(
+						"The column to color the points by could not be found at runtime. Please reconfigure node");
+			}
+			m_materializedColumns = getColumnIndices(m_xColIndex, m_yColIndex, m_zColIndex, m_colorColumnIndex);
+		} else {
+			m_materializedColumns = getColumnIndices(m_xColIndex, m_yColIndex, m_zColIndex);
+		}
+	}
+
+	/**
+	 * @return the given column indices sorted and without duplicates, as
+	 *         expected by a {@link TableFilter}
+	 */
+	static int[] getColumnIndices(final int... columnIndices) {
+		int[] sorted = columnIndices.clone();
+		Arrays.sort(sorted);
+		int unique = 0;
+		for (int i = 0; i < sorted.length; i++) {
+			if (i == 0 || sorted[i] != sorted[i - 1]) {
+				sorted[unique++] = sorted[i];
+			}
+		}
+		return Arrays.copyOf(sorted, unique);
+	}
+
+	/**
+	 * Reads the first <code>numRows</code> rows of the table. Noise and missing
+	 * rows count towards <code>numRows</code> but are not stored.
+	 */
+	public ScatterPlot3DPointStore ingest(final BufferedDataTable table, final long numRows,
+			final ExecutionMonitor exec) throws CanceledExecutionException {
+		long rowsToRead = Math.min(numRows, table.size());
+		RowProgress progress = new RowProgress(exec, rowsToRead);
+		ScatterPlot3DPointStore pointStore = new ScatterPlot3DPointStore(
+				(int) Math.min(Math.max(rowsToRead, 1), Integer.MAX_VALUE - 8));
+		if (rowsToRead <= 0) {
+			return pointStore;
+		}
+		TableFilter filter = new TableFilter.Builder().withMaterializeColumnIndices(m_materializedColumns)
+				.withToRowIndex(rowsToRead - 1).build();
+		try (CloseableRowIterator rows = table.filter(filter)) {
+			int sinceLastReport = 0;
+			while (rows.hasNext()) {
+				ingestRow(rows.next(), pointStore);
+				if (++sinceLastReport == PROGRESS_INTERVAL) {
+					progress.rowsRead(sinceLastReport);
+					sinceLastReport = 0;
+				}
+			}
+			progress.rowsRead(sinceLastReport);
+		}
+		return pointStore;
+	}
+
+	/**
+	 * Feeds every row of the table to the sink in one pass, e.g. to draw a
+	 * sample of the whole table.
+	 */
+	public void ingestAll(final BufferedDataTable table, final ScatterPlot3DPointSink sink,
+			final ExecutionMonitor exec) throws CanceledExecutionException {
+		RowProgress progress = new RowProgress(exec, table.size());
+		try (CloseableRowIterator rows = table.filter(TableFilter.materializeCols(m_materializedColumns))) {
+			int sinceLastReport = 0;
+			while (rows.hasNext()) {
+				ingestRow(rows.next(), sink);
+				if (++sinceLastReport == PROGRESS_INTERVAL) {
+					progress.rowsRead(sinceLastReport);
+					sinceLastReport = 0;
+				}
+			}
+			progress.rowsRead(sinceLastReport);
+		}
+	}
+
+	/**
+	 * Adds a single row to the sink, or records it as missing. Rows of the
+	 * DBSCAN noise cluster are dropped when noise is not plotted. Rows missing
+	 * the value to color by are kept in the missing color of the color map.
+	 */
+	public void ingestRow(final DataRow row, final ScatterPlot3DPointSink pointStore) {
+		DataCell xCell = row.getCell(m_xColIndex);
+		DataCell yCell = row.getCell(m_yColIndex);
+		DataCell zCell = row.getCell(m_zColIndex);
+		if (xCell.isMissing() || yCell.isMissing() || zCell.isMissing()) {
+			pointStore.addMissing();
+			return;
+		}
+		int colorIndex = 0;
+		if (m_isClustered) {
+			DataCell clusterCell = row.getCell(m_clusterColumnIndex);
+			if (clusterCell.isMissing()) {
+				pointStore.addMissing();
+				return;
+			}
+			colorIndex = m_clusterDictionary.getId(clusterCell);
+			if (colorIndex == ScatterPlot3DClusterDictionary.NOISE_ID) {
+				if (!m_plotNoise) {
+					return;
+				}
+				colorIndex = m_noiseColorIndex;
+			} else if (colorIndex == ScatterPlot3DClusterDictionary.UNKNOWN_ID) {
+				throw new IllegalStateException("The cluster label \"" + clusterCell
+						+ "\" is not part of the cluster column's domain. Please recalculate the domain of the table.");
+			}
+		} else if (m_colorMap != null) {
+			DataCell colorCell = row.getCell(m_colorColumnIndex);
+			colorIndex = colorCell.isMissing() ? ScatterPlot3DColorMap.MISSING_INDEX
+					: m_colorMap.getIndex(((DoubleValue) colorCell).getDoubleValue());
+		}
+		pointStore.addPoint((float) ((DoubleValue) xCell).getDoubleValue(),
+				(float) ((DoubleValue) yCell).getDoubleValue(), (float) ((DoubleValue) zCell).getDoubleValue(),
+				colorIndex, row.getKey().getString());
+	}
+
+	/**
+	 * Progress of a read.
+	 */
+	private static final class RowProgress {
+		private final ExecutionMonitor m_exec;
+		private final long m_totalRows;
+		private long m_rowsRead;
+
+		private RowProgress(final ExecutionMonitor exec, final long totalRows) {
+			m_exec = exec;
+			m_totalRows = Math.max(totalRows, 1);
+		}
+
+		private void rowsRead(final int rows) throws CanceledExecutionException {
+			m_rowsRead += rows;
+			long rowsRead = m_rowsRead;
+			m_exec.checkCanceled();
+			m_exec.setProgress(Math.min(1.0, rowsRead / (double) m_totalRows),
+					"Read " + rowsRead + " of " + m_totalRows + " rows");
+		}
+	}
+}
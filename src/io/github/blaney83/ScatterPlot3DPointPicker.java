@@ -0,0 +1,448 @@
+package io.github.blaney83;
+
+import java.awt.BasicStroke;
+import java.awt.Component;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Point;
+import java.awt.RenderingHints;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.geom.Path2D;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import javax.swing.JLabel;
+import javax.swing.SwingUtilities;
+
+import org.jzy3d.chart.Chart;
+import org.jzy3d.colors.Color;
+import org.jzy3d.maths.BoundingBox3d;
+import org.jzy3d.maths.Coord3d;
+import org.jzy3d.plot3d.primitives.AbstractDrawable;
+import org.jzy3d.plot3d.primitives.Scatter;
+import org.jzy3d.plot3d.rendering.view.AWTView;
+import org.jzy3d.plot3d.rendering.view.Camera;
+import org.jzy3d.plot3d.rendering.view.Renderer2d;
+import org.jzy3d.plot3d.transform.Transform;
+import org.knime.core.data.RowKey;
+import org.knime.core.node.NodeLogger;
+
+import com.jogamp.opengl.GL;
+import com.jogamp.opengl.GL2;
+import com.jogamp.opengl.glu.GLU;
+
+/**
+ * Shows the details of the point under the mouse and selects the points
+ * inside a lasso drawn with Shift and the left mouse button; a Shift click
+ * clears the selection. Both are answered from a
+ * {@link ScatterPlot3DScreenGrid}, which is rebuilt on a background thread
+ * whenever the camera has moved and the mouse is over the plot, so neither
+ * scans all points on the event dispatch thread. The grid uses the matrices
+ * of the last frame, which an invisible drawable in the chart records. The
+ * details are shown in a status line, as a tooltip would be hidden behind the
+ * OpenGL canvas. A point aggregating several rows is described as such, and
+ * selecting it selects all of its rows.
+ *
+ * @author Benjamin Laney
+ */
+public class ScatterPlot3DPointPicker {
+
+	private static final NodeLogger LOGGER = NodeLogger.getLogger(ScatterPlot3DPointPicker.class);
+
+	// how far from the mouse (in pixels) a point is still picked
+	static final float SEARCH_RADIUS = 6;
+	// the selected points are outlined by drawing them this much larger
+	static final float SELECTION_OUTLINE = 2;
+
+	private final Chart m_chart;
+	private final Component m_canvas;
+	private final Object m_cameraController;
+	private final JLabel m_status;
+	private final ExecutorService m_gridBuilder;
+	private final CameraProbe m_probe = new CameraProbe();
+	private final MouseAdapter m_mouseListener;
+	private final Renderer2d m_lassoRenderer;
+	private final Runnable m_projectionChanged;
+
+	// all following fields are only accessed on the event dispatch thread
+	private ScatterPlot3DNodeModel m_nodeModel;
+	private ScatterPlot3DPointStore m_points;
+	private ScatterPlot3DPlottedRows m_rows;
+	private ScatterPlot3DScreenGrid m_grid;
+	private Future<?> m_build;
+	// incremented whenever the grid being built becomes obsolete
+	private int m_generation;
+	private Point m_mouse;
+	private boolean m_dragging;
+	private Path2D.Float m_lasso;
+	private boolean m_lassoPending;
+	// a copy of the lasso for the rendering thread
+	private volatile Path2D.Float m_lassoOutline;
+	private Scatter m_selectionScatter;
+	private int[] m_selection = new int[0];
+	// the number of rows the selected points stand for
+	private long m_numSelectedRows;
+
+	public ScatterPlot3DPointPicker(final Chart chart, final Object cameraController, final JLabel status) {
+		m_chart = chart;
+		m_canvas = (Component) chart.getCanvas();
+		m_cameraController = cameraController;
+		m_status = status;
+		m_gridBuilder = Executors.newSingleThreadExecutor(new ThreadFactory() {
+
+			@Override
+			public Thread newThread(final Runnable runnable) {
+				Thread thread = new Thread(runnable, "3D Scatter Plot Picking");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		m_projectionChanged = new Runnable() {
+
+			@Override
+			public void run() {
+				invalidateGrid();
+				if (m_mouse != null && !m_dragging || m_lassoPending) {
+					buildGrid();
+				}
+			}
+		};
+		m_mouseListener = new MouseAdapter() {
+
+			@Override
+			public void mousePressed(final MouseEvent e) {
+				m_dragging = true;
+				if (e.isShiftDown() && SwingUtilities.isLeftMouseButton(e) && m_points != null) {
+					// the camera stays where it is while the lasso is drawn
+					m_chart.getCanvas().removeMouseController(m_cameraController);
+					m_lasso = new Path2D.Float();
+					m_lasso.moveTo(e.getX(), e.getY());
+				}
+			}
+
+			@Override
+			public void mouseDragged(final MouseEvent e) {
+				m_mouse = e.getPoint();
+				if (m_lasso != null) {
+					m_lasso.lineTo(e.getX(), e.getY());
+					m_lassoOutline = (Path2D.Float) m_lasso.clone();
+					m_chart.render();
+				}
+			}
+
+			@Override
+			public void mouseReleased(final MouseEvent e) {
+				m_dragging = false;
+				if (m_lasso != null) {
+					m_chart.getCanvas().addMouseController(m_cameraController);
+					finishLasso();
+				} else if (m_grid == null) {
+					buildGrid();
+				}
+			}
+
+			@Override
+			public void mouseMoved(final MouseEvent e) {
+				m_mouse = e.getPoint();
+				if (m_grid == null) {
+					buildGrid();
+				}
+				updateStatus();
+			}
+
+			@Override
+			public void mouseExited(final MouseEvent e) {
+				if (!m_dragging) {
+					m_mouse = null;
+					updateStatus();
+				}
+			}
+		};
+		m_canvas.addMouseListener(m_mouseListener);
+		m_canvas.addMouseMotionListener(m_mouseListener);
+		m_lassoRenderer = new Renderer2d() {
+
+			@Override
+			public void paint(final Graphics g, final int width, final int height) {
+				Path2D.Float lasso = m_lassoOutline;
+				if (lasso != null) {
+					Graphics2D g2D = (Graphics2D) g;
+					g2D.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+					g2D.setColor(java.awt.Color.BLACK);
+					g2D.setStroke(new BasicStroke(1.5f));
+					g2D.draw(lasso);
+				}
+			}
+		};
+		if (chart.getView() instanceof AWTView) {
+			((AWTView) chart.getView()).addRenderer2d(m_lassoRenderer);
+		}
+	}
+
+	/**
+	 * Picks from the points of the given model from now on, clearing the
+	 * selection; must be called on the event dispatch thread.
+	 *
+	 * @param nodeModel the model of the plotted points, or null if there are
+	 *            none
+	 */
+	public void setModel(final ScatterPlot3DNodeModel nodeModel) {
+		invalidateGrid();
+		clearSelection();
+		m_lasso = null;
+		m_lassoOutline = null;
+		m_lassoPending = false;
+		if (m_points != null) {
+			m_chart.getScene().getGraph().remove(m_probe, false);
+		}
+		m_nodeModel = nodeModel;
+		m_points = null;
+		m_rows = null;
+		ScatterPlot3DColorBuffer colorBuffer = nodeModel == null ? null : nodeModel.getColorBuffer();
+		if (colorBuffer != null && colorBuffer.getPoints().size() > 0) {
+			m_points = colorBuffer.getPoints();
+			m_rows = colorBuffer.getRows();
+			m_probe.setBounds(m_points);
+			m_chart.getScene().getGraph().add(m_probe, false);
+		}
+		updateStatus();
+	}
+
+	private void invalidateGrid() {
+		m_generation++;
+		m_grid = null;
+		if (m_build != null) {
+			m_build.cancel(true);
+			m_build = null;
+		}
+	}
+
+	/**
+	 * Builds the grid for the projection of the last frame in the background,
+	 * unless it is already being built.
+	 */
+	private void buildGrid() {
+		final ScatterPlot3DScreenGrid.Projection projection = m_probe.m_projection;
+		if (m_build != null || m_points == null || projection == null) {
+			return;
+		}
+		final int generation = m_generation;
+		final ScatterPlot3DPointStore points = m_points;
+		m_build = m_gridBuilder.submit(new Runnable() {
+
+			@Override
+			public void run() {
+				try {
+					final ScatterPlot3DScreenGrid grid = ScatterPlot3DScreenGrid.build(points, projection);
+					SwingUtilities.invokeLater(new Runnable() {
+
+						@Override
+						public void run() {
+							if (generation == m_generation) {
+								m_build = null;
+								m_grid = grid;
+								if (m_lassoPending) {
+									finishLasso();
+								}
+								updateStatus();
+							}
+						}
+					});
+				} catch (Exception e) {
+					LOGGER.warn("The plotted points could not be indexed for picking: " + e.getMessage(), e);
+				}
+			}
+		});
+	}
+
+	private void finishLasso() {
+		if (m_lasso.getBounds2D().isEmpty()) {
+			// a Shift click
+			m_lasso = null;
+			m_lassoOutline = null;
+			setSelection(new int[0]);
+			updateStatus();
+			m_chart.render();
+			return;
+		}
+		if (m_grid == null) {
+			// selected as soon as the grid is built
+			m_lassoPending = true;
+			buildGrid();
+			return;
+		}
+		Path2D.Float lasso = m_lasso;
+		m_lasso = null;
+		m_lassoOutline = null;
+		m_lassoPending = false;
+		lasso.closePath();
+		setSelection(m_grid.select(lasso));
+		updateStatus();
+		m_chart.render();
+	}
+
+	private void setSelection(final int[] selected) {
+		clearSelection();
+		m_selection = selected;
+		if (selected.length == 0) {
+			return;
+		}
+		Coord3d[] coordinates = new Coord3d[selected.length];
+		for (int i = 0; i < selected.length; i++) {
+			int point = selected[i];
+			m_numSelectedRows += m_rows.getNumRows(point);
+			coordinates[i] = new Coord3d(m_points.getX(point), m_points.getY(point), m_points.getZ(point));
+		}
+		m_selectionScatter = new Scatter(coordinates, Color.BLACK);
+		m_selectionScatter.setWidth(m_nodeModel.getSettings().getDataPointSize() + SELECTION_OUTLINE);
+		m_chart.getScene().getGraph().add(m_selectionScatter, false);
+	}
+
+	private void clearSelection() {
+		m_selection = new int[0];
+		m_numSelectedRows = 0;
+		if (m_selectionScatter != null) {
+			m_chart.getScene().getGraph().remove(m_selectionScatter, false);
+			m_selectionScatter = null;
+		}
+	}
+
+	private void updateStatus() {
+		String text = m_selection.length == 0 ? " " : m_selection.length + " points selected";
+		if (m_numSelectedRows > m_selection.length) {
+			text = m_selection.length + " points selected, standing for " + m_numSelectedRows + " rows";
+		}
+		if (m_grid != null && m_mouse != null && m_lasso == null) {
+			int point = m_grid.pick(m_mouse.x, m_mouse.y, m_nodeModel.getSettings().getDataPointSize() / 2f,
+					SEARCH_RADIUS);
+			if (point != -1) {
+				text = describe(point);
+			}
+		}
+		m_status.setText(text);
+	}
+
+	/**
+	 * Describes the row a point stands for, or for an aggregate of several
+	 * rows their number and centroid.
+	 */
+	private String describe(final int point) {
+		ScatterPlot3DSettings settings = m_nodeModel.getSettings();
+		StringBuilder description = new StringBuilder();
+		ScatterPlot3DPointStore values = m_points;
+		int index = point;
+		int numRows = m_rows.getNumRows(point);
+		if (numRows > 1) {
+			description.append("Aggregate of ").append(numRows).append(" rows, centroid ");
+		} else {
+			// the row itself, with its exact values
+			values = m_rows.getRows();
+			index = m_rows.getFirstRow(point);
+			ScatterPlot3DRowKeyIndex rowKeys = values.getRowKeys();
+			if (rowKeys != null) {
+				description.append(rowKeys.getKey(index)).append(":  ");
+			}
+		}
+		description.append(settings.getXAxisVarColumn()).append(" = ").append(values.getX(index));
+		description.append(",  ").append(settings.getYAxisVarColumn()).append(" = ").append(values.getY(index));
+		description.append(",  ").append(settings.getZAxisVarColumn()).append(" = ").append(values.getZ(index));
+		String cluster = m_nodeModel.getClusterLabel(m_points.getColorIndex(point));
+		if (cluster != null) {
+			description.append(",  cluster ").append(cluster);
+		}
+		String color = m_nodeModel.getColorLabel(m_points.getColorIndex(point));
+		if (color != null) {
+			description.append(",  ").append(color);
+		}
+		return description.toString();
+	}
+
+	/**
+	 * @return the keys of the rows the selected points stand for, empty if
+	 *         the row keys are not known
+	 */
+	public Set<RowKey> getSelectedKeys() {
+		if (m_rows == null) {
+			return new LinkedHashSet<RowKey>();
+		}
+		return m_rows.getRowKeys(m_selection);
+	}
+
+	/**
+	 * Stops observing the canvas and removes the selection; must be called on
+	 * the event dispatch thread.
+	 */
+	public void dispose() {
+		setModel(null);
+		m_canvas.removeMouseListener(m_mouseListener);
+		m_canvas.removeMouseMotionListener(m_mouseListener);
+		if (m_chart.getView() instanceof AWTView) {
+			((AWTView) m_chart.getView()).removeRenderer2d(m_lassoRenderer);
+		}
+		m_gridBuilder.shutdownNow();
+	}
+
+	/**
+	 * Draws nothing, but records the matrices the points are drawn with in
+	 * every frame. Its bounds are those of the points, so it does not change
+	 * the scaling of the chart.
+	 */
+	private final class CameraProbe extends AbstractDrawable {
+
+		private final float[] m_modelView = new float[16];
+		private final float[] m_projectionMatrix = new float[16];
+		private final float[] m_clip = new float[16];
+		private final int[] m_viewport = new int[4];
+		// the projection of the last frame
+		private volatile ScatterPlot3DScreenGrid.Projection m_projection;
+
+		private void setBounds(final ScatterPlot3DPointStore points) {
+			BoundingBox3d bounds = new BoundingBox3d();
+			for (int i = 0; i < points.size(); i++) {
+				bounds.add(points.getX(i), points.getY(i), points.getZ(i));
+			}
+			bbox = bounds;
+		}
+
+		@Override
+		public void draw(final GL gl, final GLU glu, final Camera camera) {
+			doTransform(gl, glu, camera);
+			GL2 gl2 = gl.getGL2();
+			gl2.glGetFloatv(GL2.GL_MODELVIEW_MATRIX, m_modelView, 0);
+			gl2.glGetFloatv(GL2.GL_PROJECTION_MATRIX, m_projectionMatrix, 0);
+			gl2.glGetIntegerv(GL.GL_VIEWPORT, m_viewport, 0);
+			// both matrices are column major, clip = projection * model view
+			for (int column = 0; column < 4; column++) {
+				for (int row = 0; row < 4; row++) {
+					float value = 0;
+					for (int k = 0; k < 4; k++) {
+						value += m_projectionMatrix[k * 4 + row] * m_modelView[column * 4 + k];
+					}
+					m_clip[column * 4 + row] = value;
+				}
+			}
+			ScatterPlot3DScreenGrid.Projection projection = new ScatterPlot3DScreenGrid.Projection(m_clip,
+					m_viewport, m_canvas.getWidth(), m_canvas.getHeight());
+			if (!projection.equals(m_projection)) {
+				m_projection = projection;
+				SwingUtilities.invokeLater(m_projectionChanged);
+			}
+		}
+
+		/**
+		 * Transforms are not supported by this drawable.
+		 */
+		@Override
+		public void applyGeometryTransform(final Transform transform) {
+		}
+
+		@Override
+		public void updateBounds() {
+		}
+	}
+}
@@ -0,0 +1,258 @@
+package io.github.blaney83;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Draws a seeded uniform sample of a bounded size from the points of the main
+ * data table in a single pass, using reservoir sampling (Li's "Algorithm L",
+ * which only draws random numbers for the points that enter the reservoir).
+ * In stratified mode the uniform sample, in which every cluster (palette
+ * index) keeps its share of the table, is complemented by a small reservoir
+ * per cluster: a cluster with fewer sampled points than its guaranteed minimum
+ * is filled up from its reservoir, and the additional points are taken out of
+ * the larger clusters again, so small clusters remain visible while the sample
+ * keeps its size and otherwise looks like the full data. Memory is bounded by
+ * the sample size (plus a quarter of it for the cluster reservoirs), and the
+ * sampled points are returned in their original row order.
+ *
+ * @author Benjamin Laney
+ */
+public class ScatterPlot3DPointSampler implements ScatterPlot3DPointSink {
+
+	// the share of the sample guaranteed to the clusters as their minimum
+	static final double MIN_CLUSTER_SHARE = 0.25;
+
+	private final int m_sampleSize;
+	private final Reservoir m_sample;
+	// the reservoirs of the cluster minimums, empty unless stratified
+	private final Reservoir[] m_strata;
+	private final Random m_random;
+	private long m_missingCount;
+	private long m_rowSequence;
+
+	private ScatterPlot3DPointSampler(final int sampleSize, final int numStrata, final long seed) {
+		m_random = new Random(seed);
+		m_sampleSize = sampleSize;
+		m_sample = new Reservoir(sampleSize, m_random);
+		// with more clusters than points, not every cluster can have a minimum
+		int minimum = numStrata == 0 || sampleSize < numStrata ? 0
+				: Math.max(1, (int) (sampleSize * MIN_CLUSTER_SHARE / numStrata));
+		m_strata = new Reservoir[numStrata];
+		for (int i = 0; i < numStrata; i++) {
+			m_strata[i] = new Reservoir(minimum, m_random);
+		}
+	}
+
+	/**
+	 * Creates a sampler keeping a uniform sample of <code>sampleSize</code>
+	 * points.
+	 */
+	public static ScatterPlot3DPointSampler createReservoir(final int sampleSize, final long seed) {
+		return new ScatterPlot3DPointSampler(sampleSize, 0, seed);
+	}
+
+	/**
+	 * Creates a sampler keeping <code>sampleSize</code> points, shared by
+	 * <code>numStrata</code> clusters in proportion to their size but with a
+	 * minimum per cluster, keyed on the palette index of each point.
+	 */
+	public static ScatterPlot3DPointSampler createStratified(final int sampleSize, final int numStrata,
+			final long seed) {
+		return new ScatterPlot3DPointSampler(sampleSize, Math.max(numStrata, 1), seed);
+	}
+
+	@Override
+	public void addPoint(final float x, final float y, final float z, final int colorIndex, final String rowKey) {
+		m_sample.offer(x, y, z, colorIndex, rowKey, m_rowSequence);
+		if (colorIndex >= 0 && colorIndex < m_strata.length) {
+			m_strata[colorIndex].offer(x, y, z, colorIndex, rowKey, m_rowSequence);
+		}
+		m_rowSequence++;
+	}
+
+	@Override
+	public void addMissing() {
+		m_missingCount++;
+	}
+
+	/**
+	 * @return the sampled points in the order they were read
+	 */
+	public ScatterPlot3DPointStore toPointStore() {
+		// the selected points as their reservoir (-1 for the uniform sample) and slot
+		int[] reservoirs = new int[m_sampleSize];
+		int[] slots = new int[m_sampleSize];
+		int total = 0;
+		boolean[] removed = m_strata.length > 0 ? completeStrata() : new boolean[m_sample.m_size];
+		for (int i = 0; i < m_sample.m_size; i++) {
+			if (!removed[i]) {
+				reservoirs[total] = -1;
+				slots[total++] = i;
+			}
+		}
+		for (int stratum = 0; stratum < m_strata.length; stratum++) {
+			Reservoir reservoir = m_strata[stratum];
+			for (int i = 0; i < reservoir.m_size; i++) {
+				if (reservoir.m_added[i]) {
+					reservoirs[total] = stratum;
+					slots[total++] = i;
+				}
+			}
+		}
+		long[] sortedSequence = new long[total];
+		for (int i = 0; i < total; i++) {
+			sortedSequence[i] = getReservoir(reservoirs[i]).m_sequence[slots[i]];
+		}
+		Arrays.sort(sortedSequence);
+		// sequence numbers are unique, so their rank is the position of the point
+		float[] xValues = new float[total];
+		float[] yValues = new float[total];
+		float[] zValues = new float[total];
+		int[] colorIndices = new int[total];
+		String[] rowKeys = new String[total];
+		for (int i = 0; i < total; i++) {
+			Reservoir reservoir = getReservoir(reservoirs[i]);
+			int slot = slots[i];
+			int position = Arrays.binarySearch(sortedSequence, reservoir.m_sequence[slot]);
+			xValues[position] = reservoir.m_xValues[slot];
+			yValues[position] = reservoir.m_yValues[slot];
+			zValues[position] = reservoir.m_zValues[slot];
+			colorIndices[position] = reservoir.m_colorIndices[slot];
+			rowKeys[position] = reservoir.m_rowKeys[slot];
+		}
+		ScatterPlot3DPointStore pointStore = new ScatterPlot3DPointStore(total);
+		for (int i = 0; i < total; i++) {
+			pointStore.addPoint(xValues[i], yValues[i], zValues[i], colorIndices[i], rowKeys[i]);
+		}
+		pointStore.setMissingCount(m_missingCount);
+		return pointStore;
+	}
+
+	/**
+	 * Marks the points of the cluster reservoirs that fill up the clusters
+	 * below their minimum, and removes as many random points of the clusters
+	 * above their minimum from the uniform sample.
+	 *
+	 * @return for every slot of the uniform sample, whether it was removed
+	 */
+	private boolean[] completeStrata() {
+		int[] counts = new int[m_strata.length];
+		for (int i = 0; i < m_sample.m_size; i++) {
+			int stratum = m_sample.m_colorIndices[i];
+			if (stratum >= 0 && stratum < counts.length) {
+				counts[stratum]++;
+			}
+		}
+		long[] sampledSequence = Arrays.copyOf(m_sample.m_sequence, m_sample.m_size);
+		Arrays.sort(sampledSequence);
+		int excess = m_sample.m_size - m_sampleSize;
+		int[] minimums = new int[m_strata.length];
+		for (int stratum = 0; stratum < m_strata.length; stratum++) {
+			// a cluster smaller than its minimum is sampled completely
+			Reservoir reservoir = m_strata[stratum];
+			minimums[stratum] = reservoir.m_size;
+			for (int i = 0; i < reservoir.m_size && counts[stratum] < minimums[stratum]; i++) {
+				if (Arrays.binarySearch(sampledSequence, reservoir.m_sequence[i]) < 0) {
+					reservoir.m_added[i] = true;
+					counts[stratum]++;
+					excess++;
+				}
+			}
+		}
+		// the sum of the minimums is at most the sample size, so there are
+		// always enough points above the minimums to remove
+		boolean[] removed = new boolean[m_sample.m_size];
+		int[] candidates = new int[m_sample.m_size];
+		for (int i = 0; i < candidates.length; i++) {
+			candidates[i] = i;
+		}
+		for (int remaining = candidates.length; excess > 0 && remaining > 0; remaining--) {
+			int pick = m_random.nextInt(remaining);
+			int candidate = candidates[pick];
+			candidates[pick] = candidates[remaining - 1];
+			int stratum = m_sample.m_colorIndices[candidate];
+			boolean inStratum = stratum >= 0 && stratum < counts.length;
+			if (!inStratum || counts[stratum] > minimums[stratum]) {
+				removed[candidate] = true;
+				if (inStratum) {
+					counts[stratum]--;
+				}
+				excess--;
+			}
+		}
+		return removed;
+	}
+
+	private Reservoir getReservoir(final int reservoir) {
+		return reservoir == -1 ? m_sample : m_strata[reservoir];
+	}
+
+	private static final class Reservoir {
+		private final int m_capacity;
+		private final Random m_random;
+		private final float[] m_xValues;
+		private final float[] m_yValues;
+		private final float[] m_zValues;
+		private final int[] m_colorIndices;
+		private final String[] m_rowKeys;
+		private final long[] m_sequence;
+		// whether the point fills up its cluster in the stratified sample
+		private final boolean[] m_added;
+		private int m_size;
+		private long m_seen;
+		private double m_weight;
+		private long m_nextReplacement;
+
+		private Reservoir(final int capacity, final Random random) {
+			m_capacity = capacity;
+			m_random = random;
+			m_xValues = new float[capacity];
+			m_yValues = new float[capacity];
+			m_zValues = new float[capacity];
+			m_colorIndices = new int[capacity];
+			m_rowKeys = new String[capacity];
+			m_sequence = new long[capacity];
+			m_added = new boolean[capacity];
+		}
+
+		private void offer(final float x, final float y, final float z, final int colorIndex, final String rowKey,
+				final long sequence) {
+			if (m_capacity == 0) {
+				return;
+			}
+			int slot;
+			if (m_size < m_capacity) {
+				slot = m_size++;
+				if (m_size == m_capacity) {
+					m_weight = Math.exp(Math.log(nextOpenDouble()) / m_capacity);
+					m_nextReplacement = m_seen + 1 + nextSkip();
+				}
+			} else if (m_seen == m_nextReplacement) {
+				slot = m_random.nextInt(m_capacity);
+				m_weight *= Math.exp(Math.log(nextOpenDouble()) / m_capacity);
+				m_nextReplacement += 1 + nextSkip();
+			} else {
+				m_seen++;
+				return;
+			}
+			m_xValues[slot] = x;
+			m_yValues[slot] = y;
+			m_zValues[slot] = z;
+			m_colorIndices[slot] = colorIndex;
+			m_rowKeys[slot] = rowKey;
+			m_sequence[slot] = sequence;
+			m_seen++;
+		}
+
+		private long nextSkip() {
+			double skip = Math.floor(Math.log(nextOpenDouble()) / Math.log(1 - m_weight));
+			return skip >= Long.MAX_VALUE / 2 ? Long.MAX_VALUE / 2 : (long) skip;
+		}
+
+		// uniform in (0, 1], so the logarithms above stay finite
+		private double nextOpenDouble() {
+			return 1.0 - m_random.nextDouble();
+		}
+	}
+}
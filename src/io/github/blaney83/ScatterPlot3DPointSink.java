@@ -0,0 +1,18 @@
+package io.github.blaney83;
+
+/**
+ * Receives the points produced while reading the main data table, either to
+ * store all of them or to draw a sample.
+ *
+ * @author Benjamin Laney
+ */
+public interface ScatterPlot3DPointSink {
+
+	void addPoint(float x, float y, float z, int colorIndex, String rowKey);
+
+	/**
+	 * Records a row that was skipped because one of its plotted cells was
+	 * missing.
+	 */
+	void addMissing();
+}
@@ -0,0 +1,210 @@
+package io.github.blaney83;
+
+import java.util.Arrays;
+
+/**
+ * Primitive column store for the points plotted by the "ScatterPlot3D" Node.
+ * Coordinates are held in separate float arrays and the cluster (palette)
+ * index of each point in an int array, so no per-point objects are created
+ * during execution. The row keys of the points are kept in a
+ * {@link ScatterPlot3DRowKeyIndex} as long as every point was added with one.
+ *
+ * @author Benjamin Laney
+ */
+public class ScatterPlot3DPointStore implements ScatterPlot3DPointSink {
+
+	private static final int DEFAULT_CAPACITY = 1024;
+
+	private float[] m_xValues;
+	private float[] m_yValues;
+	private float[] m_zValues;
+	private int[] m_colorIndices;
+	private int m_size;
+	private long m_missingCount;
+	// null if any point was added without its row key
+	private ScatterPlot3DRowKeyIndex m_rowKeys;
+
+	public ScatterPlot3DPointStore() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	public ScatterPlot3DPointStore(final int initialCapacity) {
+		int capacity = Math.max(initialCapacity, 1);
+		m_xValues = new float[capacity];
+		m_yValues = new float[capacity];
+		m_zValues = new float[capacity];
+		m_colorIndices = new int[capacity];
+	}
+
+	/**
+	 * Wraps the given arrays, which must have the same length, without copying
+	 * them.
+	 */
+	public ScatterPlot3DPointStore(final float[] xValues, final float[] yValues, final float[] zValues,
+			final int[] colorIndices) {
+		m_xValues = xValues;
+		m_yValues = yValues;
+		m_zValues = zValues;
+		m_colorIndices = colorIndices;
+		m_size = xValues.length;
+	}
+
+	/**
+	 * Appends a point with its row key to the store, growing the backing
+	 * arrays when needed.
+	 */
+	@Override
+	public void addPoint(final float x, final float y, final float z, final int colorIndex, final String rowKey) {
+		if (m_size == 0 && m_rowKeys == null) {
+			m_rowKeys = new ScatterPlot3DRowKeyIndex(m_xValues.length);
+		}
+		ScatterPlot3DRowKeyIndex rowKeys = m_rowKeys;
+		addPoint(x, y, z, colorIndex);
+		if (rowKeys != null) {
+			rowKeys.add(rowKey);
+			m_rowKeys = rowKeys;
+		}
+	}
+
+	/**
+	 * Appends a point without a row key, such as an aggregate of several rows,
+	 * which drops the row keys of the store.
+	 */
+	public void addPoint(final float x, final float y, final float z, final int colorIndex) {
+		m_rowKeys = null;
+		if (m_size == m_xValues.length) {
+			grow(m_size + 1);
+		}
+		m_xValues[m_size] = x;
+		m_yValues[m_size] = y;
+		m_zValues[m_size] = z;
+		m_colorIndices[m_size] = colorIndex;
+		m_size++;
+	}
+
+	@Override
+	public void addMissing() {
+		m_missingCount++;
+	}
+
+	/**
+	 * Appends all points of another store, keeping their order.
+	 */
+	public void addAll(final ScatterPlot3DPointStore other) {
+		if (m_size == 0 && m_rowKeys == null && other.m_rowKeys != null) {
+			m_rowKeys = new ScatterPlot3DRowKeyIndex(m_xValues.length);
+		}
+		if (m_rowKeys != null && other.m_rowKeys != null) {
+			m_rowKeys.addAll(other.m_rowKeys);
+		} else if (other.m_size > 0) {
+			m_rowKeys = null;
+		}
+		int newSize = m_size + other.m_size;
+		if (newSize > m_xValues.length) {
+			grow(newSize);
+		}
+		System.arraycopy(other.m_xValues, 0, m_xValues, m_size, other.m_size);
+		System.arraycopy(other.m_yValues, 0, m_yValues, m_size, other.m_size);
+		System.arraycopy(other.m_zValues, 0, m_zValues, m_size, other.m_size);
+		System.arraycopy(other.m_colorIndices, 0, m_colorIndices, m_size, other.m_size);
+		m_size = newSize;
+		m_missingCount += other.m_missingCount;
+	}
+
+	/**
+	 * Shrinks the backing arrays to the number of stored points. After this call
+	 * the arrays returned by the getters are exactly {@link #size()} long.
+	 */
+	public void trimToSize() {
+		if (m_xValues.length != m_size) {
+			m_xValues = Arrays.copyOf(m_xValues, m_size);
+			m_yValues = Arrays.copyOf(m_yValues, m_size);
+			m_zValues = Arrays.copyOf(m_zValues, m_size);
+			m_colorIndices = Arrays.copyOf(m_colorIndices, m_size);
+		}
+		if (m_rowKeys != null) {
+			m_rowKeys.trimToSize();
+		}
+	}
+
+	private void grow(final int minCapacity) {
+		int capacity = Math.max(minCapacity, m_xValues.length + (m_xValues.length >> 1));
+		m_xValues = Arrays.copyOf(m_xValues, capacity);
+		m_yValues = Arrays.copyOf(m_yValues, capacity);
+		m_zValues = Arrays.copyOf(m_zValues, capacity);
+		m_colorIndices = Arrays.copyOf(m_colorIndices, capacity);
+	}
+
+	public int size() {
+		return m_size;
+	}
+
+	/**
+	 * @return the approximate number of bytes held by the points and their
+	 *         row keys
+	 */
+	public long getSizeInBytes() {
+		// x, y, z and the color index
+		long bytes = 16L * m_size;
+		return m_rowKeys == null ? bytes : bytes + m_rowKeys.getSizeInBytes();
+	}
+
+	public long getMissingCount() {
+		return m_missingCount;
+	}
+
+	void setMissingCount(final long missingCount) {
+		m_missingCount = missingCount;
+	}
+
+	public float getX(final int index) {
+		return m_xValues[index];
+	}
+
+	public float getY(final int index) {
+		return m_yValues[index];
+	}
+
+	public float getZ(final int index) {
+		return m_zValues[index];
+	}
+
+	public int getColorIndex(final int index) {
+		return m_colorIndices[index];
+	}
+
+	/**
+	 * @return the row keys of the points, or <code>null</code> if they are not
+	 *         known, e.g. for aggregated points
+	 */
+	public ScatterPlot3DRowKeyIndex getRowKeys() {
+		return m_rowKeys;
+	}
+
+	/**
+	 * Attaches the row keys read with the points from the internals.
+	 */
+	void setRowKeys(final ScatterPlot3DRowKeyIndex rowKeys) {
+		if (rowKeys.size() != m_size) {
+			throw new IllegalArgumentException(rowKeys.size() + " row keys for " + m_size + " points");
+		}
+		m_rowKeys = rowKeys;
+	}
+
+	// the arrays below may be longer than size() until trimToSize() is called
+	public float[] getXValues() {
+		return m_xValues;
+	}
+
+	public float[] getYValues() {
+		return m_yValues;
+	}
+
+	public float[] getZValues() {
+		return m_zValues;
+	}
+
+	public int[] getColorIndices() {
+		return m_colorIndices;
+	}
+}
@@ -0,0 +1,351 @@
+package io.github.blaney83;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import javax.swing.SwingUtilities;
+
+import org.jzy3d.chart.Chart;
+import org.jzy3d.colors.Color;
+import org.jzy3d.plot3d.primitives.AbstractDrawable;
+import org.jzy3d.plot3d.primitives.Scatter;
+import org.jzy3d.plot3d.rendering.canvas.ICanvas;
+import org.knime.core.node.NodeLogger;
+
+import com.jogamp.opengl.GLAutoDrawable;
+import com.jogamp.opengl.GLRunnable;
+
+/**
+ * Adds the plotted points to a chart progressively. A small random subset is
+ * added at once so the first frame appears immediately, then a background
+ * thread adds the remaining points in random batches, repainting the chart
+ * after every batch. In vertex buffer mode, the subset is instead replaced by
+ * the culled {@link ScatterPlot3DVertexBufferDrawable} once the octree is
+ * built, as drawing batches without vertex buffers in between would only slow
+ * down the frames. In density volume mode, it is replaced by a
+ * {@link ScatterPlot3DDensityDrawable} of all points once their density grid
+ * is built. While the user drags or zooms the camera (as reported by
+ * {@link ScatterPlot3DQualityController}) the refinement pauses, so it does
+ * not compete with the interaction for the event dispatch thread. Recolored
+ * points (see {@link #updateColors(int[])}) are updated in place in the
+ * drawables that hold them.
+ *
+ * @author Benjamin Laney
+ */
+public class ScatterPlot3DProgressiveRenderer {
+
+	private static final NodeLogger LOGGER = NodeLogger.getLogger(ScatterPlot3DProgressiveRenderer.class);
+
+	static final int PREVIEW_POINTS = 20000;
+	static final int BATCH_POINTS = 50000;
+	// the same subset is shown first every time the view is opened
+	private static final long SEED = 0x3D5CA77EL;
+
+	private final Chart m_chart;
+	private final ICanvas m_canvas;
+	private final ScatterPlot3DNodeModel m_nodeModel;
+	private final ScatterPlot3DColorBuffer m_colorBuffer;
+	private final float m_width;
+	private final boolean m_vertexBuffers;
+	private final boolean m_densityVolume;
+	private final ScatterPlot3DRenderMetrics m_metrics;
+
+	// the drawables of the points added so far, only accessed on the event dispatch thread
+	private final List<AbstractDrawable> m_drawables = new ArrayList<AbstractDrawable>();
+	private Thread m_thread;
+	// the random order of the points and the size of the first subset in it
+	private int[] m_order;
+	private int m_numPreview;
+	// the position of every point in m_order, built on first use
+	private int[] m_positions;
+	// the points of the displayed scatters and the vertex buffer drawable, read by the rendering thread
+	private volatile int m_scatterVertices;
+	private volatile ScatterPlot3DVertexBufferDrawable m_vertexBufferDrawable;
+	private volatile ScatterPlot3DDensityDrawable m_densityDrawable;
+	private volatile boolean m_canceled;
+	// guarded by this
+	private boolean m_interacting;
+	// only accessed on the event dispatch thread
+	private boolean m_decimated;
+
+	/**
+	 * @param metrics counts the bytes uploaded into vertex buffers, may be
+	 *            <code>null</code>
+	 */
+	public ScatterPlot3DProgressiveRenderer(final ScatterPlot3DNodeModel nodeModel, final Chart chart,
+			final ScatterPlot3DRenderMetrics metrics) {
+		m_nodeModel = nodeModel;
+		m_metrics = metrics;
+		m_chart = chart;
+		m_canvas = chart.getCanvas();
+		m_colorBuffer = nodeModel.getColorBuffer();
+		m_width = nodeModel.getSettings().getDataPointSize();
+		m_vertexBuffers = nodeModel.getSettings().getRenderingMode()
+				.equals(ScatterPlot3DSettings.RENDERING_MODE_VBO);
+		m_densityVolume = nodeModel.getSettings().getRenderingMode()
+				.equals(ScatterPlot3DSettings.RENDERING_MODE_DENSITY);
+	}
+
+	/**
+	 * Adds the first points to the chart and starts the refinement; must be
+	 * called on the event dispatch thread.
+	 */
+	public void start() {
+		if (m_vertexBuffers && m_nodeModel.isOctreeBuilt()) {
+			// nothing to refine, the points are uploaded with the first frame
+			addDrawable(createVertexBufferDrawable());
+			return;
+		}
+		if (m_densityVolume && m_nodeModel.isDensityGridBuilt()) {
+			addDrawable(createDensityDrawable());
+			return;
+		}
+		final int[] order = createRandomOrder(m_colorBuffer.getPoints().size());
+		final int numPreview = Math.min(order.length, PREVIEW_POINTS);
+		m_order = order;
+		m_numPreview = numPreview;
+		addDrawable(ScatterPlot3DGraphPanel.createScatter(m_colorBuffer, order, 0, numPreview, m_width));
+		if (numPreview == order.length && !m_vertexBuffers && !m_densityVolume) {
+			return;
+		}
+		m_thread = new Thread(new Runnable() {
+
+			@Override
+			public void run() {
+				try {
+					refine(order, numPreview);
+				} catch (InterruptedException e) {
+					// canceled
+				} catch (RuntimeException e) {
+					LOGGER.error("The 3D scatter plot could not be completed: " + e.getMessage(), e);
+				}
+			}
+		}, "3D Scatter Plot Refinement");
+		m_thread.setDaemon(true);
+		m_thread.start();
+	}
+
+	private void refine(final int[] order, final int numPreview) throws InterruptedException {
+		if (m_vertexBuffers || m_densityVolume) {
+			final AbstractDrawable drawable = m_vertexBuffers ? createVertexBufferDrawable()
+					: createDensityDrawable();
+			awaitIdle();
+			SwingUtilities.invokeLater(new Runnable() {
+
+				@Override
+				public void run() {
+					if (!m_canceled) {
+						for (AbstractDrawable preview : m_drawables) {
+							m_chart.getScene().getGraph().remove(preview, false);
+						}
+						m_drawables.clear();
+						addDrawable(drawable);
+					}
+				}
+			});
+		} else {
+			for (int from = numPreview; from < order.length; from += BATCH_POINTS) {
+				awaitIdle();
+				final int batchFrom = from;
+				final Scatter batch = ScatterPlot3DGraphPanel.createScatter(m_colorBuffer, order, from,
+						Math.min(from + BATCH_POINTS, order.length), m_width);
+				SwingUtilities.invokeLater(new Runnable() {
+
+					@Override
+					public void run() {
+						if (!m_canceled) {
+							// points may have been recolored since the batch was created
+							Color[] colors = batch.getColors();
+							for (int i = 0; i < colors.length; i++) {
+								colors[i] = m_colorBuffer.getColor(order[batchFrom + i]);
+							}
+							addDrawable(batch);
+						}
+					}
+				});
+			}
+		}
+	}
+
+	private ScatterPlot3DVertexBufferDrawable createVertexBufferDrawable() {
+		return new ScatterPlot3DVertexBufferDrawable(m_nodeModel.getOctree(), m_width,
+				m_nodeModel.getSettings().getDetailThreshold(), m_metrics);
+	}
+
+	private ScatterPlot3DDensityDrawable createDensityDrawable() {
+		return new ScatterPlot3DDensityDrawable(m_nodeModel.getDensityGrid(), m_nodeModel.getDataPointColors());
+	}
+
+	private void addDrawable(final AbstractDrawable drawable) {
+		m_drawables.add(drawable);
+		applyDecimation(drawable, m_drawables.size() - 1);
+		countVertices();
+		m_chart.getScene().getGraph().add(drawable, false);
+		m_chart.render();
+	}
+
+	private void countVertices() {
+		int scatterVertices = 0;
+		ScatterPlot3DVertexBufferDrawable vertexBufferDrawable = null;
+		ScatterPlot3DDensityDrawable densityDrawable = null;
+		for (AbstractDrawable drawable : m_drawables) {
+			if (drawable instanceof ScatterPlot3DVertexBufferDrawable) {
+				vertexBufferDrawable = (ScatterPlot3DVertexBufferDrawable) drawable;
+			} else if (drawable instanceof ScatterPlot3DDensityDrawable) {
+				densityDrawable = (ScatterPlot3DDensityDrawable) drawable;
+			} else if (drawable instanceof Scatter && drawable.isDisplayed()) {
+				scatterVertices += ((Scatter) drawable).getData().length;
+			}
+		}
+		m_scatterVertices = scatterVertices;
+		m_vertexBufferDrawable = vertexBufferDrawable;
+		m_densityDrawable = densityDrawable;
+	}
+
+	/**
+	 * @return the number of points (or voxels of the density volume) drawn in
+	 *         the last frame; may be called by the rendering thread
+	 */
+	public int getDrawnVertices() {
+		ScatterPlot3DVertexBufferDrawable vertexBufferDrawable = m_vertexBufferDrawable;
+		ScatterPlot3DDensityDrawable densityDrawable = m_densityDrawable;
+		return m_scatterVertices + (vertexBufferDrawable == null ? 0 : vertexBufferDrawable.getDrawnVertices())
+				+ (densityDrawable == null ? 0 : densityDrawable.getDrawnVertices());
+	}
+
+	/**
+	 * @return a random permutation of <code>[0, size)</code>
+	 */
+	private static int[] createRandomOrder(final int size) {
+		int[] order = new int[size];
+		for (int i = 0; i < size; i++) {
+			order[i] = i;
+		}
+		Random random = new Random(SEED);
+		for (int i = size - 1; i > 0; i--) {
+			int j = random.nextInt(i + 1);
+			int swap = order[i];
+			order[i] = order[j];
+			order[j] = swap;
+		}
+		return order;
+	}
+
+	/**
+	 * Pauses the refinement while the camera moves and resumes it afterwards.
+	 */
+	public synchronized void setInteracting(final boolean interacting) {
+		m_interacting = interacting;
+		notifyAll();
+	}
+
+	private synchronized void awaitIdle() throws InterruptedException {
+		while (!m_canceled && m_interacting) {
+			wait();
+		}
+		if (m_canceled) {
+			throw new InterruptedException();
+		}
+	}
+
+	/**
+	 * Draws only the first random subset of the points (or the octree with a
+	 * coarser detail threshold) while decimated; must be called on the event
+	 * dispatch thread.
+	 */
+	public void setDecimated(final boolean decimated) {
+		m_decimated = decimated;
+		for (int i = 0; i < m_drawables.size(); i++) {
+			applyDecimation(m_drawables.get(i), i);
+		}
+		countVertices();
+	}
+
+	private void applyDecimation(final AbstractDrawable drawable, final int index) {
+		if (drawable instanceof ScatterPlot3DVertexBufferDrawable) {
+			((ScatterPlot3DVertexBufferDrawable) drawable).setDecimated(m_decimated);
+		} else if (index > 0) {
+			drawable.setDisplayed(!m_decimated);
+		}
+	}
+
+	/**
+	 * Updates the colors of the given points, which have been recolored in
+	 * the color buffer and the octree, in the drawables added so far, and
+	 * repaints the chart; must be called on the event dispatch thread.
+	 *
+	 * @param points indices of {@link ScatterPlot3DColorBuffer#getPoints()}
+	 */
+	public void updateColors(final int[] points) {
+		for (int i = 0; i < m_drawables.size(); i++) {
+			AbstractDrawable drawable = m_drawables.get(i);
+			if (drawable instanceof ScatterPlot3DVertexBufferDrawable) {
+				((ScatterPlot3DVertexBufferDrawable) drawable).updateColors(points);
+			}
+		}
+		if (m_order != null && !m_drawables.isEmpty() && m_drawables.get(0) instanceof Scatter) {
+			if (m_positions == null) {
+				m_positions = new int[m_order.length];
+				for (int position = 0; position < m_order.length; position++) {
+					m_positions[m_order[position]] = position;
+				}
+			}
+			for (int point : points) {
+				// the first subset is the first drawable, followed by the batches
+				int position = m_positions[point];
+				int index = position < m_numPreview ? 0 : 1 + (position - m_numPreview) / BATCH_POINTS;
+				int offset = position < m_numPreview ? position : (position - m_numPreview) % BATCH_POINTS;
+				if (index < m_drawables.size() && m_drawables.get(index) instanceof Scatter) {
+					((Scatter) m_drawables.get(index)).getColors()[offset] = m_colorBuffer.getColor(point);
+				}
+			}
+		}
+		m_chart.render();
+	}
+
+	/**
+	 * Stops the refinement; must be called on the event dispatch thread. The
+	 * points added so far stay in the chart.
+	 */
+	public void cancel() {
+		m_canceled = true;
+		if (m_thread != null) {
+			m_thread.interrupt();
+			m_thread = null;
+		}
+	}
+
+	/**
+	 * Stops the refinement and removes all points added so far from the chart,
+	 * releasing their vertex buffers with the next frame; must be called on
+	 * the event dispatch thread.
+	 */
+	public void dispose() {
+		cancel();
+		final List<ScatterPlot3DVertexBufferDrawable> vertexBufferDrawables =
+				new ArrayList<ScatterPlot3DVertexBufferDrawable>();
+		for (AbstractDrawable drawable : m_drawables) {
+			m_chart.getScene().getGraph().remove(drawable, false);
+			if (drawable instanceof ScatterPlot3DVertexBufferDrawable) {
+				vertexBufferDrawables.add((ScatterPlot3DVertexBufferDrawable) drawable);
+			}
+		}
+		m_drawables.clear();
+		countVertices();
+		if (!vertexBufferDrawables.isEmpty() && m_canvas instanceof GLAutoDrawable) {
+			// a canvas that is destroyed before its next frame releases them with its context
+			((GLAutoDrawable) m_canvas).invoke(false, new GLRunnable() {
+
+				@Override
+				public boolean run(final GLAutoDrawable drawable) {
+					for (ScatterPlot3DVertexBufferDrawable vertexBufferDrawable : vertexBufferDrawables) {
+						vertexBufferDrawable.releaseBuffers(drawable.getGL());
+					}
+					return true;
+				}
+			});
+		}
+		m_chart.render();
+	}
+}
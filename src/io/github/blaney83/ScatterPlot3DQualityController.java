@@ -0,0 +1,197 @@
+package io.github.blaney83;
+
+import java.awt.Component;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelEvent;
+
+import javax.swing.Timer;
+
+import org.jzy3d.chart.Chart;
+import org.jzy3d.plot3d.rendering.canvas.Quality;
+
+import com.jogamp.opengl.GL;
+import com.jogamp.opengl.GL2;
+import com.jogamp.opengl.GLAutoDrawable;
+import com.jogamp.opengl.GLEventListener;
+
+/**
+ * Lowers the rendering quality of a chart while the user drags or zooms the
+ * camera and restores it after a short idle period. While the camera moves,
+ * the progressive refinement is paused and, for plots with at least the
+ * configured number of points, alpha blending and point and line smoothing
+ * are switched off and (optionally) the points are decimated. It works next
+ * to the camera controller of the chart, observing the same mouse events.
+ *
+ * @author Benjamin Laney
+ */
+public class ScatterPlot3DQualityController {
+
+	private final Chart m_chart;
+	private final Component m_canvas;
+	private final MouseAdapter m_mouseListener;
+	private final GLEventListener m_qualityListener;
+	private final Timer m_idleTimer;
+
+	private ScatterPlot3DProgressiveRenderer m_renderer;
+	private boolean m_reduceQuality;
+	private boolean m_decimate;
+	private boolean m_interacting;
+	// read by the rendering thread for every frame
+	private volatile boolean m_fast;
+
+	public ScatterPlot3DQualityController(final Chart chart) {
+		m_chart = chart;
+		m_canvas = (Component) chart.getCanvas();
+		m_idleTimer = new Timer(ScatterPlot3DSettings.DEFAULT_INTERACTION_IDLE_MILLIS, new ActionListener() {
+
+			@Override
+			public void actionPerformed(final ActionEvent e) {
+				endInteraction();
+			}
+		});
+		m_idleTimer.setRepeats(false);
+		m_mouseListener = new MouseAdapter() {
+
+			@Override
+			public void mousePressed(final MouseEvent e) {
+				beginInteraction();
+			}
+
+			@Override
+			public void mouseDragged(final MouseEvent e) {
+				beginInteraction();
+			}
+
+			@Override
+			public void mouseReleased(final MouseEvent e) {
+				m_idleTimer.restart();
+			}
+
+			@Override
+			public void mouseWheelMoved(final MouseWheelEvent e) {
+				beginInteraction();
+				m_idleTimer.restart();
+			}
+		};
+		m_canvas.addMouseListener(m_mouseListener);
+		m_canvas.addMouseMotionListener(m_mouseListener);
+		m_canvas.addMouseWheelListener(m_mouseListener);
+		m_qualityListener = new GLEventListener() {
+
+			// the quality the GL state was last set to, only accessed by the rendering thread
+			private boolean m_applied;
+
+			@Override
+			public void init(final GLAutoDrawable drawable) {
+				// a new context starts with the chart's quality
+				m_applied = false;
+			}
+
+			@Override
+			public void display(final GLAutoDrawable drawable) {
+				boolean fast = m_fast;
+				if (fast != m_applied) {
+					applyQuality(drawable.getGL(), fast);
+					m_applied = fast;
+				}
+			}
+
+			@Override
+			public void reshape(final GLAutoDrawable drawable, final int x, final int y, final int width,
+					final int height) {
+			}
+
+			@Override
+			public void dispose(final GLAutoDrawable drawable) {
+			}
+		};
+		if (m_canvas instanceof GLAutoDrawable) {
+			// runs before the chart's renderer, so the state applies to the same frame
+			((GLAutoDrawable) m_canvas).addGLEventListener(0, m_qualityListener);
+		}
+	}
+
+	/**
+	 * Controls the given renderer from now on, with the interaction settings
+	 * of its model; must be called on the event dispatch thread.
+	 *
+	 * @param renderer the renderer of the plotted points, or null if there are
+	 *            none
+	 * @param numPoints the number of plotted points
+	 */
+	public void setRenderer(final ScatterPlot3DProgressiveRenderer renderer, final ScatterPlot3DSettings settings,
+			final int numPoints) {
+		endInteraction();
+		m_renderer = renderer;
+		if (settings != null) {
+			m_reduceQuality = numPoints >= settings.getInteractionPointThreshold();
+			m_decimate = settings.getInteractionDecimate();
+			m_idleTimer.setInitialDelay(settings.getInteractionIdleMillis());
+		}
+	}
+
+	private void beginInteraction() {
+		m_idleTimer.stop();
+		if (m_interacting) {
+			return;
+		}
+		m_interacting = true;
+		if (m_renderer != null) {
+			m_renderer.setInteracting(true);
+		}
+		if (m_reduceQuality) {
+			m_fast = true;
+			if (m_decimate && m_renderer != null) {
+				m_renderer.setDecimated(true);
+			}
+		}
+	}
+
+	private void endInteraction() {
+		m_idleTimer.stop();
+		if (!m_interacting) {
+			return;
+		}
+		m_interacting = false;
+		if (m_renderer != null) {
+			m_renderer.setInteracting(false);
+			m_renderer.setDecimated(false);
+		}
+		if (m_fast) {
+			m_fast = false;
+			m_chart.render();
+		}
+	}
+
+	private void applyQuality(final GL gl, final boolean fast) {
+		Quality quality = m_chart.getQuality();
+		setEnabled(gl, GL.GL_BLEND, !fast && quality.isAlphaActivated());
+		setEnabled(gl, GL2.GL_POINT_SMOOTH, !fast && quality.isSmoothPoint());
+		setEnabled(gl, GL2.GL_LINE_SMOOTH, !fast && quality.isSmoothLine());
+	}
+
+	private static void setEnabled(final GL gl, final int capability, final boolean enabled) {
+		if (enabled) {
+			gl.glEnable(capability);
+		} else {
+			gl.glDisable(capability);
+		}
+	}
+
+	/**
+	 * Stops observing the canvas; must be called on the event dispatch thread.
+	 */
+	public void dispose() {
+		endInteraction();
+		m_renderer = null;
+		m_canvas.removeMouseListener(m_mouseListener);
+		m_canvas.removeMouseMotionListener(m_mouseListener);
+		m_canvas.removeMouseWheelListener(m_mouseListener);
+		if (m_canvas instanceof GLAutoDrawable) {
+			((GLAutoDrawable) m_canvas).removeGLEventListener(m_qualityListener);
+		}
+	}
+}
@@ -0,0 +1,274 @@
+package io.github.blaney83;
+
+import java.awt.Color;
+import java.awt.Component;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jzy3d.chart.Chart;
+import org.jzy3d.plot3d.rendering.view.AWTView;
+import org.jzy3d.plot3d.rendering.view.Renderer2d;
+
+import com.jogamp.opengl.GLAutoDrawable;
+import com.jogamp.opengl.GLEventListener;
+
+/**
+ * Measures the rendering of a chart: the time of every frame, the number of
+ * points drawn in it and the bytes uploaded into vertex buffers, kept for the
+ * most recent frames, as well as the time to create the chart and to show its
+ * first frame. The frames are timed by two OpenGL listeners around the
+ * chart's renderer. The measurements can be shown in an overlay on the chart
+ * and written to a CSV file; while the overlay is shown, every frame waits
+ * for the graphics card to finish, so the frame times include its work.
+ *
+ * @author Benjamin Laney
+ */
+public class ScatterPlot3DRenderMetrics {
+
+	static final int FRAME_HISTORY = 1000;
+	private static final double NANOS_PER_MILLI = 1e6;
+
+	private final Chart m_chart;
+	private final Component m_canvas;
+	private final GLEventListener m_frameStart;
+	private final GLEventListener m_frameEnd;
+	private final Renderer2d m_overlay;
+	private final AtomicLong m_pendingUploadBytes = new AtomicLong();
+	private volatile ScatterPlot3DProgressiveRenderer m_renderer;
+	private volatile boolean m_overlayShown;
+
+	// ring buffer of the recent frames, guarded by this
+	private final long[] m_frameStarts = new long[FRAME_HISTORY];
+	private final long[] m_frameNanos = new long[FRAME_HISTORY];
+	private final int[] m_frameVertices = new int[FRAME_HISTORY];
+	private final long[] m_frameUploadBytes = new long[FRAME_HISTORY];
+	private long m_numFrames;
+	private long m_totalUploadBytes;
+	private long m_createdAt;
+	private long m_initNanos = -1;
+	private long m_firstFrameNanos = -1;
+	private int m_numPoints;
+	private String m_renderingMode;
+
+	// only accessed by the rendering thread
+	private long m_currentStart;
+
+	public ScatterPlot3DRenderMetrics(final Chart chart) {
+		m_chart = chart;
+		m_canvas = (Component) chart.getCanvas();
+		m_frameStart = new FrameListener() {
+
+			@Override
+			public void display(final GLAutoDrawable drawable) {
+				m_currentStart = System.nanoTime();
+			}
+		};
+		m_frameEnd = new FrameListener() {
+
+			@Override
+			public void display(final GLAutoDrawable drawable) {
+				if (m_overlayShown) {
+					drawable.getGL().glFinish();
+				}
+				ScatterPlot3DProgressiveRenderer renderer = m_renderer;
+				addFrame(m_currentStart, System.nanoTime() - m_currentStart,
+						renderer == null ? 0 : renderer.getDrawnVertices(), m_pendingUploadBytes.getAndSet(0));
+			}
+		};
+		if (m_canvas instanceof GLAutoDrawable) {
+			((GLAutoDrawable) m_canvas).addGLEventListener(0, m_frameStart);
+			((GLAutoDrawable) m_canvas).addGLEventListener(m_frameEnd);
+		}
+		m_overlay = new Renderer2d() {
+
+			@Override
+			public void paint(final Graphics g, final int width, final int height) {
+				if (m_overlayShown) {
+					paintOverlay(g);
+				}
+			}
+		};
+		if (chart.getView() instanceof AWTView) {
+			((AWTView) chart.getView()).addRenderer2d(m_overlay);
+		}
+	}
+
+	/**
+	 * Records the time it took to create and initialize the chart.
+	 *
+	 * @param createdAt the {@link System#nanoTime()} the chart was created
+	 *            at, from which the latency of the first frame is measured
+	 */
+	public synchronized void setInitTime(final long createdAt, final long initNanos) {
+		m_createdAt = createdAt;
+		m_initNanos = initNanos;
+	}
+
+	/**
+	 * Counts the points drawn by the given renderer from now on and starts
+	 * a new series of frames for its model; must be called on the event
+	 * dispatch thread.
+	 *
+	 * @param renderer the renderer of the plotted points, or null if there are
+	 *            none
+	 */
+	public void setRenderer(final ScatterPlot3DProgressiveRenderer renderer, final ScatterPlot3DSettings settings,
+			final int numPoints) {
+		m_renderer = renderer;
+		synchronized (this) {
+			m_numFrames = 0;
+			m_totalUploadBytes = 0;
+			m_numPoints = numPoints;
+			m_renderingMode = settings == null ? null : settings.getRenderingMode();
+		}
+	}
+
+	/**
+	 * Counts bytes uploaded into vertex buffers; called by the rendering
+	 * thread during a frame.
+	 */
+	public void addUploadBytes(final long bytes) {
+		m_pendingUploadBytes.addAndGet(bytes);
+	}
+
+	private synchronized void addFrame(final long start, final long nanos, final int vertices,
+			final long uploadBytes) {
+		if (m_firstFrameNanos == -1 && m_initNanos != -1) {
+			m_firstFrameNanos = start + nanos - m_createdAt;
+		}
+		int slot = (int) (m_numFrames % FRAME_HISTORY);
+		m_frameStarts[slot] = start;
+		m_frameNanos[slot] = nanos;
+		m_frameVertices[slot] = vertices;
+		m_frameUploadBytes[slot] = uploadBytes;
+		m_numFrames++;
+		m_totalUploadBytes += uploadBytes;
+	}
+
+	/**
+	 * Shows or hides the overlay and repaints the chart; must be called on the
+	 * event dispatch thread.
+	 */
+	public void setOverlayShown(final boolean shown) {
+		m_overlayShown = shown;
+		m_chart.render();
+	}
+
+	/**
+	 * @return the given percentiles (between 0 and 100) of the recent frame
+	 *         times in milliseconds, NaN if no frame was drawn yet
+	 */
+	public synchronized double[] getFrameMillisPercentiles(final double... percentiles) {
+		int count = (int) Math.min(m_numFrames, FRAME_HISTORY);
+		double[] values = new double[percentiles.length];
+		if (count == 0) {
+			Arrays.fill(values, Double.NaN);
+			return values;
+		}
+		long[] sorted = Arrays.copyOf(m_frameNanos, count);
+		Arrays.sort(sorted);
+		for (int i = 0; i < percentiles.length; i++) {
+			// nearest rank
+			int rank = (int) Math.ceil(percentiles[i] / 100 * count);
+			values[i] = sorted[Math.min(Math.max(rank, 1), count) - 1] / NANOS_PER_MILLI;
+		}
+		return values;
+	}
+
+	private void paintOverlay(final Graphics g) {
+		String[] lines;
+		synchronized (this) {
+			double[] percentiles = getFrameMillisPercentiles(50, 95, 99);
+			int last = (int) ((m_numFrames + FRAME_HISTORY - 1) % FRAME_HISTORY);
+			lines = new String[] {
+					String.format(Locale.ROOT, "Frame time p50 %.1f ms, p95 %.1f ms, p99 %.1f ms", percentiles[0],
+							percentiles[1], percentiles[2]),
+					"Points drawn: " + (m_numFrames == 0 ? 0 : m_frameVertices[last]) + " of " + m_numPoints,
+					String.format(Locale.ROOT, "Vertex buffer uploads: %.1f MB", m_totalUploadBytes / 1e6),
+					String.format(Locale.ROOT, "Chart init: %.0f ms, first frame: %.0f ms",
+							m_initNanos / NANOS_PER_MILLI, m_firstFrameNanos / NANOS_PER_MILLI),
+					"Frames: " + m_numFrames };
+		}
+		g.setFont(new Font("Arial", Font.PLAIN, 12));
+		FontMetrics metrics = g.getFontMetrics();
+		int width = 0;
+		for (String line : lines) {
+			width = Math.max(width, metrics.stringWidth(line));
+		}
+		int lineHeight = metrics.getHeight();
+		g.setColor(new Color(255, 255, 255, 200));
+		g.fillRect(4, 4, width + 8, lines.length * lineHeight + 6);
+		g.setColor(Color.BLACK);
+		for (int i = 0; i < lines.length; i++) {
+			g.drawString(lines[i], 8, 6 + metrics.getAscent() + i * lineHeight);
+		}
+	}
+
+	/**
+	 * Writes one line per recent frame, oldest first, with the chart
+	 * measurements repeated on every line, so files of different settings and
+	 * data sets can simply be concatenated.
+	 */
+	public synchronized void writeCSV(final File file) throws IOException {
+		try (PrintWriter writer = new PrintWriter(
+				new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8))) {
+			writer.println("frame,start_ms,frame_ms,points_drawn,upload_bytes,plotted_points,rendering_mode,"
+					+ "init_ms,first_frame_ms");
+			long first = Math.max(m_numFrames - FRAME_HISTORY, 0);
+			for (long frame = first; frame < m_numFrames; frame++) {
+				int slot = (int) (frame % FRAME_HISTORY);
+				writer.println(String.format(Locale.ROOT, "%d,%.3f,%.3f,%d,%d,%d,\"%s\",%.3f,%.3f", frame,
+						(m_frameStarts[slot] - m_createdAt) / NANOS_PER_MILLI, m_frameNanos[slot] / NANOS_PER_MILLI,
+						m_frameVertices[slot], m_frameUploadBytes[slot], m_numPoints,
+						m_renderingMode == null ? "" : m_renderingMode, m_initNanos / NANOS_PER_MILLI,
+						m_firstFrameNanos / NANOS_PER_MILLI));
+			}
+			if (writer.checkError()) {
+				throw new IOException("The metrics could not be written to " + file + ".");
+			}
+		}
+	}
+
+	/**
+	 * Stops measuring the chart; must be called on the event dispatch thread.
+	 */
+	public void dispose() {
+		m_renderer = null;
+		if (m_canvas instanceof GLAutoDrawable) {
+			((GLAutoDrawable) m_canvas).removeGLEventListener(m_frameStart);
+			((GLAutoDrawable) m_canvas).removeGLEventListener(m_frameEnd);
+		}
+		if (m_chart.getView() instanceof AWTView) {
+			((AWTView) m_chart.getView()).removeRenderer2d(m_overlay);
+		}
+	}
+
+	/**
+	 * Only observes the frames.
+	 */
+	private abstract static class FrameListener implements GLEventListener {
+
+		@Override
+		public void init(final GLAutoDrawable drawable) {
+		}
+
+		@Override
+		public void reshape(final GLAutoDrawable drawable, final int x, final int y, final int width,
+				final int height) {
+		}
+
+		@Override
+		public void dispose(final GLAutoDrawable drawable) {
+		}
+	}
+}
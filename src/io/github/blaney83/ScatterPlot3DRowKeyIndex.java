@@ -0,0 +1,223 @@
+package io.github.blaney83;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * The row keys of the plotted points, in the order of the points. All keys
+ * are encoded as UTF-8 into one shared byte array and every point only keeps
+ * the int offset of its key, so no string is held per point. The keys are
+ * only decoded when they are looked up. Finding the point of a key uses an
+ * open addressing hash table of point indices over the encoded keys, which is
+ * built on the first lookup.
+ *
+ * @author Benjamin Laney
+ */
+public class ScatterPlot3DRowKeyIndex {
+
+	private static final int DEFAULT_CAPACITY = 1024;
+	// most row keys are short, e.g. "Row12345"
+	private static final int EXPECTED_KEY_BYTES = 12;
+
+	private byte[] m_keyBytes;
+	private int m_numBytes;
+	// key i occupies [m_offsets[i], m_offsets[i + 1]) of m_keyBytes
+	private int[] m_offsets;
+	private int m_size;
+	// point index + 1 per slot, 0 for empty slots; null until the first lookup
+	private int[] m_table;
+
+	public ScatterPlot3DRowKeyIndex() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	public ScatterPlot3DRowKeyIndex(final int initialCapacity) {
+		int capacity = Math.max(initialCapacity, 1);
+		m_offsets = new int[capacity + 1];
+		m_keyBytes = new byte[(int) Math.min((long) capacity * EXPECTED_KEY_BYTES, Integer.MAX_VALUE - 8)];
+	}
+
+	/**
+	 * Wraps the encoded keys of <code>size</code> points without copying them.
+	 *
+	 * @param offsets the start of every key in <code>keyBytes</code> followed
+	 *            by the end of the last key
+	 */
+	ScatterPlot3DRowKeyIndex(final byte[] keyBytes, final int[] offsets, final int size) {
+		m_keyBytes = keyBytes;
+		m_offsets = offsets;
+		m_size = size;
+		m_numBytes = offsets[size];
+	}
+
+	/**
+	 * Appends the key of the next point.
+	 */
+	public void add(final String key) {
+		m_table = null;
+		if (m_size + 1 == m_offsets.length) {
+			m_offsets = Arrays.copyOf(m_offsets, grow(m_offsets.length, m_size + 2));
+		}
+		int length = key.length();
+		boolean ascii = true;
+		for (int i = 0; i < length && ascii; i++) {
+			ascii = key.charAt(i) < 0x80;
+		}
+		if (ascii) {
+			ensureBytes(length);
+			for (int i = 0; i < length; i++) {
+				m_keyBytes[m_numBytes++] = (byte) key.charAt(i);
+			}
+		} else {
+			byte[] encoded = key.getBytes(StandardCharsets.UTF_8);
+			ensureBytes(encoded.length);
+			System.arraycopy(encoded, 0, m_keyBytes, m_numBytes, encoded.length);
+			m_numBytes += encoded.length;
+		}
+		m_offsets[++m_size] = m_numBytes;
+	}
+
+	/**
+	 * Appends all keys of another index, keeping their order.
+	 */
+	public void addAll(final ScatterPlot3DRowKeyIndex other) {
+		m_table = null;
+		if (m_size + other.m_size + 1 > m_offsets.length) {
+			m_offsets = Arrays.copyOf(m_offsets, grow(m_offsets.length, m_size + other.m_size + 1));
+		}
+		ensureBytes(other.m_numBytes);
+		System.arraycopy(other.m_keyBytes, 0, m_keyBytes, m_numBytes, other.m_numBytes);
+		for (int i = 1; i <= other.m_size; i++) {
+			m_offsets[m_size + i] = m_numBytes + other.m_offsets[i];
+		}
+		m_size += other.m_size;
+		m_numBytes += other.m_numBytes;
+	}
+
+	private void ensureBytes(final int additionalBytes) {
+		long required = (long) m_numBytes + additionalBytes;
+		if (required > Integer.MAX_VALUE - 8) {
+			throw new IllegalStateException("The row keys of the plotted points exceed 2 GB.");
+		}
+		if (required > m_keyBytes.length) {
+			m_keyBytes = Arrays.copyOf(m_keyBytes, grow(m_keyBytes.length, (int) required));
+		}
+	}
+
+	private static int grow(final int length, final int minLength) {
+		return (int) Math.min(Math.max(minLength, length + (long) (length >> 1)), Integer.MAX_VALUE - 8);
+	}
+
+	/**
+	 * Shrinks the backing arrays to the stored keys.
+	 */
+	public void trimToSize() {
+		if (m_offsets.length != m_size + 1) {
+			m_offsets = Arrays.copyOf(m_offsets, m_size + 1);
+		}
+		if (m_keyBytes.length != m_numBytes) {
+			m_keyBytes = Arrays.copyOf(m_keyBytes, m_numBytes);
+		}
+	}
+
+	public int size() {
+		return m_size;
+	}
+
+	/**
+	 * @return the number of bytes of the backing arrays, including the lookup
+	 *         table that is built by the first lookup
+	 */
+	public long getSizeInBytes() {
+		long tableLength = Long.highestOneBit(Math.max(m_size, 1) * 2L - 1) << 1;
+		return m_keyBytes.length + 4L * m_offsets.length + 4L * tableLength;
+	}
+
+	/**
+	 * @return the row key of the point with the given index
+	 */
+	public String getKey(final int index) {
+		if (index < 0 || index >= m_size) {
+			throw new IndexOutOfBoundsException("Point " + index + " of " + m_size);
+		}
+		int start = m_offsets[index];
+		return new String(m_keyBytes, start, m_offsets[index + 1] - start, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * @return the index of the point with the given row key, or -1 if no point
+	 *         has it
+	 */
+	public int indexOf(final String key) {
+		int[] table = getTable();
+		byte[] encoded = key.getBytes(StandardCharsets.UTF_8);
+		int mask = table.length - 1;
+		for (int slot = hash(encoded, 0, encoded.length) & mask;; slot = (slot + 1) & mask) {
+			int index = table[slot] - 1;
+			if (index == -1) {
+				return -1;
+			}
+			int start = m_offsets[index];
+			if (m_offsets[index + 1] - start == encoded.length && equals(encoded, start)) {
+				return index;
+			}
+		}
+	}
+
+	private boolean equals(final byte[] encoded, final int start) {
+		for (int i = 0; i < encoded.length; i++) {
+			if (m_keyBytes[start + i] != encoded[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private synchronized int[] getTable() {
+		if (m_table == null) {
+			// at most half of the slots are used
+			int[] table = new int[(int) (Long.highestOneBit(Math.max(m_size, 1) * 2L - 1) << 1)];
+			int mask = table.length - 1;
+			for (int index = 0; index < m_size; index++) {
+				int start = m_offsets[index];
+				int slot = hash(m_keyBytes, start, m_offsets[index + 1] - start) & mask;
+				while (table[slot] != 0) {
+					slot = (slot + 1) & mask;
+				}
+				table[slot] = index + 1;
+			}
+			m_table = table;
+		}
+		return m_table;
+	}
+
+	private static int hash(final byte[] bytes, final int start, final int length) {
+		int hash = 0x811C9DC5;
+		for (int i = start; i < start + length; i++) {
+			hash = (hash ^ bytes[i]) * 0x01000193;
+		}
+		// spread the bits of the FNV-1a hash, as the table only uses the low ones
+		return hash ^ (hash >>> 16);
+	}
+
+	/**
+	 * @return the encoded keys, only the first {@link #getNumBytes()} bytes
+	 *         are used; the array is shared and must not be modified
+	 */
+	byte[] getKeyBytes() {
+		return m_keyBytes;
+	}
+
+	int getNumBytes() {
+		return m_numBytes;
+	}
+
+	/**
+	 * @return the start of every key followed by the end of the last key, only
+	 *         the first {@link #size()} + 1 values are used; the array is shared
+	 *         and must not be modified
+	 */
+	int[] getOffsets() {
+		return m_offsets;
+	}
+}
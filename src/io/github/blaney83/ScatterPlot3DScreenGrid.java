@@ -0,0 +1,298 @@
+package io.github.blaney83;
+
+import java.awt.Shape;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Screen space index over the plotted points for picking. Every point is
+ * projected onto the canvas with the matrices of a {@link Projection}, and the
+ * points are sorted into a uniform grid of square cells by a counting sort
+ * whose projection and scatter passes run in parallel over ranges of points.
+ * Looking up the point under the cursor or the points inside a lasso then only
+ * visits the cells involved instead of every point. A grid is only valid for
+ * the projection it was built with.
+ *
+ * @author Benjamin Laney
+ */
+public class ScatterPlot3DScreenGrid {
+
+	static final int CELL_SIZE = 8;
+	// below this many points per worker the projection runs on one thread
+	static final int MIN_POINTS_PER_CHUNK = 50000;
+
+	private final Projection m_projection;
+	private final int m_columns;
+	private final int m_rows;
+	// canvas position and normalized depth (smaller is closer) of every point
+	private final float[] m_screenX;
+	private final float[] m_screenY;
+	private final float[] m_depth;
+	// the visible points of cell c are m_cellPoints[m_cellStart[c]] to m_cellPoints[m_cellStart[c + 1] - 1]
+	private final int[] m_cellStart;
+	private int[] m_cellPoints;
+
+	private ScatterPlot3DScreenGrid(final int numPoints, final Projection projection) {
+		m_projection = projection;
+		m_columns = Math.max((projection.m_width + CELL_SIZE - 1) / CELL_SIZE, 1);
+		m_rows = Math.max((projection.m_height + CELL_SIZE - 1) / CELL_SIZE, 1);
+		m_screenX = new float[numPoints];
+		m_screenY = new float[numPoints];
+		m_depth = new float[numPoints];
+		m_cellStart = new int[m_columns * m_rows + 1];
+	}
+
+	/**
+	 * Projects the points and sorts them into the grid cells.
+	 */
+	public static ScatterPlot3DScreenGrid build(final ScatterPlot3DPointStore points, final Projection projection)
+			throws Exception {
+		final ScatterPlot3DScreenGrid grid = new ScatterPlot3DScreenGrid(points.size(), projection);
+		final int numPoints = points.size();
+		final int numChunks = Math.max(1,
+				Math.min(Runtime.getRuntime().availableProcessors(), numPoints / MIN_POINTS_PER_CHUNK));
+		final int chunkSize = (numPoints + numChunks - 1) / numChunks;
+		final int[] cells = new int[numPoints];
+		ForkJoinPool pool = new ForkJoinPool(numChunks);
+		try {
+			List<Future<int[]>> projected = new ArrayList<Future<int[]>>();
+			for (int chunk = 0; chunk < numChunks; chunk++) {
+				final int from = Math.min(chunk * chunkSize, numPoints);
+				final int to = Math.min(from + chunkSize, numPoints);
+				projected.add(pool.submit(new Callable<int[]>() {
+
+					@Override
+					public int[] call() {
+						return grid.project(points, from, to, cells);
+					}
+				}));
+			}
+			// the points of a cell are ordered by chunk, so the grid does not
+			// depend on the number of workers
+			final int[][] next = new int[numChunks][];
+			for (int chunk = 0; chunk < numChunks; chunk++) {
+				next[chunk] = getChunk(projected.get(chunk));
+			}
+			int numCells = grid.m_cellStart.length - 1;
+			int offset = 0;
+			for (int cell = 0; cell < numCells; cell++) {
+				grid.m_cellStart[cell] = offset;
+				for (int chunk = 0; chunk < numChunks; chunk++) {
+					int count = next[chunk][cell];
+					next[chunk][cell] = offset;
+					offset += count;
+				}
+			}
+			grid.m_cellStart[numCells] = offset;
+			grid.m_cellPoints = new int[offset];
+
+			List<Future<int[]>> sorted = new ArrayList<Future<int[]>>();
+			for (int chunk = 0; chunk < numChunks; chunk++) {
+				final int from = Math.min(chunk * chunkSize, numPoints);
+				final int to = Math.min(from + chunkSize, numPoints);
+				final int[] chunkNext = next[chunk];
+				sorted.add(pool.submit(new Callable<int[]>() {
+
+					@Override
+					public int[] call() {
+						for (int point = from; point < to; point++) {
+							if (cells[point] != -1) {
+								grid.m_cellPoints[chunkNext[cells[point]]++] = point;
+							}
+						}
+						return chunkNext;
+					}
+				}));
+			}
+			for (Future<int[]> chunk : sorted) {
+				getChunk(chunk);
+			}
+		} finally {
+			pool.shutdownNow();
+		}
+		return grid;
+	}
+
+	private static int[] getChunk(final Future<int[]> chunk) throws Exception {
+		try {
+			return chunk.get();
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof Exception) {
+				throw (Exception) e.getCause();
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * Projects the points in <code>[from, to)</code> and stores the cell of
+	 * every point, -1 if it is outside of the view.
+	 *
+	 * @return the number of points of the range in every cell
+	 */
+	private int[] project(final ScatterPlot3DPointStore points, final int from, final int to, final int[] cells) {
+		int[] counts = new int[m_cellStart.length - 1];
+		float[] m = m_projection.m_clip;
+		int[] viewport = m_projection.m_viewport;
+		for (int point = from; point < to; point++) {
+			float x = points.getX(point);
+			float y = points.getY(point);
+			float z = points.getZ(point);
+			float clipW = m[3] * x + m[7] * y + m[11] * z + m[15];
+			float normalizedX = (m[0] * x + m[4] * y + m[8] * z + m[12]) / clipW;
+			float normalizedY = (m[1] * x + m[5] * y + m[9] * z + m[13]) / clipW;
+			float normalizedZ = (m[2] * x + m[6] * y + m[10] * z + m[14]) / clipW;
+			// also rejects NaN coordinates
+			if (!(clipW > 0 && Math.abs(normalizedX) <= 1 && Math.abs(normalizedY) <= 1
+					&& Math.abs(normalizedZ) <= 1)) {
+				cells[point] = -1;
+				continue;
+			}
+			// window coordinates start at the bottom, canvas coordinates at the top
+			float screenX = viewport[0] + (normalizedX + 1) / 2 * viewport[2];
+			float screenY = m_projection.m_height - (viewport[1] + (normalizedY + 1) / 2 * viewport[3]);
+			m_screenX[point] = screenX;
+			m_screenY[point] = screenY;
+			m_depth[point] = normalizedZ;
+			int cell = getRow(screenY) * m_columns + getColumn(screenX);
+			cells[point] = cell;
+			counts[cell]++;
+		}
+		return counts;
+	}
+
+	private int getColumn(final double screenX) {
+		return Math.min(Math.max((int) Math.floor(screenX / CELL_SIZE), 0), m_columns - 1);
+	}
+
+	private int getRow(final double screenY) {
+		return Math.min(Math.max((int) Math.floor(screenY / CELL_SIZE), 0), m_rows - 1);
+	}
+
+	public Projection getProjection() {
+		return m_projection;
+	}
+
+	/**
+	 * @param pointRadius the radius of the drawn points in pixels
+	 * @param searchRadius how far from the position a point may be
+	 * @return the point drawn at the given canvas position, i.e. the one closest
+	 *         to the camera among the points covering it, otherwise the point
+	 *         closest to the position within <code>searchRadius</code>; -1 if
+	 *         there is none
+	 */
+	public int pick(final float x, final float y, final float pointRadius, final float searchRadius) {
+		float radius = Math.max(pointRadius, searchRadius);
+		int fromColumn = getColumn(x - radius);
+		int toColumn = getColumn(x + radius);
+		int fromRow = getRow(y - radius);
+		int toRow = getRow(y + radius);
+		float coveredDistance = pointRadius * pointRadius;
+		int best = -1;
+		boolean bestCovers = false;
+		float bestDistance = radius * radius;
+		for (int row = fromRow; row <= toRow; row++) {
+			for (int column = fromColumn; column <= toColumn; column++) {
+				int cell = row * m_columns + column;
+				for (int i = m_cellStart[cell]; i < m_cellStart[cell + 1]; i++) {
+					int point = m_cellPoints[i];
+					float dx = m_screenX[point] - x;
+					float dy = m_screenY[point] - y;
+					float distance = dx * dx + dy * dy;
+					boolean covers = distance <= coveredDistance;
+					if (covers ? !bestCovers || m_depth[point] < m_depth[best]
+							: !bestCovers && distance <= bestDistance) {
+						best = point;
+						bestCovers = covers;
+						bestDistance = distance;
+					}
+				}
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * @return the visible points inside the given canvas area in ascending
+	 *         order
+	 */
+	public int[] select(final Shape area) {
+		Rectangle2D bounds = area.getBounds2D();
+		int fromColumn = getColumn(bounds.getMinX());
+		int toColumn = getColumn(bounds.getMaxX());
+		int fromRow = getRow(bounds.getMinY());
+		int toRow = getRow(bounds.getMaxY());
+		int[] selected = new int[64];
+		int numSelected = 0;
+		Rectangle2D cellBounds = new Rectangle2D.Float();
+		for (int row = fromRow; row <= toRow; row++) {
+			for (int column = fromColumn; column <= toColumn; column++) {
+				int cell = row * m_columns + column;
+				int start = m_cellStart[cell];
+				int end = m_cellStart[cell + 1];
+				if (start == end) {
+					continue;
+				}
+				if (selected.length < numSelected + end - start) {
+					selected = Arrays.copyOf(selected, Math.max(selected.length * 2, numSelected + end - start));
+				}
+				// border cells may hold points projected outside of the canvas
+				boolean inner = row > 0 && row < m_rows - 1 && column > 0 && column < m_columns - 1;
+				cellBounds.setRect(column * CELL_SIZE, row * CELL_SIZE, CELL_SIZE, CELL_SIZE);
+				if (inner && area.contains(cellBounds)) {
+					System.arraycopy(m_cellPoints, start, selected, numSelected, end - start);
+					numSelected += end - start;
+					continue;
+				}
+				for (int i = start; i < end; i++) {
+					int point = m_cellPoints[i];
+					if (area.contains(m_screenX[point], m_screenY[point])) {
+						selected[numSelected++] = point;
+					}
+				}
+			}
+		}
+		selected = Arrays.copyOf(selected, numSelected);
+		Arrays.sort(selected);
+		return selected;
+	}
+
+	/**
+	 * The matrices and canvas size the points were drawn with in one frame.
+	 */
+	public static final class Projection {
+		// projection * model view, column major
+		private final float[] m_clip;
+		private final int[] m_viewport;
+		private final int m_width;
+		private final int m_height;
+
+		public Projection(final float[] clip, final int[] viewport, final int width, final int height) {
+			m_clip = clip.clone();
+			m_viewport = viewport.clone();
+			m_width = width;
+			m_height = height;
+		}
+
+		@Override
+		public boolean equals(final Object other) {
+			if (!(other instanceof Projection)) {
+				return false;
+			}
+			Projection projection = (Projection) other;
+			return Arrays.equals(m_clip, projection.m_clip) && Arrays.equals(m_viewport, projection.m_viewport)
+					&& m_width == projection.m_width && m_height == projection.m_height;
+		}
+
+		@Override
+		public int hashCode() {
+			return (Arrays.hashCode(m_clip) * 31 + Arrays.hashCode(m_viewport)) * 31 + m_width * 17 + m_height;
+		}
+	}
+}
@@ -11,6 +11,7 @@ import org.knime.core.node.NodeSettingsWO;
 import org.knime.core.node.defaultnodesettings.SettingsModelBoolean;
 import org.knime.core.node.defaultnodesettings.SettingsModelColor;
 import org.knime.core.node.defaultnodesettings.SettingsModelColumnName;
+import org.knime.core.node.defaultnodesettings.SettingsModelInteger;
 import org.knime.core.node.defaultnodesettings.SettingsModelIntegerBounded;
 import org.knime.core.node.defaultnodesettings.SettingsModelString;
 import org.knime.core.node.util.filter.NameFilterConfiguration;
@@ -26,6 +27,8 @@ public class ScatterPlot3DSettings {
 
 	// externals file config
 	protected static final String FILE_NAME = "scatter_plot_3_d.xml";
+	protected static final String BINARY_FILE_NAME = "scatter_plot_3_d.bin";
+	protected static final String ROW_KEYS_FILE_NAME = "scatter_plot_3_d_keys.bin";
 
 	// static internal config keys
 	static final String CFGKEY_X_AXIS_VAR_COLUMN = "xAxisVarColumn";
@@ -35,6 +38,10 @@ public class ScatterPlot3DSettings {
 	static final String CFGKEY_NUMBER_CLUSTERS = "numClusters";
 	static final String CFGKEY_CLUSTER_TYPE = "typeCluster";
 	static final String CFGKEY_PROTOTYPES_PROVIDED = "prototypesProvided";
+	static final String CFGKEY_COLOR_COLUMN = "colorColumn";
+	static final String CFGKEY_COLOR_MAP = "colorMap";
+	static final String CFGKEY_REPORT_TIMINGS = "reportTimings";
+	static final String CFGKEY_INTERNALS_PRECISION = "internalsPrecision";
 
 	//view internals keys
 	static final String INTERNAL_MODEL_NAME_KEY = "internalModel";
@@ -68,30 +75,92 @@ public class ScatterPlot3DSettings {
 	// view configs
 	static final String CFGKEY_SHOW_ALL = "showAllData";
 	static final String CFGKEY_COUNT = "count";
+	static final String CFGKEY_SAMPLING_MODE = "samplingMode";
+	static final String CFGKEY_SAMPLING_SEED = "samplingSeed";
 	static final String CFGKEY_DBSCAN_PLOT_NOISE_MEMBERS = "dbNoiseMembers";
 	static final String CFGKEY_DATA_POINT_SIZE = "pointSize";
+	static final String CFGKEY_POINT_BUDGET = "pointBudget";
+	static final String CFGKEY_LOD_RESOLUTION = "lodResolution";
+	static final String CFGKEY_RENDERING_MODE = "renderingMode";
+	static final String CFGKEY_DETAIL_THRESHOLD = "detailThreshold";
+	static final String CFGKEY_DENSITY_RESOLUTION = "densityResolution";
+	static final String CFGKEY_INTERACTION_POINT_THRESHOLD = "interactionPointThreshold";
+	static final String CFGKEY_INTERACTION_IDLE_MILLIS = "interactionIdleMillis";
+	static final String CFGKEY_INTERACTION_DECIMATE = "interactionDecimate";
 	static final String CFGKEY_PROTOTYPE_POINT_SIZE = "protoSize";
 	static final String CFGKEY_PROTOTYPE_POINT_COLOR = "protoColor";
 	static final String CFGKEY_DBSCAN_NOISE_MEMBER_COLOR = "dbNoiseColor";
 
+	// image configs
+	static final String CFGKEY_CREATE_IMAGE = "createImage";
+	static final String CFGKEY_IMAGE_WIDTH = "imageWidth";
+	static final String CFGKEY_IMAGE_HEIGHT = "imageHeight";
+	static final String CFGKEY_IMAGE_AZIMUTH = "imageAzimuth";
+	static final String CFGKEY_IMAGE_ELEVATION = "imageElevation";
+
 	// static internal defaults
 	static final boolean DEFAULT_PRE_CLUSTERED_DATA = false;
 	static final String DEFAULT_CLUSTER_TYPE = "K-Means";
 	static final String[] DEFAULT_CLUSTER_TYPES_ARRAY = new String[]{"K-Means", "Fuzzy C-Means", "DBSCAN"};
 	static final String DEFAULT_FILTER_TYPE = "STANDARD";
 	static final boolean DEFAULT_PROTOTYPES_PROVIDED = false;
+	// no column, the points are colored by cluster
+	static final String DEFAULT_COLOR_COLUMN = "";
+	static final String COLOR_MAP_VIRIDIS = "Viridis";
+	static final String COLOR_MAP_BLUE_TO_RED = "Blue to red";
+	static final String COLOR_MAP_BLACK_TO_WHITE = "Black to white";
+	static final String[] DEFAULT_COLOR_MAPS_ARRAY = new String[] { COLOR_MAP_VIRIDIS, COLOR_MAP_BLUE_TO_RED,
+			COLOR_MAP_BLACK_TO_WHITE };
+	static final String DEFAULT_COLOR_MAP = COLOR_MAP_VIRIDIS;
+	static final boolean DEFAULT_REPORT_TIMINGS = false;
+	static final String INTERNALS_PRECISION_FULL = "Full (32 bit floats)";
+	static final String INTERNALS_PRECISION_COMPACT = "Compact (16 bit, compressed)";
+	static final String[] DEFAULT_INTERNALS_PRECISIONS_ARRAY = new String[] { INTERNALS_PRECISION_FULL,
+			INTERNALS_PRECISION_COMPACT };
+	static final String DEFAULT_INTERNALS_PRECISION = INTERNALS_PRECISION_FULL;
 
 	// view defaults
 	static final boolean DEFAULT_SHOW_ALL_DATA = false;
 	static final int DEFAULT_COUNT = 100;
+	static final String SAMPLING_MODE_FIRST_ROWS = "First rows";
+	static final String SAMPLING_MODE_RANDOM = "Random sample";
+	static final String SAMPLING_MODE_STRATIFIED = "Stratified by cluster";
+	static final String[] DEFAULT_SAMPLING_MODES_ARRAY = new String[] { SAMPLING_MODE_FIRST_ROWS,
+			SAMPLING_MODE_RANDOM, SAMPLING_MODE_STRATIFIED };
+	static final String DEFAULT_SAMPLING_MODE = SAMPLING_MODE_FIRST_ROWS;
+	static final int DEFAULT_SAMPLING_SEED = 42;
 	static final boolean DEFAULT_DBSCAN_PLOT_NOISE_MEMBERS = true;
 	static final int DEFAULT_DATA_POINT_SIZE = 5;
+	static final int DEFAULT_POINT_BUDGET = 500000;
+	static final int DEFAULT_LOD_RESOLUTION = 256;
+	static final int MAX_LOD_RESOLUTION = 1024;
+	static final String RENDERING_MODE_VBO = "Vertex buffer objects (GPU)";
+	static final String RENDERING_MODE_IMMEDIATE = "Immediate mode";
+	static final String RENDERING_MODE_DENSITY = "Density volume";
+	static final String[] DEFAULT_RENDERING_MODES_ARRAY = new String[] { RENDERING_MODE_VBO,
+			RENDERING_MODE_IMMEDIATE, RENDERING_MODE_DENSITY };
+	static final String DEFAULT_RENDERING_MODE = RENDERING_MODE_VBO;
+	static final int DEFAULT_DETAIL_THRESHOLD = 2;
+	static final int MAX_DETAIL_THRESHOLD = 64;
+	static final int DEFAULT_DENSITY_RESOLUTION = 64;
+	static final int MAX_DENSITY_RESOLUTION = 256;
+	static final int DEFAULT_INTERACTION_POINT_THRESHOLD = 100000;
+	static final int DEFAULT_INTERACTION_IDLE_MILLIS = 300;
+	static final boolean DEFAULT_INTERACTION_DECIMATE = true;
 	static final int DEFAULT_PROTOTYPE_POINT_SIZE = 10;
 	static final Color DEFAULT_PROTOTYPE_POINT_COLOR = new Color(255, 255, 255);
 	static final Color DEFAULT_DBSCAN_NOISE_MEMBER_COLOR = new Color(255, 255, 255);
 	static final int PANEL_WIDTH = 800;
 	static final int PANEL_HEIGHT = 650;
 
+	// image defaults
+	static final boolean DEFAULT_CREATE_IMAGE = false;
+	static final int DEFAULT_IMAGE_WIDTH = PANEL_WIDTH;
+	static final int DEFAULT_IMAGE_HEIGHT = PANEL_HEIGHT;
+	static final int MAX_IMAGE_SIZE = 8192;
+	static final int DEFAULT_IMAGE_AZIMUTH = 60;
+	static final int DEFAULT_IMAGE_ELEVATION = 30;
+
 	// settings model declarations
 	protected final SettingsModelColumnName m_xAxisVarColumn = new SettingsModelColumnName(CFGKEY_X_AXIS_VAR_COLUMN,
 			"");
@@ -106,20 +175,59 @@ public class ScatterPlot3DSettings {
 	protected final SettingsModelString m_clusterType = new SettingsModelString(CFGKEY_CLUSTER_TYPE,
 			DEFAULT_CLUSTER_TYPE);
 	protected final SettingsModelBoolean m_prototypesProvided = new SettingsModelBoolean(CFGKEY_PROTOTYPES_PROVIDED, DEFAULT_PROTOTYPES_PROVIDED);
+	protected final SettingsModelString m_colorColumn = new SettingsModelString(CFGKEY_COLOR_COLUMN,
+			DEFAULT_COLOR_COLUMN);
+	protected final SettingsModelString m_colorMap = new SettingsModelString(CFGKEY_COLOR_MAP, DEFAULT_COLOR_MAP);
+	protected final SettingsModelBoolean m_reportTimings = new SettingsModelBoolean(CFGKEY_REPORT_TIMINGS,
+			DEFAULT_REPORT_TIMINGS);
+	protected final SettingsModelString m_internalsPrecision = new SettingsModelString(CFGKEY_INTERNALS_PRECISION,
+			DEFAULT_INTERNALS_PRECISION);
 	
 	// view settings model declarations
 	protected final SettingsModelBoolean m_showAllData = new SettingsModelBoolean(CFGKEY_SHOW_ALL,
 			DEFAULT_SHOW_ALL_DATA);
 	private final SettingsModelIntegerBounded m_count = new SettingsModelIntegerBounded(CFGKEY_COUNT, DEFAULT_COUNT, 0,
 			Integer.MAX_VALUE);
+	protected final SettingsModelString m_samplingMode = new SettingsModelString(CFGKEY_SAMPLING_MODE,
+			DEFAULT_SAMPLING_MODE);
+	protected final SettingsModelInteger m_samplingSeed = new SettingsModelInteger(CFGKEY_SAMPLING_SEED,
+			DEFAULT_SAMPLING_SEED);
 	private final SettingsModelBoolean m_dbscanPlotNoise = new SettingsModelBoolean(CFGKEY_DBSCAN_PLOT_NOISE_MEMBERS, DEFAULT_DBSCAN_PLOT_NOISE_MEMBERS);
 	protected final SettingsModelIntegerBounded m_dataPointSize = new SettingsModelIntegerBounded(
 			CFGKEY_DATA_POINT_SIZE, DEFAULT_DATA_POINT_SIZE, 1, Integer.MAX_VALUE);
+	protected final SettingsModelIntegerBounded m_pointBudget = new SettingsModelIntegerBounded(CFGKEY_POINT_BUDGET,
+			DEFAULT_POINT_BUDGET, 1, Integer.MAX_VALUE);
+	protected final SettingsModelIntegerBounded m_lodResolution = new SettingsModelIntegerBounded(
+			CFGKEY_LOD_RESOLUTION, DEFAULT_LOD_RESOLUTION, 1, MAX_LOD_RESOLUTION);
+	protected final SettingsModelString m_renderingMode = new SettingsModelString(CFGKEY_RENDERING_MODE,
+			DEFAULT_RENDERING_MODE);
+	protected final SettingsModelIntegerBounded m_detailThreshold = new SettingsModelIntegerBounded(
+			CFGKEY_DETAIL_THRESHOLD, DEFAULT_DETAIL_THRESHOLD, 0, MAX_DETAIL_THRESHOLD);
+	protected final SettingsModelIntegerBounded m_densityResolution = new SettingsModelIntegerBounded(
+			CFGKEY_DENSITY_RESOLUTION, DEFAULT_DENSITY_RESOLUTION, 1, MAX_DENSITY_RESOLUTION);
+	protected final SettingsModelIntegerBounded m_interactionPointThreshold = new SettingsModelIntegerBounded(
+			CFGKEY_INTERACTION_POINT_THRESHOLD, DEFAULT_INTERACTION_POINT_THRESHOLD, 0, Integer.MAX_VALUE);
+	protected final SettingsModelIntegerBounded m_interactionIdleMillis = new SettingsModelIntegerBounded(
+			CFGKEY_INTERACTION_IDLE_MILLIS, DEFAULT_INTERACTION_IDLE_MILLIS, 0, Integer.MAX_VALUE);
+	protected final SettingsModelBoolean m_interactionDecimate = new SettingsModelBoolean(
+			CFGKEY_INTERACTION_DECIMATE, DEFAULT_INTERACTION_DECIMATE);
 	protected final SettingsModelIntegerBounded m_prototypePointSize = new SettingsModelIntegerBounded(
 			CFGKEY_PROTOTYPE_POINT_SIZE, DEFAULT_PROTOTYPE_POINT_SIZE, 1, Integer.MAX_VALUE);
 	protected final SettingsModelColor m_prototypePointColor = new SettingsModelColor(CFGKEY_PROTOTYPE_POINT_COLOR, DEFAULT_PROTOTYPE_POINT_COLOR);
 	protected final SettingsModelColor m_dbNoiseMemberColor = new SettingsModelColor(CFGKEY_DBSCAN_NOISE_MEMBER_COLOR, DEFAULT_DBSCAN_NOISE_MEMBER_COLOR);
 	
+	// image settings model declarations
+	protected final SettingsModelBoolean m_createImage = new SettingsModelBoolean(CFGKEY_CREATE_IMAGE,
+			DEFAULT_CREATE_IMAGE);
+	protected final SettingsModelIntegerBounded m_imageWidth = new SettingsModelIntegerBounded(CFGKEY_IMAGE_WIDTH,
+			DEFAULT_IMAGE_WIDTH, 1, MAX_IMAGE_SIZE);
+	protected final SettingsModelIntegerBounded m_imageHeight = new SettingsModelIntegerBounded(CFGKEY_IMAGE_HEIGHT,
+			DEFAULT_IMAGE_HEIGHT, 1, MAX_IMAGE_SIZE);
+	protected final SettingsModelIntegerBounded m_imageAzimuth = new SettingsModelIntegerBounded(
+			CFGKEY_IMAGE_AZIMUTH, DEFAULT_IMAGE_AZIMUTH, 0, 359);
+	protected final SettingsModelIntegerBounded m_imageElevation = new SettingsModelIntegerBounded(
+			CFGKEY_IMAGE_ELEVATION, DEFAULT_IMAGE_ELEVATION, -90, 90);
+	
 
 	@SuppressWarnings("unchecked")
 	protected final DataColumnSpecFilterConfiguration m_filterConfiguration = new DataColumnSpecFilterConfiguration(
@@ -136,15 +244,41 @@ public class ScatterPlot3DSettings {
 			m_numClusters.setIntValue(settings.getInt(CFGKEY_NUMBER_CLUSTERS));
 			m_clusterType.setStringValue(settings.getString(CFGKEY_CLUSTER_TYPE));
 			m_prototypesProvided.setBooleanValue(settings.getBoolean(CFGKEY_PROTOTYPES_PROVIDED));
+			// added after the initial release, fall back to defaults for older workflows
+			m_colorColumn.setStringValue(settings.getString(CFGKEY_COLOR_COLUMN, DEFAULT_COLOR_COLUMN));
+			m_colorMap.setStringValue(settings.getString(CFGKEY_COLOR_MAP, DEFAULT_COLOR_MAP));
+			m_reportTimings.setBooleanValue(settings.getBoolean(CFGKEY_REPORT_TIMINGS, DEFAULT_REPORT_TIMINGS));
+			m_internalsPrecision.setStringValue(
+					settings.getString(CFGKEY_INTERNALS_PRECISION, DEFAULT_INTERNALS_PRECISION));
 			
 			m_showAllData.setBooleanValue(settings.getBoolean(CFGKEY_SHOW_ALL));
 			m_count.setIntValue(settings.getInt(CFGKEY_COUNT));
+			m_samplingMode.setStringValue(settings.getString(CFGKEY_SAMPLING_MODE, DEFAULT_SAMPLING_MODE));
+			m_samplingSeed.setIntValue(settings.getInt(CFGKEY_SAMPLING_SEED, DEFAULT_SAMPLING_SEED));
 			m_dbscanPlotNoise.setBooleanValue(settings.getBoolean(CFGKEY_DBSCAN_PLOT_NOISE_MEMBERS));
 			m_dataPointSize.setIntValue(settings.getInt(CFGKEY_DATA_POINT_SIZE));
+			m_pointBudget.setIntValue(settings.getInt(CFGKEY_POINT_BUDGET, DEFAULT_POINT_BUDGET));
+			m_lodResolution.setIntValue(settings.getInt(CFGKEY_LOD_RESOLUTION, DEFAULT_LOD_RESOLUTION));
+			m_renderingMode.setStringValue(settings.getString(CFGKEY_RENDERING_MODE, DEFAULT_RENDERING_MODE));
+			m_detailThreshold.setIntValue(settings.getInt(CFGKEY_DETAIL_THRESHOLD, DEFAULT_DETAIL_THRESHOLD));
+			m_densityResolution
+					.setIntValue(settings.getInt(CFGKEY_DENSITY_RESOLUTION, DEFAULT_DENSITY_RESOLUTION));
+			m_interactionPointThreshold.setIntValue(
+					settings.getInt(CFGKEY_INTERACTION_POINT_THRESHOLD, DEFAULT_INTERACTION_POINT_THRESHOLD));
+			m_interactionIdleMillis.setIntValue(
+					settings.getInt(CFGKEY_INTERACTION_IDLE_MILLIS, DEFAULT_INTERACTION_IDLE_MILLIS));
+			m_interactionDecimate.setBooleanValue(
+					settings.getBoolean(CFGKEY_INTERACTION_DECIMATE, DEFAULT_INTERACTION_DECIMATE));
 			m_prototypePointSize.setIntValue(settings.getInt(CFGKEY_PROTOTYPE_POINT_SIZE));
 			m_prototypePointColor.setColorValue(new Color(settings.getInt(CFGKEY_PROTOTYPE_POINT_COLOR)));
 			m_dbNoiseMemberColor.setColorValue(new Color(settings.getInt(CFGKEY_DBSCAN_NOISE_MEMBER_COLOR)));
 			
+			m_createImage.setBooleanValue(settings.getBoolean(CFGKEY_CREATE_IMAGE, DEFAULT_CREATE_IMAGE));
+			m_imageWidth.setIntValue(settings.getInt(CFGKEY_IMAGE_WIDTH, DEFAULT_IMAGE_WIDTH));
+			m_imageHeight.setIntValue(settings.getInt(CFGKEY_IMAGE_HEIGHT, DEFAULT_IMAGE_HEIGHT));
+			m_imageAzimuth.setIntValue(settings.getInt(CFGKEY_IMAGE_AZIMUTH, DEFAULT_IMAGE_AZIMUTH));
+			m_imageElevation.setIntValue(settings.getInt(CFGKEY_IMAGE_ELEVATION, DEFAULT_IMAGE_ELEVATION));
+			
 		} catch (InvalidSettingsException e) {
 			throw new InvalidSettingsException("The internal settings for 3D Scatter Plot Node could not be successfully loaded. Please check the"
 					+ "configuration before execution.");
@@ -166,14 +300,33 @@ public class ScatterPlot3DSettings {
 			settings.addInt(CFGKEY_NUMBER_CLUSTERS, m_numClusters.getIntValue());
 			settings.addString(CFGKEY_CLUSTER_TYPE, m_clusterType.getStringValue());
 			settings.addBoolean(CFGKEY_PROTOTYPES_PROVIDED, m_prototypesProvided.getBooleanValue());
+			settings.addString(CFGKEY_COLOR_COLUMN, m_colorColumn.getStringValue());
+			settings.addString(CFGKEY_COLOR_MAP, m_colorMap.getStringValue());
+			settings.addBoolean(CFGKEY_REPORT_TIMINGS, m_reportTimings.getBooleanValue());
+			settings.addString(CFGKEY_INTERNALS_PRECISION, m_internalsPrecision.getStringValue());
 			
 			settings.addBoolean(CFGKEY_SHOW_ALL, m_showAllData.getBooleanValue());
 			settings.addInt(CFGKEY_COUNT, m_count.getIntValue());
+			settings.addString(CFGKEY_SAMPLING_MODE, m_samplingMode.getStringValue());
+			settings.addInt(CFGKEY_SAMPLING_SEED, m_samplingSeed.getIntValue());
 			settings.addBoolean(CFGKEY_DBSCAN_PLOT_NOISE_MEMBERS, m_dbscanPlotNoise.getBooleanValue());
 			settings.addInt(CFGKEY_DATA_POINT_SIZE, m_dataPointSize.getIntValue());
+			settings.addInt(CFGKEY_POINT_BUDGET, m_pointBudget.getIntValue());
+			settings.addInt(CFGKEY_LOD_RESOLUTION, m_lodResolution.getIntValue());
+			settings.addString(CFGKEY_RENDERING_MODE, m_renderingMode.getStringValue());
+			settings.addInt(CFGKEY_DETAIL_THRESHOLD, m_detailThreshold.getIntValue());
+			settings.addInt(CFGKEY_DENSITY_RESOLUTION, m_densityResolution.getIntValue());
+			settings.addInt(CFGKEY_INTERACTION_POINT_THRESHOLD, m_interactionPointThreshold.getIntValue());
+			settings.addInt(CFGKEY_INTERACTION_IDLE_MILLIS, m_interactionIdleMillis.getIntValue());
+			settings.addBoolean(CFGKEY_INTERACTION_DECIMATE, m_interactionDecimate.getBooleanValue());
 			settings.addInt(CFGKEY_PROTOTYPE_POINT_SIZE, m_prototypePointSize.getIntValue());
 			settings.addInt(CFGKEY_PROTOTYPE_POINT_COLOR, m_prototypePointColor.getColorValue().getRGB());
 			settings.addInt(CFGKEY_DBSCAN_NOISE_MEMBER_COLOR, m_dbNoiseMemberColor.getColorValue().getRGB());
+			settings.addBoolean(CFGKEY_CREATE_IMAGE, m_createImage.getBooleanValue());
+			settings.addInt(CFGKEY_IMAGE_WIDTH, m_imageWidth.getIntValue());
+			settings.addInt(CFGKEY_IMAGE_HEIGHT, m_imageHeight.getIntValue());
+			settings.addInt(CFGKEY_IMAGE_AZIMUTH, m_imageAzimuth.getIntValue());
+			settings.addInt(CFGKEY_IMAGE_ELEVATION, m_imageElevation.getIntValue());
 			m_filterConfiguration.saveConfiguration(settings);
 		}
 	}
@@ -222,6 +375,22 @@ public class ScatterPlot3DSettings {
 		this.m_prototypesProvided.setBooleanValue(prototypesProvided);
 	}
 	
+	public void setColorColumn(final String colorColumn) {
+		this.m_colorColumn.setStringValue(colorColumn);
+	}
+
+	public void setColorMap(final String colorMap) {
+		this.m_colorMap.setStringValue(colorMap);
+	}
+
+	public void setReportTimings(final boolean reportTimings) {
+		this.m_reportTimings.setBooleanValue(reportTimings);
+	}
+
+	public void setInternalsPrecision(final String internalsPrecision) {
+		this.m_internalsPrecision.setStringValue(internalsPrecision);
+	}
+
 	public void setShowAllData(final boolean showData) {
 		this.m_showAllData.setBooleanValue(showData);
 	}
@@ -230,6 +399,14 @@ public class ScatterPlot3DSettings {
 		this.m_count.setIntValue(count);
 	}
 	
+	public void setSamplingMode(final String samplingMode) {
+		this.m_samplingMode.setStringValue(samplingMode);
+	}
+
+	public void setSamplingSeed(final int samplingSeed) {
+		this.m_samplingSeed.setIntValue(samplingSeed);
+	}
+	
 	public void setDBSCANPlotNoise(final boolean dbPlotNoise) {
 		this.m_dbscanPlotNoise.setBooleanValue(dbPlotNoise);
 	}
@@ -238,6 +415,38 @@ public class ScatterPlot3DSettings {
 		this.m_dataPointSize.setIntValue(dataPointSize);
 	}
 	
+	public void setPointBudget(final int pointBudget) {
+		this.m_pointBudget.setIntValue(pointBudget);
+	}
+	
+	public void setLODResolution(final int lodResolution) {
+		this.m_lodResolution.setIntValue(lodResolution);
+	}
+	
+	public void setRenderingMode(final String renderingMode) {
+		this.m_renderingMode.setStringValue(renderingMode);
+	}
+	
+	public void setDetailThreshold(final int detailThreshold) {
+		this.m_detailThreshold.setIntValue(detailThreshold);
+	}
+	
+	public void setDensityResolution(final int densityResolution) {
+		this.m_densityResolution.setIntValue(densityResolution);
+	}
+	
+	public void setInteractionPointThreshold(final int interactionPointThreshold) {
+		this.m_interactionPointThreshold.setIntValue(interactionPointThreshold);
+	}
+	
+	public void setInteractionIdleMillis(final int interactionIdleMillis) {
+		this.m_interactionIdleMillis.setIntValue(interactionIdleMillis);
+	}
+	
+	public void setInteractionDecimate(final boolean interactionDecimate) {
+		this.m_interactionDecimate.setBooleanValue(interactionDecimate);
+	}
+	
 	public void setPrototypePointSize(final int prototypePointSize) {
 		this.m_prototypePointSize.setIntValue(prototypePointSize);
 	}
@@ -250,6 +459,26 @@ public class ScatterPlot3DSettings {
 		this.m_dbNoiseMemberColor.setColorValue(dbNoiseMemberColor);
 	}
 	
+	public void setCreateImage(final boolean createImage) {
+		this.m_createImage.setBooleanValue(createImage);
+	}
+	
+	public void setImageWidth(final int imageWidth) {
+		this.m_imageWidth.setIntValue(imageWidth);
+	}
+	
+	public void setImageHeight(final int imageHeight) {
+		this.m_imageHeight.setIntValue(imageHeight);
+	}
+	
+	public void setImageAzimuth(final int imageAzimuth) {
+		this.m_imageAzimuth.setIntValue(imageAzimuth);
+	}
+	
+	public void setImageElevation(final int imageElevation) {
+		this.m_imageElevation.setIntValue(imageElevation);
+	}
+	
 	// Getters
 	public String getXAxisVarColumn() {
 		return this.m_xAxisVarColumn.getStringValue();
@@ -279,6 +508,30 @@ public class ScatterPlot3DSettings {
 		return this.m_prototypesProvided.getBooleanValue();
 	}
 	
+	public String getColorColumn() {
+		return this.m_colorColumn.getStringValue();
+	}
+
+	public String getColorMap() {
+		return this.m_colorMap.getStringValue();
+	}
+
+	/**
+	 * @return whether the points are colored by the values of a column, which
+	 *         is only done for data that has not been clustered
+	 */
+	public boolean isColoredByColumn() {
+		return !getIsClustered() && !getColorColumn().isEmpty();
+	}
+
+	public boolean getReportTimings() {
+		return this.m_reportTimings.getBooleanValue();
+	}
+	
+	public String getInternalsPrecision() {
+		return this.m_internalsPrecision.getStringValue();
+	}
+	
 	public boolean getShowAllData() {
 		return this.m_showAllData.getBooleanValue();
 	}
@@ -287,6 +540,14 @@ public class ScatterPlot3DSettings {
 		return this.m_count.getIntValue();
 	}
 	
+	public String getSamplingMode() {
+		return this.m_samplingMode.getStringValue();
+	}
+
+	public int getSamplingSeed() {
+		return this.m_samplingSeed.getIntValue();
+	}
+	
 	public boolean getDBSCANPlotNoise() {
 		return this.m_dbscanPlotNoise.getBooleanValue();
 	}
@@ -295,6 +556,38 @@ public class ScatterPlot3DSettings {
 		return this.m_dataPointSize.getIntValue();
 	}
 	
+	public int getPointBudget() {
+		return this.m_pointBudget.getIntValue();
+	}
+	
+	public int getLODResolution() {
+		return this.m_lodResolution.getIntValue();
+	}
+	
+	public String getRenderingMode() {
+		return this.m_renderingMode.getStringValue();
+	}
+	
+	public int getDetailThreshold() {
+		return this.m_detailThreshold.getIntValue();
+	}
+	
+	public int getDensityResolution() {
+		return this.m_densityResolution.getIntValue();
+	}
+	
+	public int getInteractionPointThreshold() {
+		return this.m_interactionPointThreshold.getIntValue();
+	}
+	
+	public int getInteractionIdleMillis() {
+		return this.m_interactionIdleMillis.getIntValue();
+	}
+	
+	public boolean getInteractionDecimate() {
+		return this.m_interactionDecimate.getBooleanValue();
+	}
+	
 	public int getPrototypePointSize() {
 		return this.m_prototypePointSize.getIntValue();
 	}
@@ -307,6 +600,26 @@ public class ScatterPlot3DSettings {
 		return this.m_dbNoiseMemberColor.getColorValue();
 	}
 	
+	public boolean getCreateImage() {
+		return this.m_createImage.getBooleanValue();
+	}
+	
+	public int getImageWidth() {
+		return this.m_imageWidth.getIntValue();
+	}
+	
+	public int getImageHeight() {
+		return this.m_imageHeight.getIntValue();
+	}
+	
+	public int getImageAzimuth() {
+		return this.m_imageAzimuth.getIntValue();
+	}
+	
+	public int getImageElevation() {
+		return this.m_imageElevation.getIntValue();
+	}
+	
 	public DataColumnSpecFilterConfiguration getFilterConfiguration() {
 		return m_filterConfiguration;
 	}
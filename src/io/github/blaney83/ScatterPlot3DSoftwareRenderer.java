@@ -0,0 +1,372 @@
+package io.github.blaney83;
+
+import java.awt.BasicStroke;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import org.jzy3d.colors.Color;
+import org.jzy3d.maths.Coord3d;
+import org.knime.core.node.CanceledExecutionException;
+import org.knime.core.node.ExecutionMonitor;
+
+/**
+ * Renders the plotted points, the prototypes and the axes into an image
+ * without OpenGL, so the plot can be created on machines without a graphics
+ * card or display. The points are projected orthographically from a camera
+ * at the given azimuth and elevation, with every axis scaled to the same
+ * length as in the view. The image is split into tiles that are rasterized in
+ * parallel, each with its own depth buffer, after binning the points by the
+ * tiles they cover.
+ *
+ * @author Benjamin Laney
+ */
+public class ScatterPlot3DSoftwareRenderer {
+
+	static final int TILE_SIZE = 64;
+	private static final int MARGIN = 40;
+	private static final int BACKGROUND = 0xFFFFFFFF;
+	private static final java.awt.Color AXIS_COLOR = java.awt.Color.BLACK;
+	// the edges of the cube [-1, 1]^3 as pairs of corners, corner bits are x, y, z
+	private static final int[][] EDGES = new int[][] { { 0, 1 }, { 2, 3 }, { 4, 5 }, { 6, 7 }, { 0, 2 }, { 1, 3 },
+			{ 4, 6 }, { 5, 7 }, { 0, 4 }, { 1, 5 }, { 2, 6 }, { 3, 7 } };
+
+	private final int m_width;
+	private final int m_height;
+	private final double m_scale;
+	// camera right, up and view (towards the camera) directions
+	private final double[] m_right;
+	private final double[] m_up;
+	private final double[] m_view;
+
+	// the points of the frame being rendered, screen positions and depth
+	private int[] m_screenX;
+	private int[] m_screenY;
+	private float[] m_depth;
+	private int[] m_argb;
+	private int[] m_radius;
+	// the points covering every tile, tile t owns [m_tileStart[t], m_tileStart[t + 1])
+	private int[] m_tileStart;
+	private int[] m_tilePoints;
+
+	/**
+	 * @param azimuth the rotation of the camera around the z axis in degrees
+	 * @param elevation the angle of the camera above the x-y plane in degrees
+	 */
+	public ScatterPlot3DSoftwareRenderer(final int width, final int height, final double azimuth,
+			final double elevation) {
+		m_width = width;
+		m_height = height;
+		double sinAzimuth = Math.sin(Math.toRadians(azimuth));
+		double cosAzimuth = Math.cos(Math.toRadians(azimuth));
+		double sinElevation = Math.sin(Math.toRadians(elevation));
+		double cosElevation = Math.cos(Math.toRadians(elevation));
+		m_view = new double[] { cosElevation * cosAzimuth, cosElevation * sinAzimuth, sinElevation };
+		m_right = new double[] { -sinAzimuth, cosAzimuth, 0 };
+		m_up = new double[] { -sinElevation * cosAzimuth, -sinElevation * sinAzimuth, cosElevation };
+		// the cube of the axes fits into the image from any direction
+		m_scale = Math.max(Math.min(width, height) / 2.0 - MARGIN, 1) / Math.sqrt(3);
+	}
+
+	/**
+	 * Renders the points of the color buffer and the prototypes with the axes
+	 * labeled by the given column names.
+	 *
+	 * @param prototypes the prototypes, or null if there are none
+	 */
+	public BufferedImage render(final ScatterPlot3DColorBuffer colorBuffer, final int pointSize,
+			final Coord3d[] prototypes, final Color prototypeColor, final int prototypeSize,
+			final String[] axisLabels, final ExecutionMonitor exec) throws Exception {
+		ScatterPlot3DPointStore points = colorBuffer.getPoints();
+		int numPrototypes = prototypes == null ? 0 : prototypes.length;
+		int numPoints = points.size() + numPrototypes;
+		float[] bounds = getBounds(points, prototypes);
+
+		exec.setMessage("Projecting points");
+		m_screenX = new int[numPoints];
+		m_screenY = new int[numPoints];
+		m_depth = new float[numPoints];
+		m_argb = new int[numPoints];
+		m_radius = new int[numPoints];
+		int[] colors = colorBuffer.getARGB();
+		for (int i = 0; i < points.size(); i++) {
+			project(i, points.getX(i), points.getY(i), points.getZ(i), bounds);
+			m_argb[i] = colors[i];
+			m_radius[i] = pointSize / 2;
+		}
+		int prototypeARGB = ScatterPlot3DColorBuffer.toARGB(prototypeColor);
+		for (int i = 0; i < numPrototypes; i++) {
+			int point = points.size() + i;
+			project(point, prototypes[i].x, prototypes[i].y, prototypes[i].z, bounds);
+			m_argb[point] = prototypeARGB;
+			m_radius[point] = prototypeSize / 2;
+		}
+		exec.checkCanceled();
+
+		BufferedImage image = new BufferedImage(m_width, m_height, BufferedImage.TYPE_INT_ARGB);
+		drawAxes(image, bounds, axisLabels);
+		exec.setProgress(0.2, "Rasterizing points");
+		binPoints();
+		rasterizeTiles(((DataBufferInt) image.getRaster().getDataBuffer()).getData(), exec.createSubProgress(0.8));
+		// only needed while rendering
+		m_screenX = null;
+		m_screenY = null;
+		m_depth = null;
+		m_argb = null;
+		m_radius = null;
+		m_tileStart = null;
+		m_tilePoints = null;
+		return image;
+	}
+
+	/**
+	 * @return min x, max x, min y, max y, min z, max z of the points and
+	 *         prototypes, with empty ranges widened
+	 */
+	private static float[] getBounds(final ScatterPlot3DPointStore points, final Coord3d[] prototypes) {
+		float[] bounds = new float[] { Float.POSITIVE_INFINITY, Float.NEGATIVE_INFINITY, Float.POSITIVE_INFINITY,
+				Float.NEGATIVE_INFINITY, Float.POSITIVE_INFINITY, Float.NEGATIVE_INFINITY };
+		for (int i = 0; i < points.size(); i++) {
+			extend(bounds, points.getX(i), points.getY(i), points.getZ(i));
+		}
+		if (prototypes != null) {
+			for (Coord3d prototype : prototypes) {
+				extend(bounds, prototype.x, prototype.y, prototype.z);
+			}
+		}
+		for (int axis = 0; axis < 3; axis++) {
+			if (!(bounds[axis * 2] <= bounds[axis * 2 + 1])) {
+				bounds[axis * 2] = 0;
+				bounds[axis * 2 + 1] = 0;
+			}
+			if (bounds[axis * 2] == bounds[axis * 2 + 1]) {
+				bounds[axis * 2] -= 0.5f;
+				bounds[axis * 2 + 1] += 0.5f;
+			}
+		}
+		return bounds;
+	}
+
+	private static void extend(final float[] bounds, final float x, final float y, final float z) {
+		bounds[0] = Math.min(bounds[0], x);
+		bounds[1] = Math.max(bounds[1], x);
+		bounds[2] = Math.min(bounds[2], y);
+		bounds[3] = Math.max(bounds[3], y);
+		bounds[4] = Math.min(bounds[4], z);
+		bounds[5] = Math.max(bounds[5], z);
+	}
+
+	private void project(final int point, final float x, final float y, final float z, final float[] bounds) {
+		double normalizedX = normalize(x, bounds, 0);
+		double normalizedY = normalize(y, bounds, 1);
+		double normalizedZ = normalize(z, bounds, 2);
+		double right = normalizedX * m_right[0] + normalizedY * m_right[1] + normalizedZ * m_right[2];
+		double up = normalizedX * m_up[0] + normalizedY * m_up[1] + normalizedZ * m_up[2];
+		m_screenX[point] = (int) Math.round(m_width / 2.0 + right * m_scale);
+		m_screenY[point] = (int) Math.round(m_height / 2.0 - up * m_scale);
+		m_depth[point] = (float) (normalizedX * m_view[0] + normalizedY * m_view[1] + normalizedZ * m_view[2]);
+	}
+
+	/**
+	 * @return the value scaled from the bounds of the axis to [-1, 1]
+	 */
+	private static double normalize(final float value, final float[] bounds, final int axis) {
+		return (value - bounds[axis * 2]) / (bounds[axis * 2 + 1] - bounds[axis * 2]) * 2 - 1;
+	}
+
+	/**
+	 * @return the pixel x and y and the depth (larger is closer to the camera)
+	 *         of a normalized position
+	 */
+	private double[] toScreen(final double x, final double y, final double z) {
+		double right = x * m_right[0] + y * m_right[1] + z * m_right[2];
+		double up = x * m_up[0] + y * m_up[1] + z * m_up[2];
+		double depth = x * m_view[0] + y * m_view[1] + z * m_view[2];
+		return new double[] { m_width / 2.0 + right * m_scale, m_height / 2.0 - up * m_scale, depth };
+	}
+
+	/**
+	 * Draws the edges of the axes cube, the column names and the value ranges
+	 * of the axes; the points are drawn on top.
+	 */
+	private void drawAxes(final BufferedImage image, final float[] bounds, final String[] axisLabels) {
+		Graphics2D graphics = image.createGraphics();
+		try {
+			graphics.setColor(new java.awt.Color(BACKGROUND, true));
+			graphics.fillRect(0, 0, m_width, m_height);
+			graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+			graphics.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+			graphics.setColor(AXIS_COLOR);
+			graphics.setStroke(new BasicStroke(1f));
+			double[][] corners = new double[8][];
+			for (int corner = 0; corner < 8; corner++) {
+				corners[corner] = toScreen((corner & 1) == 0 ? -1 : 1, (corner & 2) == 0 ? -1 : 1,
+						(corner & 4) == 0 ? -1 : 1);
+			}
+			for (int[] edge : EDGES) {
+				graphics.drawLine((int) Math.round(corners[edge[0]][0]), (int) Math.round(corners[edge[0]][1]),
+						(int) Math.round(corners[edge[1]][0]), (int) Math.round(corners[edge[1]][1]));
+			}
+			graphics.setFont(new Font("SansSerif", Font.PLAIN, 11));
+			// the axes start at the corner with all minimums, corner bit "axis" selects the maximum
+			for (int axis = 0; axis < 3; axis++) {
+				double[] from = corners[0];
+				double[] to = corners[1 << axis];
+				graphics.drawString(format(bounds[axis * 2]), (float) from[0] + 4, (float) from[1] + 14);
+				graphics.drawString(format(bounds[axis * 2 + 1]), (float) to[0] + 4, (float) to[1] + 14);
+				if (axisLabels != null && axis < axisLabels.length && axisLabels[axis] != null) {
+					graphics.drawString(axisLabels[axis], (float) (from[0] + to[0]) / 2 + 4,
+							(float) (from[1] + to[1]) / 2 + 14);
+				}
+			}
+		} finally {
+			graphics.dispose();
+		}
+	}
+
+	private static String format(final float value) {
+		return String.format("%.3g", value);
+	}
+
+	/**
+	 * Lists for every tile the points whose square overlaps it, in the order
+	 * of the points.
+	 */
+	private void binPoints() {
+		int tilesX = getTilesX();
+		int numTiles = tilesX * getTilesY();
+		m_tileStart = new int[numTiles + 1];
+		for (int pass = 0; pass < 2; pass++) {
+			int[] next = pass == 0 ? null : m_tileStart.clone();
+			for (int point = 0; point < m_screenX.length; point++) {
+				int radius = m_radius[point];
+				int fromX = Math.max(m_screenX[point] - radius, 0) / TILE_SIZE;
+				int toX = Math.min(m_screenX[point] + radius, m_width - 1);
+				int fromY = Math.max(m_screenY[point] - radius, 0) / TILE_SIZE;
+				int toY = Math.min(m_screenY[point] + radius, m_height - 1);
+				if (toX < 0 || toY < 0 || m_screenX[point] - radius >= m_width
+						|| m_screenY[point] - radius >= m_height) {
+					continue;
+				}
+				for (int tileY = fromY; tileY <= toY / TILE_SIZE; tileY++) {
+					for (int tileX = fromX; tileX <= toX / TILE_SIZE; tileX++) {
+						int tile = tileY * tilesX + tileX;
+						if (pass == 0) {
+							m_tileStart[tile + 1]++;
+						} else {
+							m_tilePoints[next[tile]++] = point;
+						}
+					}
+				}
+			}
+			if (pass == 0) {
+				for (int tile = 0; tile < numTiles; tile++) {
+					m_tileStart[tile + 1] += m_tileStart[tile];
+				}
+				m_tilePoints = new int[m_tileStart[numTiles]];
+			}
+		}
+	}
+
+	private int getTilesX() {
+		return (m_width + TILE_SIZE - 1) / TILE_SIZE;
+	}
+
+	private int getTilesY() {
+		return (m_height + TILE_SIZE - 1) / TILE_SIZE;
+	}
+
+	private void rasterizeTiles(final int[] pixels, final ExecutionMonitor exec) throws Exception {
+		final int numTiles = getTilesX() * getTilesY();
+		ForkJoinPool pool = new ForkJoinPool(Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(),
+				numTiles)));
+		try {
+			List<Future<Void>> tiles = new ArrayList<Future<Void>>();
+			for (int tile = 0; tile < numTiles; tile++) {
+				final int tileIndex = tile;
+				tiles.add(pool.submit(new Callable<Void>() {
+
+					@Override
+					public Void call() throws CanceledExecutionException {
+						exec.checkCanceled();
+						rasterizeTile(tileIndex, pixels);
+						return null;
+					}
+				}));
+			}
+			for (int tile = 0; tile < numTiles; tile++) {
+				try {
+					tiles.get(tile).get();
+				} catch (ExecutionException e) {
+					if (e.getCause() instanceof Exception) {
+						throw (Exception) e.getCause();
+					}
+					throw e;
+				}
+				exec.setProgress((tile + 1) / (double) numTiles);
+			}
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	/**
+	 * Draws the points of a tile into its own depth buffer and copies the
+	 * covered pixels into the image, which no other tile writes to.
+	 */
+	private void rasterizeTile(final int tile, final int[] pixels) {
+		int tilesX = getTilesX();
+		int originX = (tile % tilesX) * TILE_SIZE;
+		int originY = (tile / tilesX) * TILE_SIZE;
+		int tileWidth = Math.min(TILE_SIZE, m_width - originX);
+		int tileHeight = Math.min(TILE_SIZE, m_height - originY);
+		float[] depthBuffer = new float[tileWidth * tileHeight];
+		Arrays.fill(depthBuffer, Float.NEGATIVE_INFINITY);
+		int[] colorBuffer = new int[tileWidth * tileHeight];
+		for (int i = m_tileStart[tile]; i < m_tileStart[tile + 1]; i++) {
+			int point = m_tilePoints[i];
+			int radius = m_radius[point];
+			int radiusSquared = radius * radius + radius;
+			float depth = m_depth[point];
+			int centerX = m_screenX[point] - originX;
+			int centerY = m_screenY[point] - originY;
+			int fromX = Math.max(centerX - radius, 0);
+			int toX = Math.min(centerX + radius, tileWidth - 1);
+			int fromY = Math.max(centerY - radius, 0);
+			int toY = Math.min(centerY + radius, tileHeight - 1);
+			for (int y = fromY; y <= toY; y++) {
+				int dy = y - centerY;
+				for (int x = fromX; x <= toX; x++) {
+					int dx = x - centerX;
+					// round points like the smoothed points of the view
+					if (dx * dx + dy * dy > radiusSquared) {
+						continue;
+					}
+					int pixel = y * tileWidth + x;
+					if (depth > depthBuffer[pixel]) {
+						depthBuffer[pixel] = depth;
+						colorBuffer[pixel] = m_argb[point];
+					}
+				}
+			}
+		}
+		for (int y = 0; y < tileHeight; y++) {
+			int row = (originY + y) * m_width + originX;
+			for (int x = 0; x < tileWidth; x++) {
+				int pixel = y * tileWidth + x;
+				if (depthBuffer[pixel] != Float.NEGATIVE_INFINITY) {
+					pixels[row + x] = colorBuffer[pixel];
+				}
+			}
+		}
+	}
+}
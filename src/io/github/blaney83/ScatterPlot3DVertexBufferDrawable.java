@@ -0,0 +1,401 @@
+package io.github.blaney83;
+
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+
+import org.jzy3d.colors.Color;
+import org.jzy3d.maths.BoundingBox3d;
+import org.jzy3d.maths.Coord3d;
+import org.jzy3d.plot3d.primitives.AbstractDrawable;
+import org.jzy3d.plot3d.primitives.Scatter;
+import org.jzy3d.plot3d.rendering.view.Camera;
+import org.jzy3d.plot3d.transform.Transform;
+
+import com.jogamp.opengl.GL;
+import com.jogamp.opengl.GL2;
+import com.jogamp.opengl.glu.GLU;
+
+/**
+ * Draws the plotted points from vertex buffer objects that are uploaded from
+ * the direct buffers of a {@link ScatterPlot3DOctree} on the first frame.
+ * Every frame walks the octree with the current camera: nodes outside the
+ * view frustum are skipped, nodes that cover less than the detail threshold
+ * on screen are drawn as their representative and the points of the remaining
+ * leaves are drawn as ranges of the uploaded buffers, so the cost of a frame
+ * depends on what is visible rather than on the number of points. When points
+ * are recolored, e.g. by hiliting, only the changed ranges of the color buffer
+ * are uploaded again with the next frame. If the OpenGL context does not
+ * support vertex buffer objects, all points are drawn by a {@link Scatter}
+ * instead.
+ *
+ * @author Benjamin Laney
+ */
+public class ScatterPlot3DVertexBufferDrawable extends AbstractDrawable {
+
+	// the smallest detail threshold used while decimated
+	static final float MIN_DECIMATED_DETAIL_THRESHOLD = 8;
+	// the detail threshold is multiplied by this factor while decimated
+	static final float DECIMATION_FACTOR = 4;
+	// recolored positions at most this far apart are uploaded as one range
+	static final int MAX_UPLOAD_GAP = 64;
+	// more ranges than this are uploaded as a single range spanning them
+	static final int MAX_UPLOAD_RANGES = 256;
+
+	private final ScatterPlot3DOctree m_octree;
+	private final float m_width;
+	private final float m_detailThreshold;
+	private final ScatterPlot3DRenderMetrics m_metrics;
+	private volatile boolean m_decimated;
+	// points and representatives drawn in the last frame
+	private volatile int m_drawnVertices;
+
+	// point positions, point colors, representative positions and colors, null until uploaded
+	private int[] m_bufferIds;
+	private Scatter m_fallback;
+
+	// reused by every frame
+	private final float[] m_modelView = new float[16];
+	private final float[] m_projection = new float[16];
+	private final float[] m_clip = new float[16];
+	private final int[] m_viewport = new int[4];
+	private final RangeList m_pointRanges = new RangeList();
+	private final RangeList m_representativeRanges = new RangeList();
+
+	// recolored point ranges and whether the representatives were recolored, guarded by this
+	private RangeList m_recolored = new RangeList();
+	private boolean m_representativesRecolored;
+
+	/**
+	 * @param detailThreshold the size in pixels below which a node is drawn as
+	 *            its representative, 0 to always draw all visible points
+	 * @param metrics counts the uploaded bytes, may be <code>null</code>
+	 */
+	public ScatterPlot3DVertexBufferDrawable(final ScatterPlot3DOctree octree, final float width,
+			final float detailThreshold, final ScatterPlot3DRenderMetrics metrics) {
+		m_octree = octree;
+		m_width = width;
+		m_detailThreshold = detailThreshold;
+		m_metrics = metrics;
+		updateBounds();
+	}
+
+	@Override
+	public void draw(final GL gl, final GLU glu, final Camera cam) {
+		if (m_bufferIds == null && m_fallback == null) {
+			if (isSupported(gl)) {
+				upload(gl);
+			} else {
+				m_fallback = createFallback();
+			}
+		}
+		if (m_fallback != null) {
+			m_fallback.draw(gl, glu, cam);
+			m_drawnVertices = m_octree.getPointData().getNumPoints();
+			return;
+		}
+		uploadColors(gl);
+		doTransform(gl, glu, cam);
+		GL2 gl2 = gl.getGL2();
+		collectVisibleRanges(gl2);
+		gl2.glPointSize(m_width);
+		gl2.glEnableClientState(GL2.GL_VERTEX_ARRAY);
+		gl2.glEnableClientState(GL2.GL_COLOR_ARRAY);
+		drawRanges(gl2, m_bufferIds[0], m_bufferIds[1], m_pointRanges);
+		drawRanges(gl2, m_bufferIds[2], m_bufferIds[3], m_representativeRanges);
+		m_drawnVertices = m_pointRanges.getCount() + m_representativeRanges.getCount();
+		gl2.glBindBuffer(GL.GL_ARRAY_BUFFER, 0);
+		gl2.glDisableClientState(GL2.GL_COLOR_ARRAY);
+		gl2.glDisableClientState(GL2.GL_VERTEX_ARRAY);
+	}
+
+	private static void drawRanges(final GL2 gl2, final int positionBuffer, final int colorBuffer,
+			final RangeList ranges) {
+		if (ranges.m_size == 0) {
+			return;
+		}
+		gl2.glBindBuffer(GL.GL_ARRAY_BUFFER, positionBuffer);
+		gl2.glVertexPointer(ScatterPlot3DVertexData.POSITION_COMPONENTS, GL.GL_FLOAT, 0, 0L);
+		gl2.glBindBuffer(GL.GL_ARRAY_BUFFER, colorBuffer);
+		gl2.glColorPointer(ScatterPlot3DVertexData.COLOR_COMPONENTS, GL.GL_FLOAT, 0, 0L);
+		for (int i = 0; i < ranges.m_size; i++) {
+			gl2.glDrawArrays(GL.GL_POINTS, ranges.m_ranges[i * 2], ranges.m_ranges[i * 2 + 1]);
+		}
+	}
+
+	/**
+	 * Computes the ranges of points and representatives to draw with the
+	 * matrices the chart's view set up for this frame.
+	 */
+	private void collectVisibleRanges(final GL2 gl2) {
+		m_pointRanges.m_size = 0;
+		m_representativeRanges.m_size = 0;
+		if (m_octree.getNumNodes() == 0) {
+			return;
+		}
+		gl2.glGetFloatv(GL2.GL_MODELVIEW_MATRIX, m_modelView, 0);
+		gl2.glGetFloatv(GL2.GL_PROJECTION_MATRIX, m_projection, 0);
+		gl2.glGetIntegerv(GL.GL_VIEWPORT, m_viewport, 0);
+		// both matrices are column major, clip = projection * model view
+		for (int column = 0; column < 4; column++) {
+			for (int row = 0; row < 4; row++) {
+				float value = 0;
+				for (int k = 0; k < 4; k++) {
+					value += m_projection[k * 4 + row] * m_modelView[column * 4 + k];
+				}
+				m_clip[column * 4 + row] = value;
+			}
+		}
+		collectVisibleRanges(0, m_decimated
+				? Math.max(m_detailThreshold * DECIMATION_FACTOR, MIN_DECIMATED_DETAIL_THRESHOLD) : m_detailThreshold);
+	}
+
+	/**
+	 * @return the number of points and representatives drawn in the last frame
+	 */
+	public int getDrawnVertices() {
+		return m_drawnVertices;
+	}
+
+	/**
+	 * Draws larger nodes as their representative while decimated, so frames
+	 * stay cheap while the camera moves.
+	 */
+	public void setDecimated(final boolean decimated) {
+		m_decimated = decimated;
+	}
+
+	private void collectVisibleRanges(final int node, final float detailThreshold) {
+		float[] m = m_clip;
+		// outside if all corners are outside of the same clip plane
+		int outsideAll = 0x3F;
+		boolean behindEye = false;
+		float minX = Float.POSITIVE_INFINITY;
+		float maxX = Float.NEGATIVE_INFINITY;
+		float minY = Float.POSITIVE_INFINITY;
+		float maxY = Float.NEGATIVE_INFINITY;
+		for (int corner = 0; corner < 8; corner++) {
+			float x = m_octree.getBound(node, (corner & 1) == 0 ? 0 : 1);
+			float y = m_octree.getBound(node, (corner & 2) == 0 ? 2 : 3);
+			float z = m_octree.getBound(node, (corner & 4) == 0 ? 4 : 5);
+			float clipX = m[0] * x + m[4] * y + m[8] * z + m[12];
+			float clipY = m[1] * x + m[5] * y + m[9] * z + m[13];
+			float clipZ = m[2] * x + m[6] * y + m[10] * z + m[14];
+			float clipW = m[3] * x + m[7] * y + m[11] * z + m[15];
+			int outside = (clipX < -clipW ? 1 : 0) | (clipX > clipW ? 2 : 0) | (clipY < -clipW ? 4 : 0)
+					| (clipY > clipW ? 8 : 0) | (clipZ < -clipW ? 16 : 0) | (clipZ > clipW ? 32 : 0);
+			outsideAll &= outside;
+			if (clipW <= 0) {
+				behindEye = true;
+			} else {
+				minX = Math.min(minX, clipX / clipW);
+				maxX = Math.max(maxX, clipX / clipW);
+				minY = Math.min(minY, clipY / clipW);
+				maxY = Math.max(maxY, clipY / clipW);
+			}
+		}
+		if (outsideAll != 0) {
+			return;
+		}
+		if (!behindEye) {
+			float pixels = Math.max((maxX - minX) * m_viewport[2], (maxY - minY) * m_viewport[3]) / 2;
+			if (pixels < detailThreshold) {
+				m_representativeRanges.add(node, 1);
+				return;
+			}
+		}
+		int child = m_octree.getFirstChild(node);
+		if (child == -1) {
+			int start = m_octree.getStart(node);
+			m_pointRanges.add(start, m_octree.getEnd(node) - start);
+			return;
+		}
+		for (; child != -1; child = m_octree.getNextSibling(child)) {
+			collectVisibleRanges(child, detailThreshold);
+		}
+	}
+
+	static boolean isSupported(final GL gl) {
+		return gl.isGL2() && gl.isFunctionAvailable("glGenBuffers") && gl.isFunctionAvailable("glBindBuffer")
+				&& gl.isFunctionAvailable("glBufferData");
+	}
+
+	private void upload(final GL gl) {
+		int[] bufferIds = new int[4];
+		gl.glGenBuffers(4, bufferIds, 0);
+		upload(gl, bufferIds[0], bufferIds[1], m_octree.getPointData());
+		upload(gl, bufferIds[2], bufferIds[3], m_octree.getRepresentativeData());
+		if (m_metrics != null) {
+			int numVertices = m_octree.getPointData().getNumPoints() + m_octree.getRepresentativeData().getNumPoints();
+			m_metrics.addUploadBytes(numVertices
+					* (ScatterPlot3DVertexData.POSITION_COMPONENTS + ScatterPlot3DVertexData.COLOR_COMPONENTS) * 4L);
+		}
+		gl.glBindBuffer(GL.GL_ARRAY_BUFFER, 0);
+		m_bufferIds = bufferIds;
+	}
+
+	private static void upload(final GL gl, final int positionBuffer, final int colorBuffer,
+			final ScatterPlot3DVertexData vertexData) {
+		int numPoints = vertexData.getNumPoints();
+		gl.glBindBuffer(GL.GL_ARRAY_BUFFER, positionBuffer);
+		gl.glBufferData(GL.GL_ARRAY_BUFFER, numPoints * ScatterPlot3DVertexData.POSITION_COMPONENTS * 4L,
+				vertexData.getPositions(), GL.GL_STATIC_DRAW);
+		gl.glBindBuffer(GL.GL_ARRAY_BUFFER, colorBuffer);
+		gl.glBufferData(GL.GL_ARRAY_BUFFER, numPoints * ScatterPlot3DVertexData.COLOR_COMPONENTS * 4L,
+				vertexData.getColors(), GL.GL_STATIC_DRAW);
+	}
+
+	/**
+	 * Uploads the colors of the given points again with the next frame, after
+	 * they were updated in the octree's vertex data. The fallback scatter
+	 * shares the colors of the color buffer and needs no update.
+	 *
+	 * @param points indices of {@link ScatterPlot3DColorBuffer#getPoints()}
+	 */
+	public void updateColors(final int[] points) {
+		if (points.length == 0) {
+			return;
+		}
+		int[] positions = new int[points.length];
+		for (int i = 0; i < points.length; i++) {
+			positions[i] = m_octree.getPosition(points[i]);
+		}
+		Arrays.sort(positions);
+		RangeList ranges = new RangeList();
+		int start = positions[0];
+		int end = start + 1;
+		for (int i = 1; i < positions.length; i++) {
+			if (positions[i] - end > MAX_UPLOAD_GAP) {
+				ranges.add(start, end - start);
+				start = positions[i];
+			}
+			end = positions[i] + 1;
+		}
+		ranges.add(start, end - start);
+		synchronized (this) {
+			for (int i = 0; i < ranges.m_size; i++) {
+				m_recolored.add(ranges.m_ranges[i * 2], ranges.m_ranges[i * 2 + 1]);
+			}
+			if (m_recolored.m_size > MAX_UPLOAD_RANGES) {
+				int first = Integer.MAX_VALUE;
+				int last = 0;
+				for (int i = 0; i < m_recolored.m_size; i++) {
+					first = Math.min(first, m_recolored.m_ranges[i * 2]);
+					last = Math.max(last, m_recolored.m_ranges[i * 2] + m_recolored.m_ranges[i * 2 + 1]);
+				}
+				m_recolored.m_size = 0;
+				m_recolored.add(first, last - first);
+			}
+			m_representativesRecolored = true;
+		}
+	}
+
+	private void uploadColors(final GL gl) {
+		RangeList recolored;
+		boolean representativesRecolored;
+		synchronized (this) {
+			if (m_recolored.m_size == 0 && !m_representativesRecolored) {
+				return;
+			}
+			recolored = m_recolored;
+			representativesRecolored = m_representativesRecolored;
+			m_recolored = new RangeList();
+			m_representativesRecolored = false;
+		}
+		FloatBuffer colors = m_octree.getPointData().getColors();
+		long uploadBytes = 0;
+		gl.glBindBuffer(GL.GL_ARRAY_BUFFER, m_bufferIds[1]);
+		for (int i = 0; i < recolored.m_size; i++) {
+			int offset = recolored.m_ranges[i * 2] * ScatterPlot3DVertexData.COLOR_COMPONENTS;
+			int length = recolored.m_ranges[i * 2 + 1] * ScatterPlot3DVertexData.COLOR_COMPONENTS;
+			colors.limit(offset + length).position(offset);
+			gl.glBufferSubData(GL.GL_ARRAY_BUFFER, offset * 4L, length * 4L, colors);
+			colors.clear();
+			uploadBytes += length * 4L;
+		}
+		if (representativesRecolored) {
+			ScatterPlot3DVertexData representatives = m_octree.getRepresentativeData();
+			long length = representatives.getNumPoints() * ScatterPlot3DVertexData.COLOR_COMPONENTS * 4L;
+			gl.glBindBuffer(GL.GL_ARRAY_BUFFER, m_bufferIds[3]);
+			gl.glBufferSubData(GL.GL_ARRAY_BUFFER, 0, length, representatives.getColors());
+			uploadBytes += length;
+		}
+		if (m_metrics != null) {
+			m_metrics.addUploadBytes(uploadBytes);
+		}
+		gl.glBindBuffer(GL.GL_ARRAY_BUFFER, 0);
+	}
+
+	/**
+	 * Deletes the buffer objects; must be called with the context they were
+	 * uploaded to being current. Destroying the context releases them as well.
+	 */
+	public void releaseBuffers(final GL gl) {
+		if (m_bufferIds != null) {
+			gl.glDeleteBuffers(m_bufferIds.length, m_bufferIds, 0);
+			m_bufferIds = null;
+		}
+	}
+
+	private Scatter createFallback() {
+		ScatterPlot3DColorBuffer colorBuffer = m_octree.getColorBuffer();
+		ScatterPlot3DPointStore points = colorBuffer.getPoints();
+		Coord3d[] coordinates = new Coord3d[points.size()];
+		Color[] colors = new Color[points.size()];
+		for (int i = 0; i < coordinates.length; i++) {
+			coordinates[i] = new Coord3d(points.getX(i), points.getY(i), points.getZ(i));
+			colors[i] = colorBuffer.getColor(i);
+		}
+		Scatter scatter = new Scatter(coordinates, colors);
+		scatter.setWidth(m_width);
+		return scatter;
+	}
+
+	/**
+	 * The uploaded points cannot be transformed on the CPU, so geometry
+	 * transforms are not supported by this drawable.
+	 */
+	@Override
+	public void applyGeometryTransform(final Transform transform) {
+	}
+
+	@Override
+	public void updateBounds() {
+		ScatterPlot3DVertexData pointData = m_octree.getPointData();
+		float[] bounds = pointData.getBounds();
+		// without a finite coordinate the bounds stay empty
+		bbox = pointData.getNumPoints() == 0 || bounds[0] > bounds[1] ? new BoundingBox3d()
+				: new BoundingBox3d(bounds[0], bounds[1], bounds[2], bounds[3], bounds[4], bounds[5]);
+	}
+
+	/**
+	 * Start and count pairs of the ranges to draw in one frame. A range that
+	 * directly follows the last one extends it, so neighboring nodes in the
+	 * octree order are drawn with a single call.
+	 */
+	private static final class RangeList {
+
+		private int[] m_ranges = new int[64];
+		private int m_size;
+
+		private int getCount() {
+			int count = 0;
+			for (int i = 0; i < m_size; i++) {
+				count += m_ranges[i * 2 + 1];
+			}
+			return count;
+		}
+
+		private void add(final int start, final int count) {
+			if (m_size > 0 && m_ranges[m_size * 2 - 2] + m_ranges[m_size * 2 - 1] == start) {
+				m_ranges[m_size * 2 - 1] += count;
+				return;
+			}
+			if (m_size * 2 == m_ranges.length) {
+				m_ranges = Arrays.copyOf(m_ranges, m_ranges.length * 2);
+			}
+			m_ranges[m_size * 2] = start;
+			m_ranges[m_size * 2 + 1] = count;
+			m_size++;
+		}
+	}
+}
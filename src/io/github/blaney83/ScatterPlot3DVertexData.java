@@ -0,0 +1,173 @@
+package io.github.blaney83;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+import org.jzy3d.colors.Color;
+
+/**
+ * The plotted points as direct (off-heap) float buffers in the layout OpenGL
+ * expects: interleaved x, y, z positions and r, g, b, a colors. They are
+ * filled once by the node model and uploaded into vertex buffer objects by
+ * every view without an intermediate copy.
+ *
+ * @author Benjamin Laney
+ */
+public class ScatterPlot3DVertexData {
+
+	static final int POSITION_COMPONENTS = 3;
+	static final int COLOR_COMPONENTS = 4;
+
+	private final int m_numPoints;
+	private final FloatBuffer m_positions;
+	private final FloatBuffer m_colors;
+	private final float[] m_bounds;
+
+	private final int[] m_order;
+
+	public ScatterPlot3DVertexData(final ScatterPlot3DColorBuffer colorBuffer) {
+		this(colorBuffer, null);
+	}
+
+	/**
+	 * @param order the index of the point to place at every position, or null
+	 *            to keep the order of the points
+	 */
+	public ScatterPlot3DVertexData(final ScatterPlot3DColorBuffer colorBuffer, final int[] order) {
+		ScatterPlot3DPointStore points = colorBuffer.getPoints();
+		m_numPoints = points.size();
+		m_order = order;
+		m_positions = allocateDirect(m_numPoints * POSITION_COMPONENTS);
+		m_colors = allocateDirect(m_numPoints * COLOR_COMPONENTS);
+		float[] xValues = points.getXValues();
+		float[] yValues = points.getYValues();
+		float[] zValues = points.getZValues();
+		m_bounds = new float[] { Float.POSITIVE_INFINITY, Float.NEGATIVE_INFINITY, Float.POSITIVE_INFINITY,
+				Float.NEGATIVE_INFINITY, Float.POSITIVE_INFINITY, Float.NEGATIVE_INFINITY };
+		for (int position = 0; position < m_numPoints; position++) {
+			int i = order == null ? position : order[position];
+			m_positions.put(xValues[i]).put(yValues[i]).put(zValues[i]);
+			includeFinite(m_bounds, 0, xValues[i]);
+			includeFinite(m_bounds, 1, yValues[i]);
+			includeFinite(m_bounds, 2, zValues[i]);
+		}
+		m_positions.flip();
+		fillColors(colorBuffer);
+	}
+
+	/**
+	 * Creates the buffers for points that are not backed by a color buffer.
+	 *
+	 * @param positions the interleaved x, y, z positions
+	 * @param colors the color of every point
+	 */
+	ScatterPlot3DVertexData(final float[] positions, final Color[] colors) {
+		m_numPoints = colors.length;
+		m_order = null;
+		m_positions = allocateDirect(positions.length);
+		m_positions.put(positions, 0, m_numPoints * POSITION_COMPONENTS).flip();
+		m_colors = allocateDirect(m_numPoints * COLOR_COMPONENTS);
+		m_bounds = new float[] { Float.POSITIVE_INFINITY, Float.NEGATIVE_INFINITY, Float.POSITIVE_INFINITY,
+				Float.NEGATIVE_INFINITY, Float.POSITIVE_INFINITY, Float.NEGATIVE_INFINITY };
+		for (int i = 0; i < m_numPoints; i++) {
+			for (int axis = 0; axis < POSITION_COMPONENTS; axis++) {
+				includeFinite(m_bounds, axis, positions[i * POSITION_COMPONENTS + axis]);
+			}
+			m_colors.put(colors[i].r).put(colors[i].g).put(colors[i].b).put(colors[i].a);
+		}
+		m_colors.flip();
+	}
+
+	/**
+	 * Extends the min and max of the axis in <code>bounds</code> by the value
+	 * unless it is NaN or infinite, so a single such coordinate does not make
+	 * the bounds of all other points unusable.
+	 */
+	static void includeFinite(final float[] bounds, final int axis, final float value) {
+		if (value < bounds[axis * 2] && !Float.isInfinite(value)) {
+			bounds[axis * 2] = value;
+		}
+		if (value > bounds[axis * 2 + 1] && !Float.isInfinite(value)) {
+			bounds[axis * 2 + 1] = value;
+		}
+	}
+
+	private static FloatBuffer allocateDirect(final int numFloats) {
+		return ByteBuffer.allocateDirect(Math.max(numFloats, 1) * 4).order(ByteOrder.nativeOrder()).asFloatBuffer();
+	}
+
+	/**
+	 * Refills the color buffer after the palette of the color buffer changed.
+	 */
+	public void fillColors(final ScatterPlot3DColorBuffer colorBuffer) {
+		int[] argb = colorBuffer.getARGB();
+		m_colors.clear();
+		for (int position = 0; position < m_numPoints; position++) {
+			int color = argb[m_order == null ? position : m_order[position]];
+			m_colors.put(getRed(color)).put(getGreen(color)).put(getBlue(color)).put(getAlpha(color));
+		}
+		m_colors.flip();
+	}
+
+	/**
+	 * Sets the color of the point at the given position.
+	 */
+	public void setColor(final int position, final Color color) {
+		int offset = position * COLOR_COMPONENTS;
+		m_colors.put(offset, color.r).put(offset + 1, color.g).put(offset + 2, color.b).put(offset + 3, color.a);
+	}
+
+	/**
+	 * Sets the color of the point at the given position to a packed color, see
+	 * {@link ScatterPlot3DColorBuffer#toARGB(Color)}.
+	 */
+	public void setColor(final int position, final int argb) {
+		int offset = position * COLOR_COMPONENTS;
+		m_colors.put(offset, getRed(argb)).put(offset + 1, getGreen(argb)).put(offset + 2, getBlue(argb))
+				.put(offset + 3, getAlpha(argb));
+	}
+
+	private static float getAlpha(final int argb) {
+		return (argb >>> 24) / 255f;
+	}
+
+	private static float getRed(final int argb) {
+		return (argb >> 16 & 0xFF) / 255f;
+	}
+
+	private static float getGreen(final int argb) {
+		return (argb >> 8 & 0xFF) / 255f;
+	}
+
+	private static float getBlue(final int argb) {
+		return (argb & 0xFF) / 255f;
+	}
+
+	public int getNumPoints() {
+		return m_numPoints;
+	}
+
+	/**
+	 * @return a view of the interleaved positions, positioned at the first
+	 *         value; the content is shared and must not be modified
+	 */
+	public FloatBuffer getPositions() {
+		return m_positions.duplicate();
+	}
+
+	/**
+	 * @return a view of the interleaved colors, positioned at the first value;
+	 *         the content is shared and must not be modified
+	 */
+	public FloatBuffer getColors() {
+		return m_colors.duplicate();
+	}
+
+	/**
+	 * @return min x, max x, min y, max y, min z, max z of the points
+	 */
+	public float[] getBounds() {
+		return m_bounds.clone();
+	}
+}